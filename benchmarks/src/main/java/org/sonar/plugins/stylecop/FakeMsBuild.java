@@ -0,0 +1,197 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Stands in for MSBuild.exe and the StyleCop task: reads the MSBuild project generated by the plugin and reports the given number
+// of violations per analyzed file, analyzing at most the given number of files per second (0 for no limit).
+// Usage: FakeMsBuild <violations per file> <files per second> <MSBuild project>
+public final class FakeMsBuild {
+
+  private static final Pattern OUTPUT_FILE = Pattern.compile("<StyleCopOutputFile>(.*)</StyleCopOutputFile>");
+  private static final Pattern SOURCE_FILE = Pattern.compile("<StyleCopFiles(\\d*) Include=\"(.*)\" />");
+  private static final Pattern BATCH_OUTPUT_FILE = Pattern.compile("OutputFile=\"([^$].*)\"");
+
+  private final double violationsPerFile;
+  private final int filesPerSecond;
+  private final PrintStream out;
+  private final long start = System.currentTimeMillis();
+  private long analyzedFiles;
+  private long violations;
+
+  public FakeMsBuild(double violationsPerFile, int filesPerSecond, PrintStream out) {
+    this.violationsPerFile = violationsPerFile;
+    this.filesPerSecond = filesPerSecond;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.err.println("Usage: FakeMsBuild <violations per file> <files per second> <MSBuild project>");
+      System.exit(1);
+    }
+
+    new FakeMsBuild(Double.parseDouble(args[0]), Integer.parseInt(args[1]), System.out).execute(new File(args[2]));
+  }
+
+  public void execute(File msBuildFile) throws IOException, InterruptedException {
+    out.println("Project \"" + msBuildFile.getAbsolutePath() + "\" on node 1 (default targets).");
+
+    List<String> lines = Files.readLines(msBuildFile, Charsets.UTF_8);
+    // The items of the batch projects are numbered, one StyleCop task per project
+    Map<String, List<File>> sourceFiles = Maps.newHashMap();
+    for (String line : lines) {
+      Matcher matcher = SOURCE_FILE.matcher(line);
+      if (matcher.find()) {
+        if (!sourceFiles.containsKey(matcher.group(1))) {
+          sourceFiles.put(matcher.group(1), Lists.<File>newArrayList());
+        }
+        sourceFiles.get(matcher.group(1)).add(new File(unescape(matcher.group(2))));
+      }
+    }
+
+    String outputFile = find(OUTPUT_FILE, lines);
+    if (outputFile != null) {
+      analyze(files(sourceFiles, ""), new File(outputFile));
+    } else {
+      int project = 0;
+      for (String line : lines) {
+        Matcher matcher = BATCH_OUTPUT_FILE.matcher(line);
+        if (matcher.find()) {
+          analyze(files(sourceFiles, Integer.toString(project)), new File(unescape(matcher.group(1))));
+          project++;
+        }
+      }
+    }
+
+    out.println("Done Building Project \"" + msBuildFile.getAbsolutePath() + "\" (default targets).");
+    out.println();
+    out.println("Build succeeded.");
+    out.println("    " + violations + " Warning(s)");
+    out.println("    0 Error(s)");
+  }
+
+  private void analyze(List<File> sourceFiles, File reportFile) throws IOException, InterruptedException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), Charsets.UTF_8));
+
+    try {
+      writer.write("<StyleCopViolations>\r\n");
+      for (File sourceFile : sourceFiles) {
+        // Read the file as StyleCop would, and spread its violations over its lines
+        int lineCount = Math.max(1, Files.readLines(sourceFile, Charsets.UTF_8).size());
+        long count = (long) Math.floor((analyzedFiles + 1) * violationsPerFile) - (long) Math.floor(analyzedFiles * violationsPerFile);
+        for (int i = 0; i < count; i++) {
+          String[] rule = SyntheticReports.rules().get((int) (violations % SyntheticReports.rules().size()));
+          int line = 1 + (i * 7) % lineCount;
+          writeViolation(writer, sourceFile, line, rule);
+          out.println("  " + sourceFile.getAbsolutePath() + "(" + line + ",1): warning : " + rule[2] + ": " + rule[1] + ": " + rule[3]);
+          violations++;
+        }
+        analyzedFiles++;
+        throttle();
+      }
+      writer.write("</StyleCopViolations>\r\n");
+    } finally {
+      Closeables.closeQuietly(writer);
+    }
+  }
+
+  private void throttle() throws InterruptedException {
+    if (filesPerSecond > 0) {
+      long delay = analyzedFiles * 1000 / filesPerSecond - (System.currentTimeMillis() - start);
+      if (delay > 0) {
+        Thread.sleep(delay);
+      }
+    }
+  }
+
+  private static void writeViolation(Writer writer, File sourceFile, int line, String[] rule) throws IOException {
+    writer.write("  <Violation Section=\"Root.MyLibrary.Class\" LineNumber=\"");
+    writer.write(Integer.toString(line));
+    writer.write("\" Source=\"");
+    writer.write(escapeXml(sourceFile.getAbsolutePath()));
+    writer.write("\" RuleNamespace=\"");
+    writer.write(rule[0]);
+    writer.write("\" Rule=\"");
+    writer.write(rule[1]);
+    writer.write("\" RuleId=\"");
+    writer.write(rule[2]);
+    writer.write("\">");
+    writer.write(rule[3]);
+    writer.write("</Violation>\r\n");
+  }
+
+  private static List<File> files(Map<String, List<File>> sourceFiles, String itemSuffix) {
+    List<File> files = sourceFiles.get(itemSuffix);
+    return files == null ? Lists.<File>newArrayList() : files;
+  }
+
+  private static String find(Pattern pattern, List<String> lines) {
+    for (String line : lines) {
+      Matcher matcher = pattern.matcher(line);
+      if (matcher.find()) {
+        return unescape(matcher.group(1));
+      }
+    }
+    return null;
+  }
+
+  // Reverts the escaping of StyleCopMsBuildWriter: XML entities, then MSBuild's %XX
+  private static String unescape(String item) {
+    String s = item.replace("&quot;", "\"").replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '%' && i + 2 < s.length() && isHex(s.charAt(i + 1)) && isHex(s.charAt(i + 2))) {
+        sb.append((char) Integer.parseInt(s.substring(i + 1, i + 3), 16));
+        i += 2;
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static boolean isHex(char c) {
+    return Character.digit(c, 16) != -1;
+  }
+
+  private static String escapeXml(String s) {
+    return s.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;");
+  }
+
+}
@@ -0,0 +1,426 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.component.Component;
+import org.sonar.api.component.Perspective;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RulePriority;
+import org.sonar.api.scan.filesystem.FileQuery;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// StyleCopSensor.analyse() on a pre-generated report, with StyleCop's execution stubbed out
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IssueImportBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int violations;
+
+  @Param({"false", "true"})
+  public boolean mappedReportParser;
+
+  private File workingDir;
+  private StyleCopSensor sensor;
+  private StyleCopConfiguration styleCopConf;
+  private FileProvider fileProvider;
+  private StyleCopReportParser parser;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    workingDir = Files.createTempDir();
+    File baseDir = new File(workingDir, "sources");
+
+    File dll = new File(workingDir, "StyleCop.dll");
+    File msBuild = new File(workingDir, "MSBuild.exe");
+    Files.touch(dll);
+    Files.touch(msBuild);
+    SyntheticReports.write(new File(workingDir, "StyleCop-report.xml"), baseDir.getAbsolutePath() + File.separator, violations);
+
+    Settings settings = new Settings(new PropertyDefinitions(new StyleCopPlugin().getExtensions()));
+    settings.setProperty(StyleCopPlugin.STYLECOP_DLL_PATH_PROPERTY_KEY, dll.getAbsolutePath());
+    settings.setProperty(StyleCopPlugin.STYLECOP_MSBUILD_PATH_PROPERTY_KEY, msBuild.getAbsolutePath());
+    settings.setProperty(StyleCopPlugin.STYLECOP_PROJECT_FILE_PATH_PROPERTY_KEY, new File(baseDir, "MyLibrary.csproj").getAbsolutePath());
+    styleCopConf = new StyleCopConfiguration(settings);
+
+    RulesProfile profile = RulesProfile.create();
+    for (String[] rule : SyntheticReports.rules()) {
+      profile.activateRule(Rule.create(StyleCopPlugin.REPOSITORY_KEY, rule[1], rule[1]).setConfigKey(rule[0] + "#" + rule[1]), RulePriority.MAJOR);
+    }
+
+    sensor = new StyleCopSensor(settings, profile,
+      new StubModuleFileSystem(workingDir, baseDir, SyntheticReports.sourceFiles(baseDir, SyntheticReports.files(violations))),
+      new StubResourcePerspectives());
+    fileProvider = new StubFileProvider();
+    parser = mappedReportParser ? new StyleCopMappedReportParser() : new StyleCopReportParser();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtils.deleteQuietly(workingDir);
+  }
+
+  @Benchmark
+  public void analyse() {
+    sensor.analyse(null, fileProvider, styleCopConf, new StyleCopSettingsWriter(), new StubMsBuildWriter(), parser, new StubExecutor());
+  }
+
+  private static class StubMsBuildWriter extends StyleCopMsBuildWriter {
+
+    @Override
+    public void write(File styleCopDllFile, File projectFile, File settingsFile, File reportFile, Iterable<File> sourceFiles, File cacheDirectory,
+      File file) {
+      // Nothing to execute
+    }
+
+  }
+
+  private static class StubExecutor extends StyleCopExecutor {
+
+    @Override
+    public void execute(String executable, String msBuildFile, int timeoutMinutes, String timeoutExceptionMessage) {
+      // The report was generated beforehand
+    }
+
+  }
+
+  static class StubFileProvider extends FileProvider {
+
+    public StubFileProvider() {
+      super(null, null);
+    }
+
+    @Override
+    public org.sonar.api.resources.File fromIOFile(File file) {
+      return new org.sonar.api.resources.File(file.getName());
+    }
+
+  }
+
+  static class StubModuleFileSystem implements ModuleFileSystem {
+
+    private final File workingDir;
+    private final File baseDir;
+    private final List<File> files;
+
+    public StubModuleFileSystem(File workingDir, File baseDir, List<File> files) {
+      this.workingDir = workingDir;
+      this.baseDir = baseDir;
+      this.files = files;
+    }
+
+    @Override
+    public File baseDir() {
+      return baseDir;
+    }
+
+    @Override
+    public File buildDir() {
+      return workingDir;
+    }
+
+    @Override
+    public List<File> sourceDirs() {
+      return Collections.singletonList(baseDir);
+    }
+
+    @Override
+    public List<File> testDirs() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<File> binaryDirs() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<File> files(FileQuery query) {
+      return files;
+    }
+
+    @Override
+    public Charset sourceCharset() {
+      return Charset.forName("UTF-8");
+    }
+
+    @Override
+    public File workingDir() {
+      return workingDir;
+    }
+
+  }
+
+  static class StubResourcePerspectives implements ResourcePerspectives {
+
+    @Override
+    public <P extends Perspective> P as(Class<P> perspectiveClass, Resource resource) {
+      return perspectiveClass.cast(new StubIssuable(resource.getKey()));
+    }
+
+    @Override
+    public <P extends Perspective> P as(Class<P> perspectiveClass, Component component) {
+      return perspectiveClass.cast(new StubIssuable(component.key()));
+    }
+
+  }
+
+  private static class StubIssuable implements Issuable {
+
+    private final String componentKey;
+    private int issues;
+
+    public StubIssuable(String componentKey) {
+      this.componentKey = componentKey;
+    }
+
+    @Override
+    public Component component() {
+      return null;
+    }
+
+    @Override
+    public IssueBuilder newIssueBuilder() {
+      return new StubIssueBuilder(componentKey);
+    }
+
+    @Override
+    public boolean addIssue(Issue issue) {
+      issues++;
+      return true;
+    }
+
+    @Override
+    public List<Issue> issues() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<Issue> resolvedIssues() {
+      return Collections.emptyList();
+    }
+
+  }
+
+  private static class StubIssueBuilder implements Issuable.IssueBuilder {
+
+    private final StubIssue issue;
+
+    public StubIssueBuilder(String componentKey) {
+      issue = new StubIssue(componentKey);
+    }
+
+    @Override
+    public Issuable.IssueBuilder ruleKey(RuleKey ruleKey) {
+      issue.ruleKey = ruleKey;
+      return this;
+    }
+
+    @Override
+    public Issuable.IssueBuilder line(Integer line) {
+      issue.line = line;
+      return this;
+    }
+
+    @Override
+    public Issuable.IssueBuilder message(String message) {
+      issue.message = message;
+      return this;
+    }
+
+    @Override
+    public Issuable.IssueBuilder severity(String severity) {
+      issue.severity = severity;
+      return this;
+    }
+
+    @Override
+    public Issuable.IssueBuilder reporter(String reporter) {
+      return this;
+    }
+
+    @Override
+    public Issuable.IssueBuilder effortToFix(Double effortToFix) {
+      issue.effortToFix = effortToFix;
+      return this;
+    }
+
+    @Override
+    public Issuable.IssueBuilder attribute(String key, String value) {
+      return this;
+    }
+
+    @Override
+    public Issue build() {
+      return issue;
+    }
+
+  }
+
+  private static class StubIssue implements Issue {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String componentKey;
+    private RuleKey ruleKey;
+    private Integer line;
+    private String message;
+    private String severity;
+    private Double effortToFix;
+
+    public StubIssue(String componentKey) {
+      this.componentKey = componentKey;
+    }
+
+    @Override
+    public String key() {
+      return null;
+    }
+
+    @Override
+    public String componentKey() {
+      return componentKey;
+    }
+
+    @Override
+    public RuleKey ruleKey() {
+      return ruleKey;
+    }
+
+    @Override
+    public String severity() {
+      return severity;
+    }
+
+    @Override
+    public String message() {
+      return message;
+    }
+
+    @Override
+    public Integer line() {
+      return line;
+    }
+
+    @Override
+    public Double effortToFix() {
+      return effortToFix;
+    }
+
+    @Override
+    public String status() {
+      return STATUS_OPEN;
+    }
+
+    @Override
+    public String resolution() {
+      return null;
+    }
+
+    @Override
+    public String reporter() {
+      return null;
+    }
+
+    @Override
+    public String assignee() {
+      return null;
+    }
+
+    @Override
+    public Date creationDate() {
+      return null;
+    }
+
+    @Override
+    public Date updateDate() {
+      return null;
+    }
+
+    @Override
+    public Date closeDate() {
+      return null;
+    }
+
+    @Override
+    public String attribute(String key) {
+      return null;
+    }
+
+    @Override
+    public Map<String, String> attributes() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public String authorLogin() {
+      return null;
+    }
+
+    @Override
+    public String actionPlanKey() {
+      return null;
+    }
+
+    @Override
+    public List<IssueComment> comments() {
+      return Collections.emptyList();
+    }
+
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.Settings;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RulePriority;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// End-to-end StyleCopSensor.analyse() on a synthetic C# project, with FakeMsBuild executed in place of MSBuild, reporting the elapsed time and
+// the peak heap of each project size. Run with "java -cp target/benchmarks.jar org.sonar.plugins.stylecop.LoadTest [files...]", and:
+//   -Dloadtest.violationsPerFile=2.5   violations reported per analyzed file
+//   -Dloadtest.filesPerSecond=0        speed of the fake StyleCop, 0 for no limit
+//   -Dloadtest.methodsPerFile=10       size of the generated files
+//   -Dsonar.stylecop.*=...             any plugin property, for instance -Dsonar.stylecop.shards=4
+// Sizes are run from the same JVM, one after the other: run one size per JVM to compare the peak heaps against -Xmx.
+public final class LoadTest {
+
+  private static final int[] DEFAULT_FILES = {1000, 10000, 100000};
+  private static final Pattern IMPORTED = Pattern.compile("\"imported\": (\\d++)");
+
+  private LoadTest() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    double violationsPerFile = Double.parseDouble(System.getProperty("loadtest.violationsPerFile", "2.5"));
+    int filesPerSecond = Integer.getInteger("loadtest.filesPerSecond", 0);
+    int methodsPerFile = Integer.getInteger("loadtest.methodsPerFile", 10);
+
+    int[] sizes = DEFAULT_FILES;
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+
+    System.out.println(String.format(Locale.ENGLISH, "%10s %12s %12s %12s %14s", "files", "violations", "imported", "time (ms)", "peak heap (MB)"));
+    for (int files : sizes) {
+      File dir = Files.createTempDir();
+      try {
+        Result result = run(dir, files, methodsPerFile, violationsPerFile, filesPerSecond);
+        System.out.println(String.format(Locale.ENGLISH, "%10d %12d %12d %12d %14d",
+          files, (long) Math.floor(files * violationsPerFile), result.imported, result.millis, result.peakHeapBytes / (1024 * 1024)));
+      } finally {
+        FileUtils.deleteQuietly(dir);
+      }
+    }
+  }
+
+  private static Result run(File dir, int files, int methodsPerFile, double violationsPerFile, int filesPerSecond) throws IOException {
+    File workingDir = new File(dir, "working-dir");
+    File baseDir = new File(dir, "sources");
+    workingDir.mkdirs();
+    List<File> sourceFiles = SyntheticCorpus.write(baseDir, files, methodsPerFile);
+
+    File dll = new File(dir, "StyleCop.dll");
+    Files.touch(dll);
+    File msBuild = fakeMsBuild(dir, violationsPerFile, filesPerSecond);
+
+    Settings settings = new Settings(new PropertyDefinitions(new StyleCopPlugin().getExtensions()));
+    settings.addSystemProperties();
+    settings.setProperty(StyleCopPlugin.STYLECOP_DLL_PATH_PROPERTY_KEY, dll.getAbsolutePath());
+    settings.setProperty(StyleCopPlugin.STYLECOP_MSBUILD_PATH_PROPERTY_KEY, msBuild.getAbsolutePath());
+    settings.setProperty(StyleCopPlugin.STYLECOP_PROJECT_FILE_PATH_PROPERTY_KEY, SyntheticCorpus.projectFile(baseDir).getAbsolutePath());
+    StyleCopConfiguration styleCopConf = new StyleCopConfiguration(settings);
+
+    RulesProfile profile = RulesProfile.create();
+    for (String[] rule : SyntheticReports.rules()) {
+      profile.activateRule(Rule.create(StyleCopPlugin.REPOSITORY_KEY, rule[1], rule[1]).setConfigKey(rule[0] + "#" + rule[1]), RulePriority.MAJOR);
+    }
+
+    StyleCopSensor sensor = new StyleCopSensor(settings, profile,
+      new IssueImportBenchmark.StubModuleFileSystem(workingDir, baseDir, sourceFiles),
+      new IssueImportBenchmark.StubResourcePerspectives());
+    StyleCopExecutor executor = new StyleCopExecutor(styleCopConf.inactivityTimeoutMinutes(), null, null,
+      new StyleCopOutputLog(styleCopConf.outputLinesPerSecond(), null));
+
+    resetPeakHeap();
+    long start = System.nanoTime();
+    sensor.analyse(null, new IssueImportBenchmark.StubFileProvider(), styleCopConf,
+      new StyleCopSettingsWriter(), new StyleCopMsBuildWriter(), StyleCopSensor.reportParser(styleCopConf), executor);
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    return new Result(millis, peakHeap(), imported(new File(workingDir, "StyleCop-statistics.json")));
+  }
+
+  // Launches FakeMsBuild with the classpath of this JVM
+  private static File fakeMsBuild(File dir, double violationsPerFile, int filesPerSecond) throws IOException {
+    File file = new File(dir, "MSBuild.sh");
+    String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+    Files.write("#!/bin/sh\n"
+      + "exec \"" + java + "\" -cp \"" + System.getProperty("java.class.path") + "\" " + FakeMsBuild.class.getName() + " "
+      + violationsPerFile + " " + filesPerSecond + " \"$1\"\n", file, Charsets.UTF_8);
+    if (!file.setExecutable(true)) {
+      throw new IOException("Unable to make \"" + file.getAbsolutePath() + "\" executable.");
+    }
+    return file;
+  }
+
+  private static void resetPeakHeap() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  // The sum of the peaks of the heap pools, which may not have been reached at the same time: an upper bound of the actual peak
+  private static long peakHeap() {
+    long result = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        result += pool.getPeakUsage().getUsed();
+      }
+    }
+    return result;
+  }
+
+  private static long imported(File statisticsFile) throws IOException {
+    Matcher matcher = IMPORTED.matcher(Files.toString(statisticsFile, Charsets.UTF_8));
+    return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+  }
+
+  private static class Result {
+
+    private final long millis;
+    private final long peakHeapBytes;
+    private final long imported;
+
+    public Result(long millis, long peakHeapBytes, long imported) {
+      this.millis = millis;
+      this.peakHeapBytes = peakHeapBytes;
+      this.imported = imported;
+    }
+
+  }
+
+}
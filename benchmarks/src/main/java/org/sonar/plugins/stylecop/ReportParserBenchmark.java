@@ -0,0 +1,90 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReportParserBenchmark {
+
+  @Param({"10000", "100000", "1000000", "5000000"})
+  public int violations;
+
+  private File report;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    report = File.createTempFile("StyleCop-report", ".xml");
+    SyntheticReports.write(report, violations);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    report.delete();
+  }
+
+  @Benchmark
+  public void stax(Blackhole blackhole) {
+    new StyleCopReportParser().parse(report, new ConsumingHandler(blackhole));
+  }
+
+  @Benchmark
+  public void mapped(Blackhole blackhole) {
+    new StyleCopMappedReportParser().parse(report, new ConsumingHandler(blackhole));
+  }
+
+  private static class ConsumingHandler implements StyleCopIssueHandler {
+
+    private final Blackhole blackhole;
+
+    public ConsumingHandler(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void handle(StyleCopIssue issue) {
+      blackhole.consume(issue);
+    }
+
+  }
+
+}
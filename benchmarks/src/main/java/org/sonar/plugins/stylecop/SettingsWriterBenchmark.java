@@ -0,0 +1,93 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SettingsWriterBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int rules;
+
+  private final StyleCopSettingsWriter writer = new StyleCopSettingsWriter();
+  private List<String> ruleConfigKeys;
+  private List<String> otherRuleConfigKeys;
+  private List<String> ignoredHungarianPrefixes;
+  private File file;
+  private boolean other;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    ruleConfigKeys = ruleConfigKeys(rules, "Rule");
+    otherRuleConfigKeys = ruleConfigKeys(rules, "OtherRule");
+    ignoredHungarianPrefixes = ImmutableList.of("a", "b", "c", "do", "id", "is", "my", "ok", "to", "ui");
+    file = File.createTempFile("StyleCop-settings", ".StyleCop");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public void changed() {
+    // Alternate between two rule sets so that the file has to be rewritten every time
+    other = !other;
+    writer.write(other ? otherRuleConfigKeys : ruleConfigKeys, ignoredHungarianPrefixes, file);
+  }
+
+  @Benchmark
+  public void unchanged() {
+    writer.write(ruleConfigKeys, ignoredHungarianPrefixes, file);
+  }
+
+  private static List<String> ruleConfigKeys(int count, String prefix) {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      builder.add("StyleCop.CSharp.Rules" + (i % 20) + "#" + prefix + i);
+    }
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+// A C# project of the given number of files, laid out as the sources of SyntheticReports: "MyLibrary.csproj" next to "MyLibrary\FolderN\ClassI.cs"
+public final class SyntheticCorpus {
+
+  private SyntheticCorpus() {
+  }
+
+  public static File projectFile(File baseDir) {
+    return new File(baseDir, "MyLibrary.csproj");
+  }
+
+  public static List<File> write(File baseDir, int files, int methodsPerFile) throws IOException {
+    List<File> sourceFiles = SyntheticReports.sourceFiles(baseDir, files);
+    for (int i = 0; i < files; i++) {
+      File file = sourceFiles.get(i);
+      Files.createParentDirs(file);
+      writeClass(file, i, methodsPerFile);
+    }
+    writeProject(projectFile(baseDir), files);
+    return sourceFiles;
+  }
+
+  // The number of lines of each generated file, for the reported violations to fall within the files
+  public static int lines(int methodsPerFile) {
+    return 9 + methodsPerFile * 8;
+  }
+
+  private static void writeClass(File file, int index, int methodsPerFile) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+
+    try {
+      writer.write("using System;\r\n");
+      writer.write("using System.Collections.Generic;\r\n");
+      writer.write("\r\n");
+      writer.write("namespace MyLibrary.Folder" + (index % 100) + "\r\n");
+      writer.write("{\r\n");
+      writer.write("    public class Class" + index + "\r\n");
+      writer.write("    {\r\n");
+      for (int i = 0; i < methodsPerFile; i++) {
+        writer.write("        public int Method" + i + "(List<int> values)\r\n");
+        writer.write("        {\r\n");
+        writer.write("\tint sum = 0;\r\n");
+        writer.write("            foreach (int value in values)\r\n");
+        writer.write("            {\r\n");
+        writer.write("                sum += value * " + i + ";\r\n");
+        writer.write("            }\r\n");
+        writer.write("            return Helper(sum); }\r\n");
+      }
+      writer.write("    }\r\n");
+      writer.write("}\r\n");
+    } finally {
+      Closeables.closeQuietly(writer);
+    }
+  }
+
+  private static void writeProject(File file, int files) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+
+    try {
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n");
+      writer.write("<Project ToolsVersion=\"4.0\" DefaultTargets=\"Build\" xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">\r\n");
+      writer.write("  <PropertyGroup>\r\n");
+      writer.write("    <OutputType>Library</OutputType>\r\n");
+      writer.write("    <RootNamespace>MyLibrary</RootNamespace>\r\n");
+      writer.write("    <AssemblyName>MyLibrary</AssemblyName>\r\n");
+      writer.write("    <TargetFrameworkVersion>v4.0</TargetFrameworkVersion>\r\n");
+      writer.write("  </PropertyGroup>\r\n");
+      writer.write("  <ItemGroup>\r\n");
+      for (int i = 0; i < files; i++) {
+        writer.write("    <Compile Include=\"" + SyntheticReports.source(i) + "\" />\r\n");
+      }
+      writer.write("  </ItemGroup>\r\n");
+      writer.write("  <Import Project=\"$(MSBuildToolsPath)\\Microsoft.CSharp.targets\" />\r\n");
+      writer.write("</Project>\r\n");
+    } finally {
+      Closeables.closeQuietly(writer);
+    }
+  }
+
+}
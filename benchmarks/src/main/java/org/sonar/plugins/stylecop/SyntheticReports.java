@@ -0,0 +1,102 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+public final class SyntheticReports {
+
+  private static final int VIOLATIONS_PER_FILE = 20;
+
+  private static final String[][] RULES = {
+    {"StyleCop.CSharp.DocumentationRules", "FileMustHaveHeader", "SA1633", "The file has no header, the header Xml is invalid, or the header is not located at the top of the file."},
+    {"StyleCop.CSharp.MaintainabilityRules", "AccessModifierMustBeDeclared", "SA1400", "The method must have an access modifier."},
+    {"StyleCop.CSharp.DocumentationRules", "ElementsMustBeDocumented", "SA1600", "The method must have a documentation header."},
+    {"StyleCop.CSharp.ReadabilityRules", "PrefixLocalCallsWithThis", "SA1101", "The call to Foo must begin with the 'this.' prefix to indicate that the item is a member of the class."},
+    {"StyleCop.CSharp.SpacingRules", "TabsMustNotBeUsed", "SA1027", "Tabs are not allowed. Use spaces instead."}
+  };
+
+  private SyntheticReports() {
+  }
+
+  public static String source(int index) {
+    return "MyLibrary\\Folder" + (index % 100) + "\\Class" + index + ".cs";
+  }
+
+  public static List<File> sourceFiles(File baseDir, int count) {
+    List<File> result = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      result.add(new File(baseDir, source(i).replace('\\', '/')));
+    }
+    return result;
+  }
+
+  public static List<String[]> rules() {
+    return Arrays.asList(RULES);
+  }
+
+  public static int files(int violations) {
+    return (violations + VIOLATIONS_PER_FILE - 1) / VIOLATIONS_PER_FILE;
+  }
+
+  public static void write(File report, int violations) throws IOException {
+    write(report, "", violations);
+  }
+
+  public static void write(File report, String sourcePrefix, int violations) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(report), Charsets.UTF_8));
+
+    try {
+      writer.write("<StyleCopViolations>\r\n");
+      for (int i = 0; i < violations; i++) {
+        String[] rule = RULES[i % RULES.length];
+        writer.write("  <Violation Section=\"Root.MyLibrary.Class\" LineNumber=\"");
+        writer.write(Integer.toString(i % VIOLATIONS_PER_FILE * 7 + 1));
+        writer.write("\" Source=\"");
+        writer.write(sourcePrefix);
+        writer.write(source(i / VIOLATIONS_PER_FILE));
+        writer.write("\" RuleNamespace=\"");
+        writer.write(rule[0]);
+        writer.write("\" Rule=\"");
+        writer.write(rule[1]);
+        writer.write("\" RuleId=\"");
+        writer.write(rule[2]);
+        writer.write("\">");
+        writer.write(rule[3]);
+        writer.write("</Violation>\r\n");
+      }
+      writer.write("</StyleCopViolations>\r\n");
+    } finally {
+      Closeables.closeQuietly(writer);
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleParam;
+import org.sonar.api.rules.XMLRuleParser;
+import org.sonar.check.Cardinality;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+
+// Build-only: compiled with the main classes and run by the exec-maven-plugin execution in the pom to compile rules.xml
+// into the catalog that StyleCopRuleCatalog reads, then excluded from the plugin jar together with rules.xml
+public final class StyleCopRuleCatalogCompiler {
+
+  private StyleCopRuleCatalogCompiler() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Preconditions.checkArgument(args.length == 2, "Usage: StyleCopRuleCatalogCompiler <rules.xml> <rules.catalog>");
+
+    List<Rule> rules = new XMLRuleParser().parse(new File(args[0]));
+    validate(rules);
+
+    File file = new File(args[1]);
+    file.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      write(rules, out);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  static void validate(List<Rule> rules) {
+    Set<String> keys = Sets.newHashSet();
+    for (Rule rule : rules) {
+      Preconditions.checkArgument(rule.getKey() != null && keys.add(rule.getKey()), "Missing or duplicate rule key: " + rule.getKey());
+      Preconditions.checkArgument(rule.getName() != null, "Missing name for the rule " + rule.getKey());
+      if (rule.getCardinality() != Cardinality.MULTIPLE) {
+        String configKey = rule.getConfigKey();
+        Preconditions.checkArgument(configKey != null && configKey.trim().indexOf('#') > 0, "Invalid config key for the rule " + rule.getKey() + ": " + configKey);
+      }
+    }
+  }
+
+  static void write(List<Rule> rules, OutputStream output) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+    out.writeInt(StyleCopRuleCatalog.VERSION);
+    out.writeInt(rules.size());
+    for (Rule rule : rules) {
+      out.writeUTF(rule.getKey());
+      out.writeUTF(rule.getName());
+      writeNullableUTF(out, rule.getConfigKey());
+      writeNullableUTF(out, rule.getSeverity() == null ? null : rule.getSeverity().name());
+      writeNullableUTF(out, rule.getCardinality() == null ? null : rule.getCardinality().name());
+      writeNullableUTF(out, rule.getStatus());
+      writeDescription(out, rule.getDescription());
+      out.writeInt(rule.getParams().size());
+      for (RuleParam param : rule.getParams()) {
+        out.writeUTF(param.getKey());
+        writeNullableUTF(out, param.getDescription());
+        writeNullableUTF(out, param.getType());
+        writeNullableUTF(out, param.getDefaultValue());
+      }
+    }
+    out.flush();
+  }
+
+  private static void writeDescription(DataOutputStream out, @Nullable String description) throws IOException {
+    // Descriptions can exceed the 64KB limit of writeUTF()
+    byte[] bytes = description == null ? null : description.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes == null ? -1 : bytes.length);
+    if (bytes != null) {
+      out.write(bytes);
+    }
+  }
+
+  private static void writeNullableUTF(DataOutputStream out, @Nullable String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+}
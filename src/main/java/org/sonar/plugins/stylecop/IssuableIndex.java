@@ -0,0 +1,75 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+
+public class IssuableIndex {
+
+  private final FileProvider fileProvider;
+  private final ResourcePerspectives perspectives;
+  private final Map<String, File> files = Maps.newHashMap();
+  private final Map<String, Issuable> issuables = Maps.newHashMap();
+  private final Set<String> notInSonarQube = Sets.newHashSet();
+
+  public IssuableIndex(Iterable<File> files, FileProvider fileProvider, ResourcePerspectives perspectives) {
+    this.fileProvider = fileProvider;
+    this.perspectives = perspectives;
+    for (File file : files) {
+      this.files.put(StyleCopPaths.normalize(file), file);
+    }
+  }
+
+  @Nullable
+  public Issuable issuable(String path) {
+    String key = StyleCopPaths.normalize(path);
+    if (issuables.containsKey(key)) {
+      return issuables.get(key);
+    }
+
+    File file = files.get(key);
+    org.sonar.api.resources.File sonarFile = file == null ? null : fileProvider.fromIOFile(file);
+    Issuable issuable = null;
+    if (sonarFile == null) {
+      notInSonarQube.add(key);
+    } else {
+      issuable = perspectives.as(Issuable.class, sonarFile);
+    }
+
+    // Also remember the files which are not in SonarQube, so that they are only looked up once
+    issuables.put(key, issuable);
+    return issuable;
+  }
+
+  // Tells apart, among the already looked up paths without issuable, the ones which are not in SonarQube at all
+  public boolean isInSonarQube(String path) {
+    return !notInSonarQube.contains(StyleCopPaths.normalize(path));
+  }
+
+}
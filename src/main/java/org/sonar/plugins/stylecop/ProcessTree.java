@@ -0,0 +1,114 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Closeables;
+import org.apache.commons.lang.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+
+// Java 6 can only destroy the process itself, which would leave MSBuild's child processes running.
+// Uses ProcessHandle when running on Java 9+, or else the pid of the UNIX process with pgrep.
+public final class ProcessTree {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProcessTree.class);
+
+  private ProcessTree() {
+  }
+
+  public static void kill(Process process) {
+    if (!killDescendantsWithProcessHandle(process) && !SystemUtils.IS_OS_WINDOWS) {
+      String pid = unixPid(process);
+      if (pid != null) {
+        killDescendants(pid);
+      }
+    }
+    process.destroy();
+  }
+
+  private static boolean killDescendantsWithProcessHandle(Process process) {
+    try {
+      Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+      Object processHandle = Process.class.getMethod("toHandle").invoke(process);
+      Object descendants = processHandleClass.getMethod("descendants").invoke(processHandle);
+      Object[] handles = (Object[]) Class.forName("java.util.stream.Stream").getMethod("toArray").invoke(descendants);
+
+      Method destroyForcibly = processHandleClass.getMethod("destroyForcibly");
+      for (Object handle : handles) {
+        destroyForcibly.invoke(handle);
+      }
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    } catch (Exception e) {
+      LOG.debug("Unable to kill the child processes of StyleCop", e);
+      return false;
+    }
+  }
+
+  @Nullable
+  private static String unixPid(Process process) {
+    try {
+      Field field = process.getClass().getDeclaredField("pid");
+      field.setAccessible(true);
+      return Integer.toString(field.getInt(process));
+    } catch (Exception e) {
+      LOG.debug("Unable to get the pid of StyleCop's process", e);
+      return null;
+    }
+  }
+
+  private static void killDescendants(String pid) {
+    for (String child : run("pgrep", "-P", pid)) {
+      killDescendants(child.trim());
+      run("kill", "-KILL", child.trim());
+    }
+  }
+
+  private static List<String> run(String... command) {
+    InputStreamReader reader = null;
+    try {
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      reader = new InputStreamReader(process.getInputStream(), Charsets.UTF_8);
+      List<String> lines = CharStreams.readLines(reader);
+      process.waitFor();
+      return lines;
+    } catch (IOException e) {
+      LOG.debug("Unable to run " + command[0], e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      Closeables.closeQuietly(reader);
+    }
+    return Collections.<String>emptyList();
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Runs each analyzer namespace of the quality profile as a separate timed StyleCop pass over the same files, without importing any issue.
+// Each pass includes the startup of MSBuild and the parsing of the files by StyleCop, which are the same for all the namespaces.
+public class StyleCopAnalyzerProfiler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopAnalyzerProfiler.class);
+
+  private final StyleCopSettingsWriter settingsWriter;
+  private final StyleCopMsBuildWriter msBuildWriter;
+  private final StyleCopReportParser parser;
+  private final StyleCopExecutor executor;
+
+  public StyleCopAnalyzerProfiler(StyleCopSettingsWriter settingsWriter, StyleCopMsBuildWriter msBuildWriter, StyleCopReportParser parser,
+    StyleCopExecutor executor) {
+    this.settingsWriter = settingsWriter;
+    this.msBuildWriter = msBuildWriter;
+    this.parser = parser;
+    this.executor = executor;
+  }
+
+  public List<Pass> profile(StyleCopConfiguration styleCopConf, List<String> ruleConfigKeys, List<File> files, File workingDir, String timeoutMessage) {
+    ImmutableList.Builder<Pass> builder = ImmutableList.builder();
+
+    List<String> ruleNamespaces = StyleCopSettingsWriter.ruleNamespaces(ruleConfigKeys);
+    for (int i = 0; i < ruleNamespaces.size(); i++) {
+      String ruleNamespace = ruleNamespaces.get(i);
+      LOG.info("Profiling the StyleCop analyzer " + ruleNamespace + " on " + files.size() + " files.");
+
+      File settingsFile = new File(workingDir, "StyleCop-profile-" + i + ".StyleCop");
+      File msBuildFile = new File(workingDir, "StyleCop-msbuild-profile-" + i + ".proj");
+      File reportFile = new File(workingDir, "StyleCop-report-profile-" + i + ".xml");
+      FileUtils.deleteQuietly(reportFile);
+      settingsWriter.write(StyleCopSettingsWriter.ruleConfigKeys(ruleNamespace, ruleConfigKeys), styleCopConf.ignoredHungarianPrefixes(), settingsFile);
+      msBuildWriter.write(new File(styleCopConf.styleCopDllPath()), new File(styleCopConf.projectFilePath()), settingsFile, reportFile, files, msBuildFile);
+
+      long start = System.nanoTime();
+      executor.execute(styleCopConf.msBuildPath(), new StyleCopJob(msBuildFile, settingsFile, reportFile, files), styleCopConf.timeoutMinutes(),
+        timeoutMessage);
+      long nanos = System.nanoTime() - start;
+
+      final int[] violations = new int[1];
+      parser.parse(reportFile, new StyleCopIssueHandler() {
+        @Override
+        public void handle(StyleCopIssue issue) {
+          violations[0]++;
+        }
+      });
+
+      builder.add(new Pass(ruleNamespace, nanos, files.size(), violations[0]));
+    }
+
+    return builder.build();
+  }
+
+  // The slowest analyzers first
+  public static String summary(List<Pass> passes) {
+    StringBuilder sb = new StringBuilder("StyleCop analyzers profile:");
+    for (Pass pass : slowestFirst(passes)) {
+      sb.append("\n  ").append(pass.ruleNamespace()).append(": ")
+        .append(seconds(pass)).append(" s, ")
+        .append(pass.filesPerSecond()).append(" files/s, ")
+        .append(pass.violations()).append(" violations");
+    }
+    return sb.toString();
+  }
+
+  public static String toJson(List<Pass> passes) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    sb.append("  \"analyzers\": [");
+    List<Pass> sortedPasses = slowestFirst(passes);
+    for (int i = 0; i < sortedPasses.size(); i++) {
+      Pass pass = sortedPasses.get(i);
+      sb.append(i > 0 ? ",\n" : "\n");
+      sb.append("    {\"namespace\": ");
+      StyleCopStatistics.appendJsonString(sb, pass.ruleNamespace())
+        .append(", \"seconds\": ").append(seconds(pass))
+        .append(", \"files\": ").append(pass.files())
+        .append(", \"filesPerSecond\": ").append(pass.filesPerSecond())
+        .append(", \"violations\": ").append(pass.violations()).append('}');
+    }
+    sb.append(sortedPasses.isEmpty() ? "]\n" : "\n  ]\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  public static void write(List<Pass> passes, File file) {
+    try {
+      Files.createParentDirs(file);
+      Files.write(toJson(passes), file, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static List<Pass> slowestFirst(List<Pass> passes) {
+    List<Pass> result = Lists.newArrayList(passes);
+    Collections.sort(result, new Comparator<Pass>() {
+      @Override
+      public int compare(Pass a, Pass b) {
+        return Long.valueOf(b.nanos()).compareTo(a.nanos());
+      }
+    });
+    return result;
+  }
+
+  private static String seconds(Pass pass) {
+    return String.format(Locale.ENGLISH, "%.3f", pass.nanos() / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  public static class Pass {
+
+    private final String ruleNamespace;
+    private final long nanos;
+    private final int files;
+    private final int violations;
+
+    public Pass(String ruleNamespace, long nanos, int files, int violations) {
+      this.ruleNamespace = ruleNamespace;
+      this.nanos = nanos;
+      this.files = files;
+      this.violations = violations;
+    }
+
+    public String ruleNamespace() {
+      return ruleNamespace;
+    }
+
+    public long nanos() {
+      return nanos;
+    }
+
+    public int files() {
+      return files;
+    }
+
+    public long filesPerSecond() {
+      return nanos == 0 ? 0 : files * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    public int violations() {
+      return violations;
+    }
+
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import org.apache.commons.io.FilenameUtils;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.utils.SonarException;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// The StyleCop projects of all the modules, analyzed by a single MSBuild execution during the first module's analysis.
+// The following modules only import the report of their own project.
+// Also records which project owns each source file, so that the files linked into several projects are analyzed once.
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class StyleCopBatch implements BatchExtension {
+
+  private final List<File> projectFiles;
+  private final Map<String, File> fileOwners = Maps.newHashMap();
+  private Map<File, File> reportFiles;
+  private String settingsFingerprint;
+
+  public StyleCopBatch(ProjectReactor reactor) {
+    this(projectFiles(reactor));
+  }
+
+  @VisibleForTesting
+  StyleCopBatch(List<File> projectFiles) {
+    this.projectFiles = projectFiles;
+  }
+
+  private static List<File> projectFiles(ProjectReactor reactor) {
+    Set<File> result = Sets.newLinkedHashSet();
+    for (ProjectDefinition project : reactor.getProjects()) {
+      String projectFilePath = project.getProperties().getProperty(StyleCopPlugin.STYLECOP_PROJECT_FILE_PATH_PROPERTY_KEY);
+      if (projectFilePath != null) {
+        result.add(new File(projectFilePath).getAbsoluteFile());
+      }
+    }
+    return ImmutableList.copyOf(result);
+  }
+
+  public List<File> projectFiles() {
+    return projectFiles;
+  }
+
+  // The C# files compiled by the project, as listed by its Compile items. Null when it lists none, or when it relies on
+  // wildcards or properties, which only MSBuild can expand: its module is then analyzed on its own.
+  @Nullable
+  public static List<File> sourceFiles(File projectFile) {
+    File projectDir = projectFile.getAbsoluteFile().getParentFile();
+    List<String> includes = compileIncludes(projectFile);
+    List<File> result = Lists.newArrayList();
+    for (String include : includes) {
+      if (include.indexOf('*') != -1 || include.indexOf('?') != -1 || include.contains("$(")) {
+        return null;
+      }
+      if (include.toLowerCase(Locale.ENGLISH).endsWith(".cs")) {
+        String path = new File(projectDir, include.replace('\\', File.separatorChar)).getPath();
+        String normalized = FilenameUtils.normalize(path);
+        result.add(new File(normalized == null ? path : normalized));
+      }
+    }
+    return includes.isEmpty() ? null : result;
+  }
+
+  private static List<String> compileIncludes(File projectFile) {
+    List<String> result = Lists.newArrayList();
+    InputStream input = null;
+    XMLStreamReader stream = null;
+    try {
+      input = new FileInputStream(projectFile);
+      stream = StyleCopReportParser.XML_FACTORY.createXMLStreamReader(input);
+      while (stream.hasNext()) {
+        if (stream.next() == XMLStreamConstants.START_ELEMENT && "Compile".equals(stream.getLocalName())) {
+          String include = stream.getAttributeValue(null, "Include");
+          if (include != null) {
+            for (String item : include.split(";")) {
+              if (!item.trim().isEmpty()) {
+                result.add(unescape(item.trim()));
+              }
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new SonarException("Unable to read the project file \"" + projectFile.getAbsolutePath() + "\"", e);
+    } catch (XMLStreamException e) {
+      throw new SonarException("Unable to read the project file \"" + projectFile.getAbsolutePath() + "\"", e);
+    } finally {
+      closeQuietly(stream);
+      Closeables.closeQuietly(input);
+    }
+    return result;
+  }
+
+  // MSBuild's %XX escaping of the special characters of item specifications
+  private static String unescape(String item) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < item.length(); i++) {
+      char c = item.charAt(i);
+      if (c == '%' && i + 2 < item.length() && Character.digit(item.charAt(i + 1), 16) != -1 && Character.digit(item.charAt(i + 2), 16) != -1) {
+        sb.append((char) Integer.parseInt(item.substring(i + 1, i + 3), 16));
+        i += 2;
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void closeQuietly(@Nullable XMLStreamReader stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (XMLStreamException e) {
+        // Ignore
+      }
+    }
+  }
+
+  public boolean isExecuted() {
+    return reportFiles != null;
+  }
+
+  public void executed(String settingsFingerprint, Map<File, File> reportFilesByProjectFile) {
+    this.settingsFingerprint = settingsFingerprint;
+    this.reportFiles = ImmutableMap.copyOf(reportFilesByProjectFile);
+  }
+
+  // Null when the project was not part of the batch, or when it was analyzed with other StyleCop settings
+  @Nullable
+  public File reportFile(File projectFile, String settingsFingerprint) {
+    if (reportFiles == null || !this.settingsFingerprint.equals(settingsFingerprint)) {
+      return null;
+    }
+    return reportFiles.get(projectFile.getAbsoluteFile());
+  }
+
+  // The given files which no other project claimed before: the first project to claim a file owns it
+  public synchronized List<File> claim(File projectFile, List<File> files) {
+    File owner = projectFile.getAbsoluteFile();
+    ImmutableList.Builder<File> builder = ImmutableList.builder();
+    for (File file : files) {
+      String key = StyleCopPaths.normalize(file);
+      File previousOwner = fileOwners.get(key);
+      if (previousOwner == null) {
+        fileOwners.put(key, owner);
+        builder.add(file);
+      } else if (previousOwner.equals(owner)) {
+        builder.add(file);
+      }
+    }
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.SonarException;
+import org.sonar.plugins.stylecop.StyleCopStatistics.Phase;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// The projects of all the modules in a single local StyleCop execution, on the first module, whose reports are then imported by each module.
+// A module whose project was not part of it is analyzed on its own.
+public class StyleCopBatchExecution extends StyleCopExecution {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopBatchExecution.class);
+
+  private final StyleCopBatch batch;
+  private final StyleCopResultsCache resultsCache;
+  private final StyleCopExecution fallback;
+
+  public StyleCopBatchExecution(StyleCopConfiguration styleCopConf, File workingDir, StyleCopMsBuildWriter msBuildWriter, StyleCopReportParser parser,
+    StyleCopExecutor executor, StyleCopStatistics statistics, StyleCopBatch batch, @Nullable StyleCopResultsCache resultsCache) {
+    super(styleCopConf, workingDir, msBuildWriter, parser, executor, statistics);
+    this.batch = batch;
+    this.resultsCache = resultsCache;
+    this.fallback = new StyleCopSingleExecution(styleCopConf, workingDir, msBuildWriter, parser, executor, statistics, resultsCache);
+  }
+
+  @Override
+  public void execute(File settingsFile, List<File> files, StyleCopIssueHandler handler) {
+    long start = System.nanoTime();
+    File reportFile = reportFile(settingsFile, files);
+    if (reportFile == null) {
+      fallback.execute(settingsFile, files, handler);
+    } else {
+      statistics.addSince(Phase.EXECUTION, start);
+      parse(reportFile, handler);
+    }
+  }
+
+  // Analyzes the projects of all the modules at once on the first call, and returns the report of this module's project.
+  // Null when this module must be analyzed on its own.
+  @Nullable
+  private File reportFile(File settingsFile, List<File> files) {
+    File projectFile = new File(styleCopConf.projectFilePath()).getAbsoluteFile();
+    String settingsFingerprint = fingerprint(settingsFile);
+
+    if (!batch.isExecuted()) {
+      List<File> projectFiles = Lists.newArrayList(batch.projectFiles());
+      if (!projectFiles.contains(projectFile)) {
+        projectFiles.add(projectFile);
+      }
+
+      Map<File, File> reportFiles = Maps.newLinkedHashMap();
+      List<StyleCopMsBuildWriter.BatchProject> batchProjects = Lists.newArrayList();
+      StyleCopGeneratedCode generatedCode = styleCopConf.excludeGeneratedCode()
+        ? new StyleCopGeneratedCode(new File(workingDir, "StyleCop-generated-batch.cache"))
+        : null;
+      for (int i = 0; i < projectFiles.size(); i++) {
+        File batchProjectFile = projectFiles.get(i);
+
+        // The files of this module are known, the ones of the other modules are listed by their project
+        List<File> batchFiles = files;
+        if (!batchProjectFile.equals(projectFile)) {
+          batchFiles = StyleCopBatch.sourceFiles(batchProjectFile);
+          if (batchFiles == null) {
+            continue;
+          }
+          if (styleCopConf.analyzeSharedFilesOnce()) {
+            batchFiles = batch.claim(batchProjectFile, batchFiles);
+          }
+          if (generatedCode != null) {
+            batchFiles = generatedCode.exclude(batchFiles);
+          }
+        }
+        File reportFile = new File(workingDir, "StyleCop-report-batch-" + i + ".xml");
+        FileUtils.deleteQuietly(reportFile);
+        reportFiles.put(batchProjectFile, reportFile);
+        File cacheDirectory = resultsCache == null ? null : resultsCache.directory("batch-" + DigestUtils.sha1Hex(StyleCopPaths.normalize(batchProjectFile)));
+        batchProjects.add(new StyleCopMsBuildWriter.BatchProject(batchProjectFile, batchFiles, reportFile, cacheDirectory));
+      }
+
+      File msBuildFile = new File(workingDir, "StyleCop-msbuild-batch.proj");
+      msBuildWriter.write(new File(styleCopConf.styleCopDllPath()), batchProjects, settingsFile, msBuildFile);
+
+      LOG.info("Executing StyleCop on the " + batchProjects.size() + " projects of the analysis at once.");
+      executor.execute(
+        styleCopConf.msBuildPath(),
+        msBuildFile.getAbsolutePath(),
+        styleCopConf.timeoutMinutes(),
+        TIMEOUT_EXCEPTION_MESSAGE);
+      batch.executed(settingsFingerprint, reportFiles);
+    }
+
+    File reportFile = batch.reportFile(projectFile, settingsFingerprint);
+    if (reportFile == null) {
+      LOG.info("The project \"" + projectFile.getAbsolutePath() + "\" was not analyzed with the other ones, executing StyleCop on it alone.");
+    } else if (!reportFile.isFile()) {
+      throw new SonarException("StyleCop did not produce the report \"" + reportFile.getAbsolutePath() + "\" of the project \""
+        + projectFile.getAbsolutePath() + "\".");
+    }
+    return reportFile;
+  }
+
+  private static String fingerprint(File settingsFile) {
+    try {
+      return DigestUtils.sha1Hex(Files.toByteArray(settingsFile));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+}
@@ -21,11 +21,16 @@ package org.sonar.plugins.stylecop;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.config.Settings;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.util.List;
 
 public class StyleCopConfiguration {
 
@@ -98,6 +103,76 @@ public class StyleCopConfiguration {
     return settings.getInt(StyleCopPlugin.STYLECOP_TIMEOUT_MINUTES_PROPERTY_KEY);
   }
 
+  public int inactivityTimeoutMinutes() {
+    return Math.max(0, settings.getInt(StyleCopPlugin.STYLECOP_INACTIVITY_TIMEOUT_MINUTES_PROPERTY_KEY));
+  }
+
+  public boolean worker() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_WORKER_PROPERTY_KEY);
+  }
+
+  public boolean batch() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_BATCH_PROPERTY_KEY);
+  }
+
+  public int shards() {
+    return Math.max(1, settings.getInt(StyleCopPlugin.STYLECOP_SHARDS_PROPERTY_KEY));
+  }
+
+  public int analyzerGroups() {
+    return Math.max(1, settings.getInt(StyleCopPlugin.STYLECOP_ANALYZER_GROUPS_PROPERTY_KEY));
+  }
+
+  public boolean incremental() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_INCREMENTAL_PROPERTY_KEY);
+  }
+
+  public boolean issueCache() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_ISSUE_CACHE_PROPERTY_KEY);
+  }
+
+  public boolean profileAnalyzers() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_PROFILE_ANALYZERS_PROPERTY_KEY);
+  }
+
+  public boolean excludeGeneratedCode() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_EXCLUDE_GENERATED_CODE_PROPERTY_KEY);
+  }
+
+  public int importGroupingThreshold() {
+    return Math.max(0, settings.getInt(StyleCopPlugin.STYLECOP_IMPORT_GROUPING_THRESHOLD_PROPERTY_KEY));
+  }
+
+  public boolean mappedReportParser() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_MAPPED_REPORT_PARSER_PROPERTY_KEY);
+  }
+
+  public int reportParserThreads() {
+    return Math.max(1, settings.getInt(StyleCopPlugin.STYLECOP_REPORT_PARSER_THREADS_PROPERTY_KEY));
+  }
+
+  public int outputLinesPerSecond() {
+    return Math.max(0, settings.getInt(StyleCopPlugin.STYLECOP_OUTPUT_LINES_PER_SECOND_PROPERTY_KEY));
+  }
+
+  public boolean rawOutput() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_RAW_OUTPUT_PROPERTY_KEY);
+  }
+
+  public List<String> remoteWorkers() {
+    return ImmutableList.copyOf(Splitter.on(',').omitEmptyStrings().trimResults().split(Strings.nullToEmpty(
+      settings.getString(StyleCopPlugin.STYLECOP_REMOTE_WORKERS_PROPERTY_KEY))));
+  }
+
+  @Nullable
+  public String remoteWorkersSecret() {
+    return settings.getString(StyleCopPlugin.STYLECOP_REMOTE_WORKERS_SECRET_PROPERTY_KEY);
+  }
+
+  public boolean analyzeSharedFilesOnce() {
+    return settings.getBoolean(StyleCopPlugin.STYLECOP_ANALYZE_SHARED_FILES_ONCE_PROPERTY_KEY);
+  }
+
   public Iterable<String> ignoredHungarianPrefixes() {
     return Splitter.on(',').omitEmptyStrings().trimResults().split(settings.getString(StyleCopPlugin.STYLECOP_IGNORED_HUNGARIAN_PREFIXES_PROPERTY_KEY));
   }
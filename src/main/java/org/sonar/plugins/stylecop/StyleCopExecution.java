@@ -0,0 +1,74 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import org.sonar.plugins.stylecop.StyleCopStatistics.Phase;
+
+import java.io.File;
+import java.util.List;
+
+// How StyleCop is executed on the files of a module and its reports imported: StyleCopSensor picks one of the subclasses
+public abstract class StyleCopExecution {
+
+  static final String TIMEOUT_EXCEPTION_MESSAGE = "StyleCop's execution timed out. Increase the timeout by setting \""
+    + StyleCopPlugin.STYLECOP_TIMEOUT_MINUTES_PROPERTY_KEY + "\" property.";
+
+  protected final StyleCopConfiguration styleCopConf;
+  protected final File workingDir;
+  protected final StyleCopMsBuildWriter msBuildWriter;
+  protected final StyleCopReportParser parser;
+  protected final StyleCopExecutor executor;
+  protected final StyleCopStatistics statistics;
+
+  protected StyleCopExecution(StyleCopConfiguration styleCopConf, File workingDir, StyleCopMsBuildWriter msBuildWriter, StyleCopReportParser parser,
+    StyleCopExecutor executor, StyleCopStatistics statistics) {
+    this.styleCopConf = styleCopConf;
+    this.workingDir = workingDir;
+    this.msBuildWriter = msBuildWriter;
+    this.parser = parser;
+    this.executor = executor;
+    this.statistics = statistics;
+  }
+
+  public abstract void execute(File settingsFile, List<File> files, StyleCopIssueHandler handler);
+
+  // The parsing time excludes the time spent importing the issues, which is accounted separately
+  protected void parse(File reportFile, StyleCopIssueHandler handler) {
+    long importNanos = importNanos();
+    long start = System.nanoTime();
+    try {
+      parser.parse(reportFile, handler);
+      if (handler instanceof StyleCopIssueGrouper) {
+        ((StyleCopIssueGrouper) handler).flush();
+      }
+    } finally {
+      if (handler instanceof StyleCopIssueGrouper) {
+        ((StyleCopIssueGrouper) handler).close();
+      }
+    }
+    // The import time is an estimate, which may slightly exceed the actual time on small reports
+    statistics.add(Phase.PARSING, Math.max(0, System.nanoTime() - start - (importNanos() - importNanos)));
+  }
+
+  protected long importNanos() {
+    return statistics.nanos(Phase.RESOLUTION) + statistics.nanos(Phase.ADD_ISSUE);
+  }
+
+}
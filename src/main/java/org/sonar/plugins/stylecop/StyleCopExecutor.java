@@ -19,54 +19,354 @@
  */
 package org.sonar.plugins.stylecop;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.SonarException;
-import org.sonar.api.utils.command.Command;
-import org.sonar.api.utils.command.CommandException;
-import org.sonar.api.utils.command.CommandExecutor;
-import org.sonar.api.utils.command.StreamConsumer;
 
+import javax.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class StyleCopExecutor {
 
-  private static final IssuesFilteringConsumer ISSUES_FILTERING_CONSUMER = new IssuesFilteringConsumer();
+  private static final long POLL_MILLIS = 100;
+  private static final long OUTPUT_DRAIN_MILLIS = 5000;
+
+  private final long inactivityTimeoutMillis;
+  private final StyleCopWorkers workers;
+  private final StyleCopRemoteWorkers remoteWorkers;
+  private final StyleCopOutputLog outputLog;
+
+  public StyleCopExecutor() {
+    this(0, null, null, new StyleCopOutputLog(0, null));
+  }
+
+  public StyleCopExecutor(int inactivityTimeoutMinutes, @Nullable StyleCopWorkers workers, @Nullable StyleCopRemoteWorkers remoteWorkers,
+    StyleCopOutputLog outputLog) {
+    this(inactivityTimeoutMinutes, TimeUnit.MINUTES, workers, remoteWorkers, outputLog);
+  }
+
+  @VisibleForTesting
+  StyleCopExecutor(long inactivityTimeout, TimeUnit unit, @Nullable StyleCopWorkers workers) {
+    this(inactivityTimeout, unit, workers, null, new StyleCopOutputLog(0, null));
+  }
+
+  @VisibleForTesting
+  StyleCopExecutor(long inactivityTimeout, TimeUnit unit, @Nullable StyleCopWorkers workers, @Nullable StyleCopRemoteWorkers remoteWorkers,
+    StyleCopOutputLog outputLog) {
+    this.inactivityTimeoutMillis = unit.toMillis(inactivityTimeout);
+    this.workers = workers;
+    this.remoteWorkers = remoteWorkers;
+    this.outputLog = outputLog;
+  }
+
+  public void execute(String executable, StyleCopJob job, int timeoutMinutes, String timeoutExceptionMessage) {
+    try {
+      executeOne(executable, job, timeoutMinutes, timeoutExceptionMessage);
+    } finally {
+      outputLog.end();
+    }
+  }
 
+  // The projects which only exist as an MSBuild file, such as the batch ones, are always executed locally
   public void execute(String executable, String msBuildFile, int timeoutMinutes, String timeoutExceptionMessage) {
     try {
-      CommandExecutor.create().execute(
-        Command.create(executable)
-          .addArgument(msBuildFile),
-        ISSUES_FILTERING_CONSUMER, ISSUES_FILTERING_CONSUMER, TimeUnit.MINUTES.toMillis(timeoutMinutes));
-    } catch (CommandException e) {
-      if (isTimeout(e)) {
-        throw new SonarException(timeoutExceptionMessage, e);
+      executeLocally(executable, msBuildFile, timeoutMinutes, timeoutExceptionMessage);
+    } finally {
+      outputLog.end();
+    }
+  }
+
+  private void executeOne(String executable, StyleCopJob job, int timeoutMinutes, String timeoutExceptionMessage) {
+    if (remoteWorkers == null) {
+      executeLocally(executable, job.msBuildFile().getAbsolutePath(), timeoutMinutes, timeoutExceptionMessage);
+    } else {
+      executeOnRemoteWorker(job, timeoutMinutes, timeoutExceptionMessage);
+    }
+  }
+
+  private void executeLocally(String executable, String msBuildFile, int timeoutMinutes, String timeoutExceptionMessage) {
+    if (workers == null) {
+      executeProcess(executable, msBuildFile, timeoutMinutes, timeoutExceptionMessage);
+    } else {
+      executeOnWorker(executable, msBuildFile, timeoutMinutes, timeoutExceptionMessage);
+    }
+  }
+
+  // The remote workers execute their own MSBuild, and each of their attempts is logged only once it succeeded
+  private void executeOnRemoteWorker(StyleCopJob job, int timeoutMinutes, String timeoutExceptionMessage) {
+    try {
+      remoteWorkers.execute(job, TimeUnit.MINUTES.toMillis(timeoutMinutes), inactivityTimeoutMillis, new Supplier<OutputWatcher>() {
+        @Override
+        public OutputWatcher get() {
+          return new OutputWatcher(outputLog.shard());
+        }
+      }, timeoutExceptionMessage);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private void executeProcess(String executable, String msBuildFile, int timeoutMinutes, String timeoutExceptionMessage) {
+    final Process process;
+    try {
+      process = new ProcessBuilder(executable, msBuildFile).start();
+    } catch (IOException e) {
+      throw new SonarException("Unable to execute \"" + executable + "\" on \"" + msBuildFile + "\"", e);
+    }
+
+    OutputWatcher watcher = new OutputWatcher(outputLog.shard());
+    Thread stdout = watcher.consume(process.getInputStream());
+    Thread stderr = watcher.consume(process.getErrorStream());
+    Closeables.closeQuietly(process.getOutputStream());
+
+    try {
+      watch(process, new Execution() {
+        @Override
+        public boolean isRunning() {
+          return isAlive(process);
+        }
+      }, watcher, timeoutMinutes, timeoutExceptionMessage);
+
+      stdout.join(OUTPUT_DRAIN_MILLIS);
+      stderr.join(OUTPUT_DRAIN_MILLIS);
+    } catch (InterruptedException e) {
+      ProcessTree.kill(process);
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } finally {
+      watcher.end();
+    }
+  }
+
+  private void executeOnWorker(String executable, String msBuildFile, int timeoutMinutes, String timeoutExceptionMessage) {
+    final StyleCopWorkers.Worker worker = workers.acquire(executable);
+    boolean reusable = false;
+    OutputWatcher watcher = new OutputWatcher(outputLog.shard());
+    try {
+      worker.run(msBuildFile, watcher);
+      watch(worker.process(), new Execution() {
+        @Override
+        public boolean isRunning() {
+          return worker.isRunning() && isAlive(worker.process());
+        }
+      }, watcher, timeoutMinutes, timeoutExceptionMessage);
+
+      if (worker.isRunning()) {
+        throw new SonarException("The StyleCop host process exited unexpectedly while analyzing \"" + msBuildFile + "\"");
+      }
+      reusable = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } finally {
+      watcher.end();
+      if (reusable) {
+        workers.release(worker);
+      } else {
+        workers.discard(worker);
+      }
+    }
+  }
+
+  private void watch(Process process, Execution execution, OutputWatcher watcher, int timeoutMinutes, String timeoutExceptionMessage)
+    throws InterruptedException {
+    long timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+    long start = System.currentTimeMillis();
+
+    while (execution.isRunning()) {
+      long now = System.currentTimeMillis();
+      if (now - start > timeoutMillis) {
+        ProcessTree.kill(process);
+        throw new SonarException(timeoutExceptionMessage);
+      }
+      if (inactivityTimeoutMillis > 0 && now - watcher.lastOutputMillis > inactivityTimeoutMillis) {
+        ProcessTree.kill(process);
+        throw new SonarException(stalledMessage(watcher));
+      }
+      Thread.sleep(POLL_MILLIS);
+    }
+  }
+
+  private String stalledMessage(OutputWatcher watcher) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("StyleCop's execution was stopped after ")
+      .append(TimeUnit.MILLISECONDS.toSeconds(inactivityTimeoutMillis))
+      .append(" seconds without any output");
+    if (watcher.lastFile != null) {
+      sb.append(", the last file being analyzed was \"").append(watcher.lastFile).append('"');
+    } else if (watcher.lastLine != null) {
+      sb.append(", its last output was \"").append(watcher.lastLine).append('"');
+    }
+    sb.append(". Increase the inactivity timeout by setting \"")
+      .append(StyleCopPlugin.STYLECOP_INACTIVITY_TIMEOUT_MINUTES_PROPERTY_KEY)
+      .append("\" property.");
+    return sb.toString();
+  }
+
+  private static boolean isAlive(Process process) {
+    try {
+      process.exitValue();
+      return false;
+    } catch (IllegalThreadStateException e) {
+      return true;
+    }
+  }
+
+  public void execute(final String executable, List<StyleCopJob> jobs, int parallelism, final int timeoutMinutes, final String timeoutExceptionMessage,
+    CompletionListener listener) {
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    CompletionService<StyleCopJob> completionService = new ExecutorCompletionService<StyleCopJob>(pool);
+    try {
+      for (final StyleCopJob job : jobs) {
+        completionService.submit(new Callable<StyleCopJob>() {
+          @Override
+          public StyleCopJob call() {
+            executeOne(executable, job, timeoutMinutes, timeoutExceptionMessage);
+            return job;
+          }
+        });
       }
-      throw e;
+
+      // The listener is called from the current thread, while the remaining executions go on
+      for (int i = 0; i < jobs.size(); i++) {
+        listener.completed(completionService.take().get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      pool.shutdownNow();
+      outputLog.end();
     }
   }
 
-  private static boolean isTimeout(CommandException e) {
-    return e.getCause() instanceof TimeoutException;
+  private interface Execution {
+
+    boolean isRunning();
+
+  }
+
+  public interface CompletionListener {
+
+    void completed(StyleCopJob job);
+
   }
 
-  private static class IssuesFilteringConsumer implements StreamConsumer {
+  // Remembers when StyleCop last wrote something, and the last file it mentioned
+  private static class OutputWatcher implements StyleCopRemoteWorkers.Output {
 
-    private static final Logger LOG = LoggerFactory.getLogger(IssuesFilteringConsumer.class);
+    private static final Logger LOG = LoggerFactory.getLogger(StyleCopExecutor.class);
 
+    private static final String CS_EXTENSION = ".cs";
+    private static final Pattern FILE = Pattern.compile("([^\\s\"']+\\.cs)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final StyleCopOutputLog.Shard output;
+    private volatile long lastOutputMillis = System.currentTimeMillis();
+    private volatile String lastLine;
+    private volatile String lastFile;
+
+    public OutputWatcher(StyleCopOutputLog.Shard output) {
+      this.output = output;
+    }
+
+    public Thread consume(final InputStream stream) {
+      Thread thread = new Thread("StyleCop output") {
+        @Override
+        public void run() {
+          BufferedReader reader = new BufferedReader(new InputStreamReader(stream, Charset.defaultCharset()));
+          try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+              consumeLine(line);
+            }
+          } catch (IOException e) {
+            LOG.debug("Unable to read StyleCop's output", e);
+          } finally {
+            Closeables.closeQuietly(reader);
+          }
+        }
+      };
+      thread.setDaemon(true);
+      thread.start();
+      return thread;
+    }
+
+    // A single pass over the line: the warnings are recognized by their marker, and only the other lines mentioning a C# file
+    // go through a regular expression
     @Override
     public void consumeLine(String line) {
-      if (isIssue(line)) {
-        LOG.debug(line);
-      } else {
-        LOG.info(line);
+      long now = System.currentTimeMillis();
+      lastOutputMillis = now;
+      lastLine = line;
+
+      int warningIndex = StyleCopOutputLog.warningIndex(line);
+      String file = warningIndex == -1 ? mentionedFile(line) : warningFile(line, warningIndex);
+      if (file != null) {
+        lastFile = file;
+      }
+
+      output.log(line, warningIndex, now);
+    }
+
+    @Override
+    public void end() {
+      output.end();
+    }
+
+    @Override
+    public void discard() {
+      output.discard();
+    }
+
+    // "<file>.cs(<line>,<column>): warning : ..."
+    @Nullable
+    private static String warningFile(String line, int warningIndex) {
+      int parenthesis = line.lastIndexOf('(', warningIndex);
+      if (parenthesis == -1) {
+        return null;
       }
+      String file = line.substring(0, parenthesis).trim();
+      return file.regionMatches(true, file.length() - CS_EXTENSION.length(), CS_EXTENSION, 0, CS_EXTENSION.length()) ? file : null;
     }
 
-    private static boolean isIssue(String line) {
-      return line.contains(": warning : SA");
+    @Nullable
+    private static String mentionedFile(String line) {
+      if (!containsIgnoreCase(line, CS_EXTENSION)) {
+        return null;
+      }
+      Matcher matcher = FILE.matcher(line);
+      return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static boolean containsIgnoreCase(String line, String s) {
+      for (int i = line.indexOf('.'); i != -1; i = line.indexOf('.', i + 1)) {
+        if (line.regionMatches(true, i, s, 0, s.length())) {
+          return true;
+        }
+      }
+      return false;
     }
 
   }
@@ -0,0 +1,210 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Tells apart the generated source files, which are not worth analyzing, by their name or by the marker in their header.
+// The classification of each file is cached by its size and last modification time. Whether a T4 template sits next to the
+// file is not part of it, and is checked on each analysis.
+public class StyleCopGeneratedCode {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopGeneratedCode.class);
+
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = 4096;
+  private static final String[] GENERATED_SUFFIXES = {".designer.cs", ".g.cs", ".g.i.cs", ".generated.cs", ".assemblyattributes.cs"};
+  private static final String[] GENERATED_MARKERS = {"<auto-generated", "<autogenerated"};
+
+  private final File file;
+  private final Map<String, Entry> previousEntries;
+  private final Map<String, Entry> entries = Maps.newLinkedHashMap();
+
+  public StyleCopGeneratedCode(File file) {
+    this.file = file;
+    this.previousEntries = load();
+  }
+
+  public List<File> exclude(Iterable<File> files) {
+    ImmutableList.Builder<File> builder = ImmutableList.builder();
+    int generatedFiles = 0;
+    int scannedFiles = 0;
+
+    for (File sourceFile : files) {
+      String key = StyleCopPaths.normalize(sourceFile);
+      long length = sourceFile.length();
+      long lastModified = sourceFile.lastModified();
+
+      Entry entry = previousEntries.get(key);
+      if (entry == null || entry.length != length || entry.lastModified != lastModified) {
+        entry = new Entry(length, lastModified, isGeneratedByNameOrHeader(sourceFile));
+        scannedFiles++;
+      }
+      entries.put(key, entry);
+
+      if (entry.generated || isTextTemplateOutput(sourceFile)) {
+        LOG.debug("Excluding the generated file \"" + sourceFile.getAbsolutePath() + "\" from StyleCop's analysis.");
+        generatedFiles++;
+      } else {
+        builder.add(sourceFile);
+      }
+    }
+
+    LOG.info("Excluding " + generatedFiles + " generated files from StyleCop's analysis, " + scannedFiles + " files scanned.");
+    save();
+    return builder.build();
+  }
+
+  @VisibleForTesting
+  static boolean isGenerated(File file) {
+    return isTextTemplateOutput(file) || isGeneratedByNameOrHeader(file);
+  }
+
+  private static boolean isGeneratedByNameOrHeader(File file) {
+    String name = file.getName().toLowerCase(Locale.ENGLISH);
+    for (String suffix : GENERATED_SUFFIXES) {
+      if (name.endsWith(suffix)) {
+        return true;
+      }
+    }
+    if (name.startsWith("temporarygeneratedfile_")) {
+      return true;
+    }
+
+    String header = header(file).toLowerCase(Locale.ENGLISH);
+    for (String marker : GENERATED_MARKERS) {
+      if (header.contains(marker)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // T4 writes its output next to the template, with the same base name
+  private static boolean isTextTemplateOutput(File file) {
+    String name = file.getName();
+    int dot = name.lastIndexOf('.');
+    File parent = file.getParentFile();
+    return dot > 0 && parent != null && new File(parent, name.substring(0, dot) + ".tt").isFile();
+  }
+
+  private static String header(File file) {
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      byte[] buffer = new byte[HEADER_BYTES];
+      int length = ByteStreams.read(input, buffer, 0, buffer.length);
+      return new String(buffer, 0, length, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(input);
+    }
+  }
+
+  private void save() {
+    File tmpFile = new File(file.getPath() + ".tmp");
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+      out.writeInt(VERSION);
+      out.writeInt(entries.size());
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue().length);
+        out.writeLong(entry.getValue().lastModified);
+        out.writeBoolean(entry.getValue().generated);
+      }
+      out.close();
+
+      FileUtils.deleteQuietly(file);
+      if (!tmpFile.renameTo(file)) {
+        throw new IOException("Unable to rename " + tmpFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  private Map<String, Entry> load() {
+    Map<String, Entry> result = Maps.newHashMap();
+    if (!file.isFile()) {
+      return result;
+    }
+
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != VERSION) {
+        return result;
+      }
+
+      int entryCount = in.readInt();
+      for (int i = 0; i < entryCount; i++) {
+        result.put(in.readUTF(), new Entry(in.readLong(), in.readLong(), in.readBoolean()));
+      }
+      return result;
+    } catch (IOException e) {
+      LOG.warn("Discarding the corrupted StyleCop generated code cache " + file.getAbsolutePath() + ": " + e.getMessage());
+      return Maps.newHashMap();
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private static class Entry {
+
+    private final long length;
+    private final long lastModified;
+    private final boolean generated;
+
+    public Entry(long length, long lastModified, boolean generated) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.generated = generated;
+    }
+
+  }
+
+}
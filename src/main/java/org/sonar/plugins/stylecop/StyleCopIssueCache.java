@@ -0,0 +1,274 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class StyleCopIssueCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopIssueCache.class);
+
+  private static final int VERSION = 2;
+
+  private final File file;
+  private final String fingerprint;
+  private final List<String> ruleConfigKeys;
+  private List<String> addedRuleConfigKeys = ImmutableList.of();
+  private Map<String, Entry> previousEntries;
+  private final Map<String, Entry> entries = Maps.newLinkedHashMap();
+  private final List<File> unchangedFiles = Lists.newArrayList();
+
+  // The fingerprint covers the settings other than the rules, whose changes are handled incrementally
+  public StyleCopIssueCache(File file, String fingerprint, List<String> ruleConfigKeys) {
+    this.file = file;
+    this.fingerprint = fingerprint;
+    this.ruleConfigKeys = ImmutableList.copyOf(ruleConfigKeys);
+    this.previousEntries = load();
+  }
+
+  public List<File> changedFiles(Iterable<File> files) {
+    ImmutableList.Builder<File> builder = ImmutableList.builder();
+    int unchangedFiles = 0;
+
+    for (File sourceFile : files) {
+      String key = StyleCopPaths.normalize(sourceFile);
+      String hash = hash(sourceFile);
+      Entry previousEntry = previousEntries.get(key);
+
+      if (previousEntry != null && previousEntry.hash.equals(hash)) {
+        entries.put(key, previousEntry);
+        this.unchangedFiles.add(sourceFile);
+        unchangedFiles++;
+      } else {
+        entries.put(key, new Entry(hash, true, Lists.<StyleCopIssue>newArrayList()));
+        builder.add(sourceFile);
+      }
+    }
+    previousEntries = Maps.newHashMap();
+
+    List<File> result = builder.build();
+    LOG.info("Replaying the StyleCop issues of " + unchangedFiles + " unchanged files, " + result.size() + " files left to analyze.");
+    return result;
+  }
+
+  // The files to analyze with the rules activated since the cached issues were produced
+  public List<File> unchangedFiles() {
+    return unchangedFiles;
+  }
+
+  public List<String> addedRuleConfigKeys() {
+    return addedRuleConfigKeys;
+  }
+
+  public void replay(StyleCopIssueHandler handler) {
+    for (Entry entry : entries.values()) {
+      if (!entry.changed) {
+        for (StyleCopIssue issue : entry.issues) {
+          handler.handle(issue);
+        }
+      }
+    }
+  }
+
+  public StyleCopIssueHandler recorder(final StyleCopIssueHandler delegate) {
+    return new StyleCopIssueHandler() {
+      @Override
+      public void handle(StyleCopIssue issue) {
+        // Unchanged files are only analyzed with the newly activated rules, whose issues complete the cached ones
+        Entry entry = entries.get(StyleCopPaths.normalize(issue.source()));
+        if (entry != null) {
+          entry.issues.add(issue);
+        }
+        delegate.handle(issue);
+      }
+    };
+  }
+
+  public void save() {
+    File tmpFile = new File(file.getPath() + ".tmp");
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))));
+      out.writeInt(VERSION);
+      out.writeUTF(fingerprint);
+      out.writeInt(ruleConfigKeys.size());
+      for (String ruleConfigKey : ruleConfigKeys) {
+        out.writeUTF(ruleConfigKey);
+      }
+      out.writeInt(entries.size());
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeUTF(entry.getValue().hash);
+        out.writeInt(entry.getValue().issues.size());
+        for (StyleCopIssue issue : entry.getValue().issues) {
+          write(out, issue);
+        }
+      }
+      out.close();
+
+      FileUtils.deleteQuietly(file);
+      if (!tmpFile.renameTo(file)) {
+        throw new IOException("Unable to rename " + tmpFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  private Map<String, Entry> load() {
+    Map<String, Entry> result = Maps.newHashMap();
+    if (!file.isFile()) {
+      return result;
+    }
+
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+      if (in.readInt() != VERSION || !fingerprint.equals(in.readUTF())) {
+        LOG.info("Discarding the cached StyleCop issues, which were produced with different settings.");
+        return result;
+      }
+
+      int ruleCount = in.readInt();
+      Set<String> previousRuleConfigKeys = Sets.newHashSet();
+      for (int i = 0; i < ruleCount; i++) {
+        previousRuleConfigKeys.add(in.readUTF());
+      }
+      Set<String> removedRuleConfigKeys = Sets.newHashSet(Sets.difference(previousRuleConfigKeys, ImmutableSet.copyOf(ruleConfigKeys)));
+      List<String> added = Lists.newArrayList();
+      for (String ruleConfigKey : ruleConfigKeys) {
+        if (!previousRuleConfigKeys.contains(ruleConfigKey)) {
+          added.add(ruleConfigKey);
+        }
+      }
+
+      int entryCount = in.readInt();
+      int removedIssues = 0;
+      for (int i = 0; i < entryCount; i++) {
+        String key = in.readUTF();
+        String hash = in.readUTF();
+        int issueCount = in.readInt();
+        List<StyleCopIssue> issues = Lists.newArrayListWithCapacity(issueCount);
+        for (int j = 0; j < issueCount; j++) {
+          StyleCopIssue issue = read(in);
+          if (removedRuleConfigKeys.contains(issue.ruleNamespace() + "#" + issue.rule())) {
+            removedIssues++;
+          } else {
+            issues.add(issue);
+          }
+        }
+        result.put(key, new Entry(hash, false, issues));
+      }
+
+      if (!added.isEmpty() || !removedRuleConfigKeys.isEmpty()) {
+        LOG.info("The quality profile changed since the cached StyleCop issues were produced: " + added.size() + " rules were activated, "
+          + removedRuleConfigKeys.size() + " deactivated, discarding their " + removedIssues + " cached issues.");
+      }
+      addedRuleConfigKeys = ImmutableList.copyOf(added);
+      return result;
+    } catch (IOException e) {
+      LOG.warn("Discarding the corrupted StyleCop issues cache " + file.getAbsolutePath() + ": " + e.getMessage());
+      return Maps.newHashMap();
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  static void write(DataOutputStream out, StyleCopIssue issue) throws IOException {
+    out.writeInt(issue.reportLine());
+    out.writeInt(issue.lineNumber());
+    out.writeUTF(issue.source());
+    writeNullableUTF(out, issue.ruleNamespace());
+    writeNullableUTF(out, issue.rule());
+    out.writeUTF(issue.message());
+  }
+
+  static StyleCopIssue read(DataInputStream in) throws IOException {
+    return new StyleCopIssue(in.readInt(), in.readInt(), in.readUTF(), readNullableUTF(in), readNullableUTF(in), in.readUTF());
+  }
+
+  private static void writeNullableUTF(DataOutputStream out, @Nullable String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  @Nullable
+  private static String readNullableUTF(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static String hash(File file) {
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      return DigestUtils.sha1Hex(input);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(input);
+    }
+  }
+
+  private static class Entry {
+
+    private final String hash;
+    private final boolean changed;
+    private final List<StyleCopIssue> issues;
+
+    public Entry(String hash, boolean changed, List<StyleCopIssue> issues) {
+      this.hash = hash;
+      this.changed = changed;
+      this.issues = issues;
+    }
+
+  }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// Passes on the issues grouped by source file, so that each file is resolved once.
+// Past the given number of buffered issues, they are spilled to partition files on disk, by hash of their source file.
+// Each partition is then grouped on its own, and the partitions of more than the given number of issues are themselves partitioned again:
+// at most the threshold is kept in memory.
+public class StyleCopIssueGrouper implements StyleCopIssueHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopIssueGrouper.class);
+
+  private static final int PARTITIONS = 64;
+  private static final int MAX_DEPTH = 4;
+
+  private final StyleCopIssueHandler delegate;
+  private final int threshold;
+  private final File spillDirectory;
+  private final Map<String, List<StyleCopIssue>> groups = Maps.newLinkedHashMap();
+  private int bufferedIssues = 0;
+  private int peakBufferedIssues = 0;
+  private Partitions partitions;
+
+  public StyleCopIssueGrouper(StyleCopIssueHandler delegate, int threshold, File spillDirectory) {
+    this.delegate = delegate;
+    this.threshold = threshold;
+    this.spillDirectory = spillDirectory;
+  }
+
+  @Override
+  public void handle(StyleCopIssue issue) {
+    add(groups, issue);
+    bufferedIssues++;
+    peakBufferedIssues = Math.max(peakBufferedIssues, bufferedIssues);
+
+    if (bufferedIssues >= threshold) {
+      spill();
+    }
+  }
+
+  // Passes on all the issues handled so far
+  public void flush() {
+    if (partitions == null) {
+      emit(groups);
+    } else {
+      try {
+        spill();
+        partitions.close();
+        Partitions spilled = partitions;
+        partitions = null;
+        for (int i = 0; i < PARTITIONS; i++) {
+          emit(spilled.file(i), spilled.counts[i], 1);
+        }
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      } finally {
+        close();
+      }
+    }
+  }
+
+  // Discards the spilled issues, whether or not they were flushed
+  public void close() {
+    if (partitions != null) {
+      partitions.closeQuietly();
+      partitions = null;
+    }
+    FileUtils.deleteQuietly(spillDirectory);
+  }
+
+  @VisibleForTesting
+  int peakBufferedIssues() {
+    return peakBufferedIssues;
+  }
+
+  private void spill() {
+    try {
+      if (partitions == null) {
+        LOG.info("More than " + threshold + " StyleCop issues to group by file, spilling them to " + spillDirectory.getAbsolutePath());
+        FileUtils.deleteQuietly(spillDirectory);
+        FileUtils.forceMkdir(spillDirectory);
+        partitions = new Partitions(new File(spillDirectory, "partition"), 0);
+      }
+
+      for (Map.Entry<String, List<StyleCopIssue>> group : groups.entrySet()) {
+        for (StyleCopIssue issue : group.getValue()) {
+          partitions.write(group.getKey(), issue);
+        }
+      }
+      groups.clear();
+      bufferedIssues = 0;
+    } catch (IOException e) {
+      close();
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private void emit(File file, int count, int depth) throws IOException {
+    if (count <= threshold) {
+      emit(read(file));
+    } else {
+      // Too large to be grouped in memory: partition it again, with another hash
+      Partitions subPartitions = new Partitions(file, depth);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        for (int i = 0; i < count; i++) {
+          StyleCopIssue issue = StyleCopIssueCache.read(in);
+          subPartitions.write(StyleCopPaths.normalize(issue.source()), issue);
+        }
+        subPartitions.close();
+      } finally {
+        Closeables.closeQuietly(in);
+        subPartitions.closeQuietly();
+      }
+      FileUtils.forceDelete(file);
+
+      for (int i = 0; i < PARTITIONS; i++) {
+        if (subPartitions.counts[i] == count && depth >= MAX_DEPTH) {
+          // All its issues kept sharing a partition whatever the depth: they are those of a single file (or of files with the same hash code)
+          stream(subPartitions.file(i), count);
+        } else if (subPartitions.counts[i] > 0) {
+          emit(subPartitions.file(i), subPartitions.counts[i], depth + 1);
+        }
+      }
+    }
+  }
+
+  private void stream(File file, int count) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      for (int i = 0; i < count; i++) {
+        delegate.handle(StyleCopIssueCache.read(in));
+      }
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private Map<String, List<StyleCopIssue>> read(File file) throws IOException {
+    Map<String, List<StyleCopIssue>> result = Maps.newLinkedHashMap();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    int readIssues = 0;
+    try {
+      while (true) {
+        add(result, StyleCopIssueCache.read(in));
+        readIssues++;
+        peakBufferedIssues = Math.max(peakBufferedIssues, readIssues);
+      }
+    } catch (EOFException e) {
+      return result;
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private void emit(Map<String, List<StyleCopIssue>> groupsToEmit) {
+    for (List<StyleCopIssue> group : groupsToEmit.values()) {
+      for (StyleCopIssue issue : group) {
+        delegate.handle(issue);
+      }
+    }
+    groupsToEmit.clear();
+    bufferedIssues = 0;
+  }
+
+  private static void add(Map<String, List<StyleCopIssue>> groups, StyleCopIssue issue) {
+    String key = StyleCopPaths.normalize(issue.source());
+    List<StyleCopIssue> group = groups.get(key);
+    if (group == null) {
+      group = Lists.newArrayList();
+      groups.put(key, group);
+    }
+    group.add(issue);
+  }
+
+  // The partition files "<prefix>-<i>", and the number of issues written to each one
+  private static class Partitions {
+
+    private final File prefix;
+    private final int depth;
+    private final DataOutputStream[] outputs = new DataOutputStream[PARTITIONS];
+    private final int[] counts = new int[PARTITIONS];
+
+    public Partitions(File prefix, int depth) throws IOException {
+      this.prefix = prefix;
+      this.depth = depth;
+      try {
+        for (int i = 0; i < PARTITIONS; i++) {
+          outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file(i))));
+        }
+      } catch (IOException e) {
+        closeQuietly();
+        throw e;
+      }
+    }
+
+    public File file(int i) {
+      return new File(prefix.getPath() + "-" + i);
+    }
+
+    public void write(String key, StyleCopIssue issue) throws IOException {
+      int i = (hash(key.hashCode(), depth) & Integer.MAX_VALUE) % PARTITIONS;
+      StyleCopIssueCache.write(outputs[i], issue);
+      counts[i]++;
+    }
+
+    // Mixes the hash code with the depth, so that the keys which shared a partition at the previous depth are spread out
+    private static int hash(int hashCode, int depth) {
+      int h = hashCode ^ (depth * 0x9E3779B9);
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+      h *= 0xC2B2AE35;
+      h ^= h >>> 16;
+      return h;
+    }
+
+    public void close() throws IOException {
+      for (DataOutputStream output : outputs) {
+        output.close();
+      }
+    }
+
+    public void closeQuietly() {
+      for (DataOutputStream output : outputs) {
+        Closeables.closeQuietly(output);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+import java.io.File;
+import java.util.List;
+
+// One MSBuild execution of StyleCop, along with what its generated project is made of: the remote workers, which do not
+// see the files of the analysis, rebuild the project from them
+public class StyleCopJob {
+
+  private final File msBuildFile;
+  private final File settingsFile;
+  private final File reportFile;
+  private final List<File> sourceFiles;
+
+  public StyleCopJob(File msBuildFile, File settingsFile, File reportFile, List<File> sourceFiles) {
+    this.msBuildFile = msBuildFile;
+    this.settingsFile = settingsFile;
+    this.reportFile = reportFile;
+    this.sourceFiles = ImmutableList.copyOf(sourceFiles);
+  }
+
+  public File msBuildFile() {
+    return msBuildFile;
+  }
+
+  public File settingsFile() {
+    return settingsFile;
+  }
+
+  public File reportFile() {
+    return reportFile;
+  }
+
+  public List<File> sourceFiles() {
+    return sourceFiles;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof StyleCopJob)) {
+      return false;
+    }
+    StyleCopJob other = (StyleCopJob) obj;
+    return msBuildFile.equals(other.msBuildFile) && settingsFile.equals(other.settingsFile) && reportFile.equals(other.reportFile)
+      && sourceFiles.equals(other.sourceFiles);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(msBuildFile, settingsFile, reportFile, sourceFiles);
+  }
+
+  @Override
+  public String toString() {
+    return msBuildFile.getAbsolutePath();
+  }
+
+}
@@ -0,0 +1,614 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// Scans the report directly from memory-mapped windows of the file, without building any XML event,
+// only allocating the strings of each violation - recurring values are shared.
+public class StyleCopMappedReportParser extends StyleCopReportParser {
+
+  static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private final int windowSize;
+
+  public StyleCopMappedReportParser() {
+    this(DEFAULT_WINDOW_SIZE);
+  }
+
+  @VisibleForTesting
+  StyleCopMappedReportParser(int windowSize) {
+    this.windowSize = windowSize;
+  }
+
+  @Override
+  public void parse(File file, StyleCopIssueHandler handler) {
+    RandomAccessFile randomAccessFile = null;
+
+    try {
+      randomAccessFile = new RandomAccessFile(file, "r");
+      new Scanner(randomAccessFile.getChannel(), windowSize, file, handler).scan();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(randomAccessFile);
+    }
+  }
+
+  // Scans the given byte range of the file, which must start on a tag, counting lines from the given one
+  static class Scanner {
+
+    private static final int EOF = -1;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int OTHER_ATTRIBUTE = 0;
+    private static final int LINE_NUMBER_ATTRIBUTE = 1;
+    private static final int SOURCE_ATTRIBUTE = 2;
+    private static final int RULE_NAMESPACE_ATTRIBUTE = 3;
+    private static final int RULE_ATTRIBUTE = 4;
+
+    private static final byte[] VIOLATION = ascii("Violation");
+    private static final byte[] LINE_NUMBER = ascii("LineNumber");
+    private static final byte[] SOURCE = ascii("Source");
+    private static final byte[] RULE_NAMESPACE = ascii("RuleNamespace");
+    private static final byte[] RULE = ascii("Rule");
+    private static final byte[] CDATA = ascii("[CDATA[");
+
+    private static final int AMP = pack("amp");
+    private static final int LT = pack("lt");
+    private static final int GT = pack("gt");
+    private static final int QUOT = pack("quot");
+    private static final int APOS = pack("apos");
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final File file;
+    private final StyleCopIssueHandler handler;
+
+    private MappedByteBuffer window;
+    private long windowEnd;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkLength;
+    private int offset;
+    private int line;
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    private final StringCache sources = new StringCache();
+    private final StringCache ruleNamespaces = new StringCache();
+    private final StringCache rules = new StringCache();
+    private final StringCache messages = new StringCache();
+
+    public Scanner(FileChannel channel, int windowSize, File file, StyleCopIssueHandler handler) throws IOException {
+      this(channel, 0, channel.size(), 1, windowSize, file, handler);
+    }
+
+    public Scanner(FileChannel channel, long start, long end, int firstLine, int windowSize, File file, StyleCopIssueHandler handler) {
+      this.channel = channel;
+      this.size = end;
+      this.windowEnd = start;
+      this.line = firstLine;
+      this.windowSize = windowSize;
+      this.file = file;
+      this.handler = handler;
+    }
+
+    public void scan() throws IOException {
+      int b = read();
+      if (b == 0xEF) {
+        // UTF-8 byte order mark
+        read();
+        read();
+        b = read();
+      }
+
+      while (b != EOF) {
+        if (b == '<') {
+          markup();
+        }
+        b = read();
+      }
+    }
+
+    private void markup() throws IOException {
+      int b = read();
+
+      if (b == '?') {
+        skipPast("?>");
+      } else if (b == '!') {
+        b = peek();
+        if (b == '-') {
+          skipPast("-->");
+        } else if (b == '[') {
+          skipPast("]]>");
+        } else {
+          skipDeclaration();
+        }
+      } else if (b == '/') {
+        skipTag();
+      } else if (b != EOF) {
+        int delimiter = readName(b);
+        if (bufferEquals(VIOLATION)) {
+          violation(delimiter);
+        } else if (delimiter != '>') {
+          skipTag();
+        }
+      }
+    }
+
+    private void violation(int delimiter) throws IOException {
+      int lineNumber = -1;
+      String lineNumberText = null;
+      String source = null;
+      String ruleNamespace = null;
+      String rule = null;
+      boolean selfClosing = false;
+
+      int b = skipWhitespace(delimiter);
+      while (b != '>') {
+        if (b == '/') {
+          expect('>');
+          selfClosing = true;
+          break;
+        }
+
+        int attribute = attribute(readName(b));
+        b = skipWhitespace(read());
+        if (b != '"' && b != '\'') {
+          throw malformed();
+        }
+
+        if (attribute == OTHER_ATTRIBUTE) {
+          skipAttributeValue(b);
+        } else {
+          readAttributeValue(b);
+        }
+
+        if (attribute == LINE_NUMBER_ATTRIBUTE) {
+          lineNumber = parseDigits();
+          lineNumberText = lineNumber < 0 ? new String(buffer, 0, length, Charsets.UTF_8) : null;
+        } else if (attribute == SOURCE_ATTRIBUTE) {
+          source = sources.get(buffer, length);
+        } else if (attribute == RULE_NAMESPACE_ATTRIBUTE) {
+          ruleNamespace = ruleNamespaces.get(buffer, length);
+        } else if (attribute == RULE_ATTRIBUTE) {
+          rule = rules.get(buffer, length);
+        }
+
+        b = skipWhitespace(read());
+      }
+
+      int parsedLineNumber = lineNumber >= 0 ? lineNumber : requiredIntAttribute(lineNumberText, "LineNumber", file, line);
+      String requiredSource = requiredAttribute(source, "Source", file, line);
+
+      length = 0;
+      if (!selfClosing) {
+        readText();
+      }
+      String message = messages.get(buffer, length);
+
+      handler.handle(new StyleCopIssue(line, parsedLineNumber, requiredSource, ruleNamespace, rule, message));
+    }
+
+    private int attribute(int delimiter) throws IOException {
+      int result;
+      if (bufferEquals(LINE_NUMBER)) {
+        result = LINE_NUMBER_ATTRIBUTE;
+      } else if (bufferEquals(SOURCE)) {
+        result = SOURCE_ATTRIBUTE;
+      } else if (bufferEquals(RULE_NAMESPACE)) {
+        result = RULE_NAMESPACE_ATTRIBUTE;
+      } else if (bufferEquals(RULE)) {
+        result = RULE_ATTRIBUTE;
+      } else {
+        result = OTHER_ATTRIBUTE;
+      }
+
+      if (skipWhitespace(delimiter) != '=') {
+        throw malformed();
+      }
+
+      return result;
+    }
+
+    private void readAttributeValue(int quote) throws IOException {
+      length = 0;
+
+      int b = read();
+      while (b != quote) {
+        if (b == EOF || b == '<') {
+          throw malformed();
+        } else if (b == '&') {
+          appendReference();
+        } else if (isWhitespace(b)) {
+          append(' ');
+        } else {
+          append(b);
+        }
+        b = read();
+      }
+    }
+
+    private void skipAttributeValue(int quote) throws IOException {
+      int b = read();
+      while (b != quote) {
+        if (b == EOF || b == '<') {
+          throw malformed();
+        }
+        b = read();
+      }
+    }
+
+    private void readText() throws IOException {
+      int b = read();
+      while (true) {
+        if (b == EOF) {
+          throw malformed();
+        } else if (b == '&') {
+          appendReference();
+        } else if (b != '<') {
+          append(b);
+        } else {
+          b = read();
+          if (b == '/') {
+            skipTag();
+            return;
+          } else if (b == '?') {
+            skipPast("?>");
+          } else if (b == '!' && peek() == '-') {
+            skipPast("-->");
+          } else if (b == '!') {
+            for (byte c : CDATA) {
+              expect(c);
+            }
+            appendCData();
+          } else {
+            throw malformed();
+          }
+        }
+        b = read();
+      }
+    }
+
+    private void appendCData() throws IOException {
+      while (true) {
+        int b = read();
+        if (b == EOF) {
+          throw malformed();
+        }
+        append(b);
+        if (b == '>' && length >= 3 && buffer[length - 2] == ']' && buffer[length - 3] == ']') {
+          length -= 3;
+          return;
+        }
+      }
+    }
+
+    private void appendReference() throws IOException {
+      int b = read();
+
+      if (b == '#') {
+        int radix = 10;
+        b = read();
+        if (b == 'x') {
+          radix = 16;
+          b = read();
+        }
+
+        int codePoint = 0;
+        boolean empty = true;
+        while (b != ';') {
+          int digit = Character.digit(b, radix);
+          if (b == EOF || digit < 0 || codePoint > Character.MAX_CODE_POINT) {
+            throw malformed();
+          }
+          codePoint = codePoint * radix + digit;
+          empty = false;
+          b = read();
+        }
+        if (empty || codePoint > Character.MAX_CODE_POINT) {
+          throw malformed();
+        }
+        appendCodePoint(codePoint);
+      } else {
+        int name = 0;
+        for (int i = 0; b != ';'; i++) {
+          if (b == EOF || i == 4) {
+            throw malformed();
+          }
+          name = name << 8 | b;
+          b = read();
+        }
+
+        if (name == AMP) {
+          append('&');
+        } else if (name == LT) {
+          append('<');
+        } else if (name == GT) {
+          append('>');
+        } else if (name == QUOT) {
+          append('"');
+        } else if (name == APOS) {
+          append('\'');
+        } else {
+          throw malformed();
+        }
+      }
+    }
+
+    private void appendCodePoint(int codePoint) {
+      if (codePoint < 0x80) {
+        append(codePoint);
+      } else if (codePoint < 0x800) {
+        append(0xC0 | codePoint >> 6);
+        append(0x80 | codePoint & 0x3F);
+      } else if (codePoint < 0x10000) {
+        append(0xE0 | codePoint >> 12);
+        append(0x80 | codePoint >> 6 & 0x3F);
+        append(0x80 | codePoint & 0x3F);
+      } else {
+        append(0xF0 | codePoint >> 18);
+        append(0x80 | codePoint >> 12 & 0x3F);
+        append(0x80 | codePoint >> 6 & 0x3F);
+        append(0x80 | codePoint & 0x3F);
+      }
+    }
+
+    private void append(int b) {
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      buffer[length++] = (byte) b;
+    }
+
+    private int parseDigits() {
+      if (length == 0 || length > 9) {
+        return -1;
+      }
+
+      int result = 0;
+      for (int i = 0; i < length; i++) {
+        int digit = buffer[i] - '0';
+        if (digit < 0 || digit > 9) {
+          return -1;
+        }
+        result = result * 10 + digit;
+      }
+      return result;
+    }
+
+    private int readName(int first) throws IOException {
+      length = 0;
+
+      int b = first;
+      while (b != '>' && b != '/' && b != '=' && !isWhitespace(b)) {
+        if (b == EOF) {
+          throw malformed();
+        }
+        append(b);
+        b = read();
+      }
+      return b;
+    }
+
+    private boolean bufferEquals(byte[] name) {
+      if (length != name.length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (buffer[i] != name[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void skipTag() throws IOException {
+      int quote = 0;
+
+      int b = read();
+      while (b != '>' || quote != 0) {
+        if (b == EOF) {
+          throw malformed();
+        } else if (quote != 0) {
+          if (b == quote) {
+            quote = 0;
+          }
+        } else if (b == '"' || b == '\'') {
+          quote = b;
+        }
+        b = read();
+      }
+    }
+
+    private void skipDeclaration() throws IOException {
+      int quote = 0;
+      int depth = 0;
+
+      int b = read();
+      while (b != '>' || quote != 0 || depth != 0) {
+        if (b == EOF) {
+          throw malformed();
+        } else if (quote != 0) {
+          if (b == quote) {
+            quote = 0;
+          }
+        } else if (b == '"' || b == '\'') {
+          quote = b;
+        } else if (b == '[') {
+          depth++;
+        } else if (b == ']') {
+          depth--;
+        }
+        b = read();
+      }
+    }
+
+    private void skipPast(String terminator) throws IOException {
+      int expected = pack(terminator);
+      int mask = (1 << 8 * terminator.length()) - 1;
+      int last = 0;
+
+      while (last != expected) {
+        int b = read();
+        if (b == EOF) {
+          throw malformed();
+        }
+        last = (last << 8 | b) & mask;
+      }
+    }
+
+    private void expect(int expected) throws IOException {
+      if (read() != expected) {
+        throw malformed();
+      }
+    }
+
+    private int skipWhitespace(int first) throws IOException {
+      int b = first;
+      while (isWhitespace(b)) {
+        b = read();
+      }
+      return b;
+    }
+
+    private static boolean isWhitespace(int b) {
+      return b == ' ' || b == '\n' || b == '\t';
+    }
+
+    // Line ends are normalized to '\n', as an XML parser would
+    private int read() throws IOException {
+      if (offset == chunkLength && !fill()) {
+        return EOF;
+      }
+
+      int b = chunk[offset++] & 0xFF;
+      if (b == '\n') {
+        line++;
+      } else if (b == '\r') {
+        line++;
+        if (peek() == '\n') {
+          offset++;
+        }
+        b = '\n';
+      }
+      return b;
+    }
+
+    private int peek() throws IOException {
+      if (offset == chunkLength && !fill()) {
+        return EOF;
+      }
+
+      return chunk[offset] & 0xFF;
+    }
+
+    // Bulk copies from the mapped window are much cheaper than reading it byte per byte
+    private boolean fill() throws IOException {
+      if ((window == null || !window.hasRemaining()) && !map()) {
+        return false;
+      }
+
+      chunkLength = Math.min(chunk.length, window.remaining());
+      window.get(chunk, 0, chunkLength);
+      offset = 0;
+      return true;
+    }
+
+    private boolean map() throws IOException {
+      if (windowEnd >= size) {
+        return false;
+      }
+
+      long mappedSize = Math.min(windowSize, size - windowEnd);
+      window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, mappedSize);
+      windowEnd += mappedSize;
+      return true;
+    }
+
+    private ParseErrorException malformed() {
+      return parseError("Malformed element <Violation>", file, line);
+    }
+
+    private static byte[] ascii(String s) {
+      return s.getBytes(Charsets.US_ASCII);
+    }
+
+    private static int pack(String s) {
+      int result = 0;
+      for (int i = 0; i < s.length(); i++) {
+        result = result << 8 | s.charAt(i);
+      }
+      return result;
+    }
+
+  }
+
+  // Small direct-mapped table: sources, rules and messages repeat a lot across violations
+  private static class StringCache {
+
+    private static final int SIZE = 256;
+
+    private final byte[][] keys = new byte[SIZE][];
+    private final String[] values = new String[SIZE];
+
+    public String get(byte[] buffer, int length) {
+      int hash = 0;
+      for (int i = 0; i < length; i++) {
+        hash = 31 * hash + buffer[i];
+      }
+      int index = (hash ^ hash >>> 16) & (SIZE - 1);
+
+      byte[] key = keys[index];
+      if (key == null || !regionEquals(key, buffer, length)) {
+        key = Arrays.copyOf(buffer, length);
+        keys[index] = key;
+        values[index] = new String(key, Charsets.UTF_8);
+      }
+      return values[index];
+    }
+
+    private static boolean regionEquals(byte[] key, byte[] buffer, int length) {
+      if (key.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (key[i] != buffer[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+}
@@ -19,61 +19,164 @@
  */
 package org.sonar.plugins.stylecop;
 
-import com.google.common.base.Charsets;
-import com.google.common.base.Throwables;
-import com.google.common.io.Files;
-import org.apache.commons.io.IOUtils;
+import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+// Only depends on the JDK, as StyleCopWorkerServer generates the projects of its jobs with it out of the plugin jar alone
 public class StyleCopMsBuildWriter {
 
-  public void write(File styleCopDllFile, File projectFile, File settingsFile, File reportFile, File file) {
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  public void write(File styleCopDllFile, File projectFile, File settingsFile, File reportFile, Iterable<File> sourceFiles, File file) {
+    write(styleCopDllFile, projectFile, settingsFile, reportFile, sourceFiles, null, file);
+  }
+
+  public void write(File styleCopDllFile, File projectFile, File settingsFile, File reportFile, Iterable<File> sourceFiles, @Nullable File cacheDirectory,
+    File file) {
+    StringBuilder sb = new StringBuilder();
+
+    appendHeader(sb, styleCopDllFile, projectFile, settingsFile, reportFile, cacheDirectory);
+
+    appendLine(sb, "  <ItemGroup>");
+    for (File sourceFile : sourceFiles) {
+      appendLine(sb, "    <StyleCopFiles Include=\"" + escapeItem(sourceFile.getAbsolutePath()) + "\" />");
+    }
+    appendLine(sb, "  </ItemGroup>");
+    appendLine(sb, "");
+
+    appendLine(sb, "  <Target Name=\"StyleCopLaunch\">");
+    appendStyleCopTask(sb, cacheDirectory != null);
+    appendLine(sb, "  </Target>");
+    appendLine(sb, "</Project>");
+
+    write(sb, file);
+  }
+
+  // One StyleCop task per project, each one with its own files, report and results cache
+  public void write(File styleCopDllFile, List<BatchProject> projects, File settingsFile, File file) {
     StringBuilder sb = new StringBuilder();
 
     appendLine(sb, "<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\" DefaultTargets=\"StyleCopLaunch\">");
     appendLine(sb, "  <UsingTask AssemblyFile=\"" + styleCopDllFile.getAbsolutePath() + "\" TaskName=\"StyleCopTask\"/>");
     appendLine(sb, "");
 
+    for (int i = 0; i < projects.size(); i++) {
+      appendLine(sb, "  <ItemGroup>");
+      for (File sourceFile : projects.get(i).sourceFiles) {
+        appendLine(sb, "    <StyleCopFiles" + i + " Include=\"" + escapeItem(sourceFile.getAbsolutePath()) + "\" />");
+      }
+      appendLine(sb, "  </ItemGroup>");
+      appendLine(sb, "");
+    }
+
+    appendLine(sb, "  <Target Name=\"StyleCopLaunch\">");
+    for (int i = 0; i < projects.size(); i++) {
+      BatchProject project = projects.get(i);
+      appendStyleCopTask(sb, escapeItem(projectPath(project.projectFile, project.cacheDirectory).getAbsolutePath()), "@(StyleCopFiles" + i + ")",
+        project.cacheDirectory != null, escapeItem(settingsFile.getAbsolutePath()), escapeItem(project.reportFile.getAbsolutePath()));
+    }
+    appendLine(sb, "  </Target>");
+    appendLine(sb, "</Project>");
+
+    write(sb, file);
+  }
+
+  // StyleCop keeps its results cache next to the project, so point it to the cache directory when incremental
+  private static File projectPath(File projectFile, @Nullable File cacheDirectory) {
+    return cacheDirectory == null ? projectFile : new File(cacheDirectory, projectFile.getName());
+  }
+
+  private static void appendHeader(StringBuilder sb, File styleCopDllFile, File projectFile, File settingsFile, File reportFile, @Nullable File cacheDirectory) {
+    appendLine(sb, "<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\" DefaultTargets=\"StyleCopLaunch\">");
+    appendLine(sb, "  <UsingTask AssemblyFile=\"" + styleCopDllFile.getAbsolutePath() + "\" TaskName=\"StyleCopTask\"/>");
+    appendLine(sb, "");
+
     appendLine(sb, "  <PropertyGroup>");
-    appendLine(sb, "    <FolderToAnalyse>" + projectFile.getParentFile().getAbsolutePath() + "</FolderToAnalyse>");
-    appendLine(sb, "    <ProjectPath>" + projectFile.getAbsolutePath() + "</ProjectPath>");
+    appendLine(sb, "    <ProjectPath>" + projectPath(projectFile, cacheDirectory).getAbsolutePath() + "</ProjectPath>");
     appendLine(sb, "    <StyleCopOverrideSettingsFile>" + settingsFile.getAbsolutePath() + "</StyleCopOverrideSettingsFile>");
     appendLine(sb, "    <StyleCopOutputFile>" + reportFile.getAbsolutePath() + "</StyleCopOutputFile>");
     appendLine(sb, "  </PropertyGroup>");
     appendLine(sb, "");
+  }
 
-    appendLine(sb, "  <Target Name=\"StyleCopLaunch\">");
-    appendLine(sb, "    <CreateItem Include=\"$(FolderToAnalyse)\\**\\*.cs\">");
-    appendLine(sb, "      <Output TaskParameter=\"Include\" ItemName=\"StyleCopFiles\"/>");
-    appendLine(sb, "    </CreateItem>");
-    appendLine(sb, "");
+  private static void appendStyleCopTask(StringBuilder sb, boolean incremental) {
+    appendStyleCopTask(sb, "$(ProjectPath)", "@(StyleCopFiles)", incremental, "$(StyleCopOverrideSettingsFile)", "$(StyleCopOutputFile)");
+  }
 
+  private static void appendStyleCopTask(StringBuilder sb, String projectPath, String sourceFiles, boolean incremental, String settingsFile, String outputFile) {
     appendLine(sb, "    <StyleCopTask");
-    appendLine(sb, "      ProjectFullPath=\"$(ProjectPath)\"");
-    appendLine(sb, "      SourceFiles=\"@(StyleCopFiles)\"");
+    appendLine(sb, "      ProjectFullPath=\"" + projectPath + "\"");
+    appendLine(sb, "      SourceFiles=\"" + sourceFiles + "\"");
     appendLine(sb, "      AdditionalAddinPaths=\"\"");
-    appendLine(sb, "      ForceFullAnalysis=\"true\"");
+    appendLine(sb, "      ForceFullAnalysis=\"" + !incremental + "\"");
     appendLine(sb, "      DefineConstants=\"DEBUG;TRACE\"");
     appendLine(sb, "      TreatErrorsAsWarnings=\"true\"");
-    appendLine(sb, "      CacheResults=\"false\"");
-    appendLine(sb, "      OverrideSettingsFile=\"$(StyleCopOverrideSettingsFile)\"");
-    appendLine(sb, "      OutputFile=\"$(StyleCopOutputFile)\"");
+    appendLine(sb, "      CacheResults=\"" + incremental + "\"");
+    appendLine(sb, "      OverrideSettingsFile=\"" + settingsFile + "\"");
+    appendLine(sb, "      OutputFile=\"" + outputFile + "\"");
     appendLine(sb, "      MaxViolationCount=\"-1\" />");
-    appendLine(sb, "  </Target>");
-    appendLine(sb, "</Project>");
+  }
+
+  private static String escapeItem(String path) {
+    StringBuilder sb = new StringBuilder();
+    for (char c : path.toCharArray()) {
+      if ("%$@';?*".indexOf(c) != -1) {
+        // MSBuild special characters must be escaped as %XX in item specifications
+        sb.append('%').append(Integer.toHexString(c).toUpperCase());
+      } else if (c == '&') {
+        sb.append("&amp;");
+      } else if (c == '"') {
+        sb.append("&quot;");
+      } else if (c == '<') {
+        sb.append("&lt;");
+      } else if (c == '>') {
+        sb.append("&gt;");
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
 
+  private static void write(StringBuilder sb, File file) {
     try {
-      Files.write(sb.toString().getBytes(Charsets.UTF_8), file);
+      OutputStream out = new FileOutputStream(file);
+      try {
+        out.write(sb.toString().getBytes("UTF-8"));
+      } finally {
+        out.close();
+      }
     } catch (IOException e) {
-      throw Throwables.propagate(e);
+      throw new IllegalStateException("Unable to write the MSBuild project \"" + file.getAbsolutePath() + "\"", e);
     }
   }
 
   private static void appendLine(StringBuilder sb, String s) {
     sb.append(s);
-    sb.append(IOUtils.LINE_SEPARATOR);
+    sb.append(LINE_SEPARATOR);
+  }
+
+  public static class BatchProject {
+
+    private final File projectFile;
+    private final List<File> sourceFiles;
+    private final File reportFile;
+    private final File cacheDirectory;
+
+    public BatchProject(File projectFile, List<File> sourceFiles, File reportFile, @Nullable File cacheDirectory) {
+      this.projectFile = projectFile;
+      this.sourceFiles = Collections.unmodifiableList(new ArrayList<File>(sourceFiles));
+      this.reportFile = reportFile;
+      this.cacheDirectory = cacheDirectory;
+    }
+
   }
 
 }
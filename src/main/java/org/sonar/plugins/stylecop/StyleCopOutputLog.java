@@ -0,0 +1,236 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counts StyleCop's warnings by rule instead of logging them, which also end up in the report, and logs the other lines of
+// MSBuild's output up to a number of lines per second.
+// Each execution logs to its own shard, which is merged into the totals when the execution ends: parallel executions only share
+// the rate limit, without a lock, and the raw output file, written by chunks.
+public class StyleCopOutputLog {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopOutputLog.class);
+
+  private static final String WARNING_MARKER = ": warning : ";
+  private static final String RULE_ID_PREFIX = "SA";
+  private static final long WINDOW_MILLIS = 1000;
+  private static final int RAW_OUTPUT_CHUNK_CHARS = 8192;
+
+  private final int linesPerSecond;
+  private final File rawOutputFile;
+  private final AtomicLong windowStart = new AtomicLong();
+  private final AtomicInteger windowLines = new AtomicInteger();
+  private final Map<String, Integer> warnings = Maps.newTreeMap();
+  private int warningCount;
+  private int suppressedLines;
+  private Writer rawOutput;
+  private boolean rawOutputFailed;
+
+  public StyleCopOutputLog(int linesPerSecond, @Nullable File rawOutputFile) {
+    this.linesPerSecond = linesPerSecond;
+    this.rawOutputFile = rawOutputFile;
+    if (rawOutputFile != null) {
+      FileUtils.deleteQuietly(rawOutputFile);
+    }
+  }
+
+  // The position of the StyleCop warning marker in the line, or -1 when it is not a StyleCop warning
+  public static int warningIndex(String line) {
+    return line.indexOf(WARNING_MARKER);
+  }
+
+  public Shard shard() {
+    return new Shard();
+  }
+
+  private boolean isUnderRateLimit(long nowMillis) {
+    if (linesPerSecond == 0) {
+      return true;
+    }
+    long start = windowStart.get();
+    if (nowMillis - start >= WINDOW_MILLIS && windowStart.compareAndSet(start, nowMillis)) {
+      windowLines.set(0);
+    }
+    return windowLines.incrementAndGet() <= linesPerSecond;
+  }
+
+  private synchronized void merge(Map<String, Integer> shardWarnings, int shardWarningCount, int shardSuppressedLines) {
+    for (Map.Entry<String, Integer> entry : shardWarnings.entrySet()) {
+      Integer count = warnings.get(entry.getKey());
+      warnings.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+    }
+    warningCount += shardWarningCount;
+    suppressedLines += shardSuppressedLines;
+  }
+
+  private synchronized void writeRawOutput(CharSequence chunk) {
+    if (rawOutputFile == null || rawOutputFailed) {
+      return;
+    }
+
+    try {
+      if (rawOutput == null) {
+        rawOutput = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rawOutputFile, true), Charsets.UTF_8));
+      }
+      rawOutput.append(chunk);
+    } catch (IOException e) {
+      LOG.warn("Unable to write MSBuild's output to " + rawOutputFile.getAbsolutePath() + ": " + e.getMessage());
+      rawOutputFailed = true;
+      Closeables.closeQuietly(rawOutput);
+      rawOutput = null;
+    }
+  }
+
+  // Logs the summary of the output of the shards ended since the previous call, and flushes the raw output
+  public synchronized void end() {
+    if (warningCount > 0 || suppressedLines > 0) {
+      LOG.info(summary());
+    }
+    warnings.clear();
+    warningCount = 0;
+    suppressedLines = 0;
+    Closeables.closeQuietly(rawOutput);
+    rawOutput = null;
+  }
+
+  @VisibleForTesting
+  synchronized String summary() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("MSBuild reported ").append(warningCount).append(" StyleCop warnings");
+    if (!warnings.isEmpty()) {
+      sb.append(" (");
+      boolean first = true;
+      for (Map.Entry<String, Integer> entry : warnings.entrySet()) {
+        if (!first) {
+          sb.append(", ");
+        }
+        sb.append(entry.getKey()).append(": ").append(entry.getValue());
+        first = false;
+      }
+      sb.append(')');
+    }
+    if (suppressedLines > 0) {
+      sb.append(", ").append(suppressedLines).append(" other output lines were not logged, over the limit of ").append(linesPerSecond)
+        .append(" lines per second");
+    }
+    if (rawOutputFile != null) {
+      sb.append(". Its whole output is in ").append(rawOutputFile.getAbsolutePath());
+    }
+    sb.append('.');
+    return sb.toString();
+  }
+
+  // "SA" followed by digits, as in "SA1633"
+  @Nullable
+  private static String ruleId(String line, int start) {
+    if (!line.startsWith(RULE_ID_PREFIX, start)) {
+      return null;
+    }
+    int end = start + RULE_ID_PREFIX.length();
+    while (end < line.length() && Character.isDigit(line.charAt(end))) {
+      end++;
+    }
+    return end == start + RULE_ID_PREFIX.length() ? null : line.substring(start, end);
+  }
+
+  // The output of one execution, logged from the threads reading its process' streams
+  public class Shard {
+
+    private final Map<String, Integer> shardWarnings = Maps.newHashMap();
+    private final StringBuilder rawChunk = new StringBuilder();
+    private int shardWarningCount;
+    private int shardSuppressedLines;
+
+    public void log(String line) {
+      log(line, warningIndex(line), System.currentTimeMillis());
+    }
+
+    // The position of the warning marker, as given by warningIndex(), saves a second search of the line
+    public synchronized void log(String line, int warningIndex, long nowMillis) {
+      if (rawOutputFile != null) {
+        rawChunk.append(line).append('\n');
+        if (rawChunk.length() >= RAW_OUTPUT_CHUNK_CHARS) {
+          flushRawOutput();
+        }
+      }
+
+      String ruleId = warningIndex == -1 ? null : ruleId(line, warningIndex + WARNING_MARKER.length());
+      if (ruleId != null) {
+        Integer count = shardWarnings.get(ruleId);
+        shardWarnings.put(ruleId, count == null ? 1 : count + 1);
+        shardWarningCount++;
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(line);
+        }
+      } else if (isUnderRateLimit(nowMillis)) {
+        LOG.info(line);
+      } else {
+        shardSuppressedLines++;
+      }
+    }
+
+    // Adds the counts of this execution to the totals
+    public synchronized void end() {
+      flushRawOutput();
+      merge(shardWarnings, shardWarningCount, shardSuppressedLines);
+      reset();
+    }
+
+    // Drops the counts of this execution, for instance before it is retried: its raw output is kept
+    public synchronized void discard() {
+      flushRawOutput();
+      reset();
+    }
+
+    private void reset() {
+      shardWarnings.clear();
+      shardWarningCount = 0;
+      shardSuppressedLines = 0;
+    }
+
+    private void flushRawOutput() {
+      if (rawChunk.length() > 0) {
+        writeRawOutput(rawChunk);
+        rawChunk.setLength(0);
+      }
+    }
+
+  }
+
+}
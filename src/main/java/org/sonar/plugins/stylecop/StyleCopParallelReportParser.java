@@ -0,0 +1,286 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.primitives.Longs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// Splits large reports into byte ranges starting on "<Violation" tags, scans them concurrently and passes on their issues
+// in the order of the report. Java 6 has no fork/join pool: a fixed thread pool scans a bounded window of ranges ahead of
+// the one being passed on, which also bounds the number of issues held in memory.
+public class StyleCopParallelReportParser extends StyleCopMappedReportParser {
+
+  private static final long DEFAULT_RANGE_SIZE = 16 * 1024 * 1024;
+  private static final int READ_SIZE = 64 * 1024;
+  private static final byte[] VIOLATION_TAG = "<Violation".getBytes(Charsets.US_ASCII);
+
+  private final int threads;
+  private final long rangeSize;
+  private final int windowSize;
+
+  public StyleCopParallelReportParser(int threads) {
+    this(threads, DEFAULT_RANGE_SIZE, DEFAULT_WINDOW_SIZE);
+  }
+
+  @VisibleForTesting
+  StyleCopParallelReportParser(int threads, long rangeSize, int windowSize) {
+    super(windowSize);
+    this.threads = threads;
+    this.rangeSize = rangeSize;
+    this.windowSize = windowSize;
+  }
+
+  @Override
+  public void parse(File file, StyleCopIssueHandler handler) {
+    if (threads <= 1 || file.length() <= rangeSize) {
+      super.parse(file, handler);
+      return;
+    }
+
+    RandomAccessFile randomAccessFile = null;
+    ExecutorService executor = null;
+
+    try {
+      randomAccessFile = new RandomAccessFile(file, "r");
+      FileChannel channel = randomAccessFile.getChannel();
+      long[] boundaries = boundaries(channel);
+
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "StyleCop report parser");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      int[] firstLines = firstLines(executor, channel, boundaries);
+      parseRanges(executor, channel, boundaries, firstLines, file, handler);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      Closeables.closeQuietly(randomAccessFile);
+    }
+  }
+
+  private void parseRanges(ExecutorService executor, FileChannel channel, long[] boundaries, int[] firstLines, File file, StyleCopIssueHandler handler)
+    throws InterruptedException, ExecutionException, IOException {
+    int rangeCount = boundaries.length - 1;
+    List<Future<Range>> futures = Lists.newArrayList();
+
+    for (int i = 0; i < rangeCount; i++) {
+      while (futures.size() < rangeCount && futures.size() < i + 2 * threads) {
+        int j = futures.size();
+        futures.add(executor.submit(new RangeScan(channel, boundaries[j], boundaries[j + 1], firstLines[j], file)));
+      }
+
+      Range range = futures.get(i).get();
+      futures.set(i, null);
+
+      if (range.error != null && i < rangeCount - 1) {
+        // Either a genuine error, or a boundary within a comment or a CDATA section, which the previous range would have
+        // revealed: scanning the rest of the report at once gives the same result as scanning it all at once
+        new Scanner(channel, boundaries[i], channel.size(), firstLines[i], windowSize, file, handler).scan();
+        return;
+      }
+
+      for (StyleCopIssue issue : range.issues) {
+        handler.handle(issue);
+      }
+      if (range.error != null) {
+        throw range.error;
+      }
+    }
+  }
+
+  private long[] boundaries(FileChannel channel) throws IOException {
+    long size = channel.size();
+    int rangeCount = (int) Math.min(Integer.MAX_VALUE, (size + rangeSize - 1) / rangeSize);
+
+    List<Long> boundaries = Lists.newArrayList();
+    boundaries.add(0L);
+    for (int i = 1; i < rangeCount; i++) {
+      long from = Math.max(size / rangeCount * i, boundaries.get(boundaries.size() - 1) + 1);
+      long boundary = indexOfViolationTag(channel, from);
+      if (boundary < 0) {
+        break;
+      }
+      boundaries.add(boundary);
+    }
+    boundaries.add(size);
+    return Longs.toArray(boundaries);
+  }
+
+  private static long indexOfViolationTag(FileChannel channel, long from) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+    byte[] bytes = buffer.array();
+    long position = from;
+
+    while (true) {
+      buffer.clear();
+      int length = read(channel, buffer, position);
+      for (int i = 0; i + VIOLATION_TAG.length < length; i++) {
+        if (regionEquals(bytes, i, VIOLATION_TAG) && isTagNameEnd(bytes[i + VIOLATION_TAG.length])) {
+          return position + i;
+        }
+      }
+      if (length < READ_SIZE) {
+        return -1;
+      }
+      position += length - VIOLATION_TAG.length;
+    }
+  }
+
+  private static boolean regionEquals(byte[] bytes, int offset, byte[] expected) {
+    for (int i = 0; i < expected.length; i++) {
+      if (bytes[offset + i] != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isTagNameEnd(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '>' || b == '/';
+  }
+
+  private static int[] firstLines(ExecutorService executor, final FileChannel channel, long[] boundaries) throws InterruptedException, ExecutionException {
+    List<Future<Integer>> lineBreaks = Lists.newArrayList();
+    for (int i = 0; i < boundaries.length - 2; i++) {
+      final long start = boundaries[i];
+      final long end = boundaries[i + 1];
+      lineBreaks.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+          return lineBreaks(channel, start, end);
+        }
+      }));
+    }
+
+    int[] result = new int[boundaries.length - 1];
+    result[0] = 1;
+    for (int i = 1; i < result.length; i++) {
+      result[i] = result[i - 1] + lineBreaks.get(i - 1).get();
+    }
+    return result;
+  }
+
+  // Counted as the scanner does: "\r\n", "\r" and "\n" are each one line break
+  private static int lineBreaks(FileChannel channel, long start, long end) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+    byte[] bytes = buffer.array();
+    int result = 0;
+    boolean previousCarriageReturn = false;
+
+    long position = start;
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(READ_SIZE, end - position));
+      int length = read(channel, buffer, position);
+      for (int i = 0; i < length; i++) {
+        byte b = bytes[i];
+        if (b == '\r' || b == '\n' && !previousCarriageReturn) {
+          result++;
+        }
+        previousCarriageReturn = b == '\r';
+      }
+      position += length;
+    }
+    return result;
+  }
+
+  private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    int length = 0;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + length);
+      if (read < 0) {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+
+  private class RangeScan implements Callable<Range> {
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private final int firstLine;
+    private final File file;
+
+    public RangeScan(FileChannel channel, long start, long end, int firstLine, File file) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+      this.firstLine = firstLine;
+      this.file = file;
+    }
+
+    @Override
+    public Range call() throws IOException {
+      final Range range = new Range();
+      try {
+        new Scanner(channel, start, end, firstLine, windowSize, file, new StyleCopIssueHandler() {
+          @Override
+          public void handle(StyleCopIssue issue) {
+            range.issues.add(issue);
+          }
+        }).scan();
+      } catch (ParseErrorException e) {
+        range.error = e;
+      }
+      return range;
+    }
+
+  }
+
+  private static class Range {
+
+    private final List<StyleCopIssue> issues = Lists.newArrayList();
+    private ParseErrorException error;
+
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.util.Locale;
+
+public final class StyleCopPaths {
+
+  private StyleCopPaths() {
+  }
+
+  public static String normalize(File file) {
+    return normalize(file.getPath());
+  }
+
+  // StyleCop reports Windows paths, which are compared case-insensitively regardless of the separators used
+  public static String normalize(String path) {
+    String result = path.replace('\\', '/');
+    if (!isAbsolute(result)) {
+      result = new File(path).getAbsolutePath().replace('\\', '/');
+    }
+    String normalized = FilenameUtils.normalizeNoEndSeparator(result, true);
+    return (normalized == null ? result : normalized).toLowerCase(Locale.ENGLISH);
+  }
+
+  private static boolean isAbsolute(String path) {
+    return path.startsWith("/") || (path.length() >= 3 && Character.isLetter(path.charAt(0)) && path.charAt(1) == ':' && path.charAt(2) == '/');
+  }
+
+}
@@ -39,6 +39,23 @@ public class StyleCopPlugin extends SonarPlugin {
   public static final String STYLECOP_PROJECT_FILE_PATH_PROPERTY_KEY = "sonar.stylecop.projectFilePath";
   public static final String STYLECOP_TIMEOUT_MINUTES_PROPERTY_KEY = "sonar.stylecop.timeoutMinutes";
   public static final String STYLECOP_IGNORED_HUNGARIAN_PREFIXES_PROPERTY_KEY = "sonar.stylecop.ignoredHungarianPrefixes";
+  public static final String STYLECOP_SHARDS_PROPERTY_KEY = "sonar.stylecop.shards";
+  public static final String STYLECOP_INCREMENTAL_PROPERTY_KEY = "sonar.stylecop.incremental";
+  public static final String STYLECOP_ISSUE_CACHE_PROPERTY_KEY = "sonar.stylecop.issueCache";
+  public static final String STYLECOP_MAPPED_REPORT_PARSER_PROPERTY_KEY = "sonar.stylecop.mappedReportParser";
+  public static final String STYLECOP_INACTIVITY_TIMEOUT_MINUTES_PROPERTY_KEY = "sonar.stylecop.inactivityTimeoutMinutes";
+  public static final String STYLECOP_WORKER_PROPERTY_KEY = "sonar.stylecop.worker";
+  public static final String STYLECOP_BATCH_PROPERTY_KEY = "sonar.stylecop.batch";
+  public static final String STYLECOP_IMPORT_GROUPING_THRESHOLD_PROPERTY_KEY = "sonar.stylecop.importGroupingThreshold";
+  public static final String STYLECOP_EXCLUDE_GENERATED_CODE_PROPERTY_KEY = "sonar.stylecop.excludeGeneratedCode";
+  public static final String STYLECOP_PROFILE_ANALYZERS_PROPERTY_KEY = "sonar.stylecop.profileAnalyzers";
+  public static final String STYLECOP_ANALYZER_GROUPS_PROPERTY_KEY = "sonar.stylecop.analyzerGroups";
+  public static final String STYLECOP_REPORT_PARSER_THREADS_PROPERTY_KEY = "sonar.stylecop.reportParserThreads";
+  public static final String STYLECOP_OUTPUT_LINES_PER_SECOND_PROPERTY_KEY = "sonar.stylecop.outputLinesPerSecond";
+  public static final String STYLECOP_RAW_OUTPUT_PROPERTY_KEY = "sonar.stylecop.rawOutput";
+  public static final String STYLECOP_REMOTE_WORKERS_PROPERTY_KEY = "sonar.stylecop.remoteWorkers";
+  public static final String STYLECOP_REMOTE_WORKERS_SECRET_PROPERTY_KEY = "sonar.stylecop.remoteWorkersSecret";
+  public static final String STYLECOP_ANALYZE_SHARED_FILES_ONCE_PROPERTY_KEY = "sonar.stylecop.analyzeSharedFilesOnce";
 
   public static final String STYLECOP_OLD_INSTALL_DIRECTORY_PROPERTY_KEY = "sonar.stylecop.installDirectory";
   public static final String STYLECOP_OLD_DOTNET_VERSION_PROPERTY_KEY = "sonar.dotnet.version";
@@ -53,6 +70,8 @@ public class StyleCopPlugin extends SonarPlugin {
     return ImmutableList.of(
       StyleCopRuleRepository.class,
       StyleCopSensor.class,
+      StyleCopWorkers.class,
+      StyleCopBatch.class,
 
       PropertyDefinition.builder(STYLECOP_MSBUILD_PATH_PROPERTY_KEY)
         .name("Path to MsBuild.exe")
@@ -94,6 +113,178 @@ public class StyleCopPlugin extends SonarPlugin {
         .subCategory(SUBCATEGORY)
         .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
         .build(),
+      PropertyDefinition.builder(STYLECOP_SHARDS_PROPERTY_KEY)
+        .name("Number of shards")
+        .description("Number of parts the files are split into, each one analyzed by its own StyleCop process. "
+          + "Up to one process per CPU core is run at a time.<br />Example: 4")
+        .defaultValue("1")
+        .type(PropertyType.INTEGER)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_INCREMENTAL_PROPERTY_KEY)
+        .name("Incremental analysis")
+        .description("Keep StyleCop's results cache in the working directory and only re-analyze the changed files. "
+          + "The cache is discarded whenever the active rules or the ignored Hungarian prefixes change.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_ISSUE_CACHE_PROPERTY_KEY)
+        .name("Issue cache")
+        .description("Remember the issues found in each file along with a hash of its contents, and replay them for the unchanged files "
+          + "instead of running StyleCop on them. StyleCop is not run at all when no file changed.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+
+      PropertyDefinition.builder(STYLECOP_MAPPED_REPORT_PARSER_PROPERTY_KEY)
+        .name("Memory-mapped report parser")
+        .description("Read the StyleCop report through a memory-mapped scanner instead of an XML parser, which is faster on very large reports. "
+          + "On Windows, the report file stays locked until the mapping is garbage collected.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+
+      PropertyDefinition.builder(STYLECOP_INACTIVITY_TIMEOUT_MINUTES_PROPERTY_KEY)
+        .name("Inactivity timeout in minutes")
+        .description("Kill StyleCop along with its child processes, and fail, when it does not output anything during this many minutes. "
+          + "StyleCop does not output anything while analyzing files without issues, so keep it well above the time needed to analyze the largest file. "
+          + "0 to disable.")
+        .defaultValue("0")
+        .type(PropertyType.INTEGER)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+
+      PropertyDefinition.builder(STYLECOP_WORKER_PROPERTY_KEY)
+        .name("Reuse a StyleCop host process")
+        .description("Run StyleCop within a long-lived PowerShell host process, started on first use and reused by all the modules of the analysis, "
+          + "instead of starting MSBuild for each of them. This saves the startup of the CLR, the loading of StyleCop and its warmup.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_BATCH_PROPERTY_KEY)
+        .name("Analyze all the projects at once")
+        .description("Analyze the projects of all the modules with a single MSBuild execution, during the analysis of the first module. "
+          + "The following modules only import their own report. Not used by the modules analyzed in shards, incrementally or with the issue cache.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_IMPORT_GROUPING_THRESHOLD_PROPERTY_KEY)
+        .name("Issues grouping threshold")
+        .description("Import the StyleCop issues grouped by file, keeping at most this number of issues in memory: "
+          + "past it, they are spilled to disk and grouped one partition at a time. 0 to import them in the order of the report.")
+        .defaultValue("0")
+        .type(PropertyType.INTEGER)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_EXCLUDE_GENERATED_CODE_PROPERTY_KEY)
+        .name("Exclude generated code")
+        .description("Do not analyze the generated files: *.Designer.cs, *.g.cs, *.g.i.cs, *.generated.cs, the output of T4 templates "
+          + "and the files whose header contains an <auto-generated> marker.")
+        .defaultValue("true")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_PROFILE_ANALYZERS_PROPERTY_KEY)
+        .name("Profile the StyleCop analyzers")
+        .description("After the analysis, run each analyzer namespace of the quality profile as a separate StyleCop execution over the same files, "
+          + "and report its duration, files per second and violations in the logs and in StyleCop-profile.json. Slows down the analysis a lot.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_ANALYZER_GROUPS_PROPERTY_KEY)
+        .name("Number of analyzer groups")
+        .description("Split the active rules into this number of groups of analyzer namespaces, each one analyzed by its own concurrent StyleCop "
+          + "execution over the same files. Combined with the shards, each shard is analyzed once per group. "
+          + "Helps projects made of few but large files.")
+        .defaultValue("1")
+        .type(PropertyType.INTEGER)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_REPORT_PARSER_THREADS_PROPERTY_KEY)
+        .name("Report parser threads")
+        .description("Number of threads parsing each report larger than 16 MB, split in byte ranges scanned concurrently from memory-mapped windows. "
+          + "1 to parse the reports on a single thread.")
+        .defaultValue("1")
+        .type(PropertyType.INTEGER)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_OUTPUT_LINES_PER_SECOND_PROPERTY_KEY)
+        .name("MSBuild output lines per second")
+        .description("Maximum number of MSBuild output lines logged per second, StyleCop warnings being counted instead of logged. "
+          + "0 to log all of them.")
+        .defaultValue("20")
+        .type(PropertyType.INTEGER)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_RAW_OUTPUT_PROPERTY_KEY)
+        .name("Raw MSBuild output")
+        .description("Write the whole MSBuild output to the file StyleCop-msbuild-output.log of the working directory.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_REMOTE_WORKERS_PROPERTY_KEY)
+        .name("Remote workers")
+        .description("Comma-separated list of \"host:port\" of StyleCop workers to execute StyleCop on, one shard at a time each, "
+          + "retrying the shards which fail on a worker on the other ones. "
+          + "The source files of each shard are uploaded to the worker, which sends the report back. "
+          + "Leave blank to execute StyleCop locally.")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_REMOTE_WORKERS_SECRET_PROPERTY_KEY)
+        .name("Remote workers secret")
+        .description("Secret shared with the StyleCop workers, given to them in their STYLECOP_WORKER_SECRET environment variable.")
+        .type(PropertyType.PASSWORD)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(STYLECOP_ANALYZE_SHARED_FILES_ONCE_PROPERTY_KEY)
+        .name("Analyze shared files once")
+        .description("Analyze the source files linked into the projects of several modules only with the first of these modules, "
+          + "in the order of the modules. The issues of these files are then reported only on that module, instead of on each of them.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
 
       deprecatedPropertyDefinition(STYLECOP_OLD_INSTALL_DIRECTORY_PROPERTY_KEY),
 
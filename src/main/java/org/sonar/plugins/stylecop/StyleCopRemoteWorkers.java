@@ -0,0 +1,236 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.SonarException;
+import org.sonar.api.utils.command.StreamConsumer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Dispatches StyleCop jobs to StyleCopWorkerServer processes, one job per worker at a time. The settings and the source files
+// of the job are uploaded to the worker, which sends the report back. A job which fails on a worker, be it unreachable, unable
+// to execute MSBuild or exiting with an error, is retried on the other ones.
+public class StyleCopRemoteWorkers {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopRemoteWorkers.class);
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+  private final List<InetSocketAddress> addresses;
+  private final byte[] secret;
+  private final List<InetSocketAddress> idleWorkers;
+
+  public StyleCopRemoteWorkers(List<InetSocketAddress> addresses, String secret) {
+    Preconditions.checkArgument(!addresses.isEmpty(), "No StyleCop worker given.");
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(secret), "The StyleCop workers require the secret set in the \""
+      + StyleCopPlugin.STYLECOP_REMOTE_WORKERS_SECRET_PROPERTY_KEY + "\" property.");
+    this.addresses = ImmutableList.copyOf(addresses);
+    this.secret = secret.getBytes(Charsets.UTF_8);
+    this.idleWorkers = Lists.newLinkedList(addresses);
+  }
+
+  public static List<InetSocketAddress> addresses(Iterable<String> hostsAndPorts) {
+    ImmutableList.Builder<InetSocketAddress> builder = ImmutableList.builder();
+    for (String hostAndPort : hostsAndPorts) {
+      int colon = hostAndPort.lastIndexOf(':');
+      try {
+        Preconditions.checkArgument(colon > 0);
+        builder.add(new InetSocketAddress(hostAndPort.substring(0, colon), Integer.parseInt(hostAndPort.substring(colon + 1))));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid StyleCop worker address \"" + hostAndPort + "\", expected \"host:port\".");
+      }
+    }
+    return builder.build();
+  }
+
+  public int size() {
+    return addresses.size();
+  }
+
+  // Each attempt gets its own output, discarded when the job fails on that worker so that the retry does not repeat it
+  public void execute(StyleCopJob job, long timeoutMillis, long inactivityTimeoutMillis, Supplier<? extends Output> outputs,
+    String timeoutExceptionMessage) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    Set<InetSocketAddress> triedWorkers = Sets.newHashSet();
+    List<String> failures = Lists.newArrayList();
+
+    while (triedWorkers.size() < addresses.size()) {
+      InetSocketAddress worker = acquire(triedWorkers);
+      triedWorkers.add(worker);
+      Output output = outputs.get();
+      boolean succeeded = false;
+      try {
+        run(worker, job, deadline, inactivityTimeoutMillis, output, timeoutExceptionMessage);
+        succeeded = true;
+        return;
+      } catch (IOException e) {
+        LOG.warn("Unable to analyze \"" + job + "\" on the StyleCop worker " + worker + ": " + e.getMessage());
+        failures.add(worker + ": " + e.getMessage());
+      } finally {
+        if (succeeded) {
+          output.end();
+        } else {
+          output.discard();
+        }
+        release(worker);
+      }
+    }
+
+    throw new SonarException("Unable to analyze \"" + job + "\" on any of the StyleCop workers: " + Joiner.on(", ").join(failures));
+  }
+
+  // The first idle worker not tried yet, waiting for one when they are all busy
+  private synchronized InetSocketAddress acquire(Set<InetSocketAddress> excludedWorkers) throws InterruptedException {
+    while (true) {
+      for (Iterator<InetSocketAddress> it = idleWorkers.iterator(); it.hasNext();) {
+        InetSocketAddress worker = it.next();
+        if (!excludedWorkers.contains(worker)) {
+          it.remove();
+          return worker;
+        }
+      }
+      wait();
+    }
+  }
+
+  // Last in the list, so that the workers which just failed are tried last
+  private synchronized void release(InetSocketAddress worker) {
+    idleWorkers.add(worker);
+    notifyAll();
+  }
+
+  private void run(InetSocketAddress worker, StyleCopJob job, long deadline, long inactivityTimeoutMillis, StreamConsumer consumer,
+    String timeoutExceptionMessage) throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.connect(worker, CONNECT_TIMEOUT_MILLIS);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      expect(StyleCopWorkerServer.HELLO, readType(socket, in, deadline, inactivityTimeoutMillis, worker, timeoutExceptionMessage), in);
+      byte[] nonce = new byte[StyleCopWorkerServer.NONCE_BYTES];
+      in.readFully(nonce);
+      out.writeUTF(StyleCopWorkerServer.AUTH);
+      out.write(StyleCopWorkerServer.mac(secret, nonce));
+
+      out.writeUTF(StyleCopWorkerServer.SETTINGS);
+      StyleCopWorkerServer.sendFile(out, job.settingsFile());
+      for (File sourceFile : job.sourceFiles()) {
+        out.writeUTF(StyleCopWorkerServer.SOURCE);
+        out.writeUTF(sourceFile.getAbsolutePath());
+        StyleCopWorkerServer.sendFile(out, sourceFile);
+      }
+      out.writeUTF(StyleCopWorkerServer.RUN);
+      out.flush();
+
+      boolean reportReceived = false;
+      while (true) {
+        String type = readType(socket, in, deadline, inactivityTimeoutMillis, worker, timeoutExceptionMessage);
+        if (StyleCopWorkerServer.OUT.equals(type)) {
+          consumer.consumeLine(in.readUTF());
+        } else if (StyleCopWorkerServer.REPORT.equals(type)) {
+          StyleCopWorkerServer.receiveFile(in, job.reportFile(), Long.MAX_VALUE);
+          reportReceived = true;
+        } else if (StyleCopWorkerServer.END.equals(type)) {
+          int exitCode = in.readInt();
+          if (exitCode != 0) {
+            throw new IOException("MSBuild exited with code " + exitCode);
+          } else if (!reportReceived) {
+            throw new IOException("No report was produced");
+          }
+          return;
+        } else {
+          expect(StyleCopWorkerServer.END, type, in);
+        }
+      }
+    } finally {
+      closeQuietly(socket);
+    }
+  }
+
+  private static void expect(String expectedType, String type, DataInputStream in) throws IOException {
+    if (StyleCopWorkerServer.ERR.equals(type)) {
+      throw new IOException(in.readUTF());
+    } else if (!expectedType.equals(type)) {
+      throw new IOException("Unexpected response: " + type);
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      LOG.debug("Unable to close the connection to a StyleCop worker", e);
+    }
+  }
+
+  private static String readType(Socket socket, DataInputStream in, long deadline, long inactivityTimeoutMillis, InetSocketAddress worker,
+    String timeoutExceptionMessage) throws IOException {
+    long remainingMillis = deadline - System.currentTimeMillis();
+    if (remainingMillis <= 0) {
+      throw new SonarException(timeoutExceptionMessage);
+    }
+    boolean inactivityFirst = inactivityTimeoutMillis > 0 && inactivityTimeoutMillis < remainingMillis;
+    socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, inactivityFirst ? inactivityTimeoutMillis : remainingMillis));
+
+    try {
+      return in.readUTF();
+    } catch (SocketTimeoutException e) {
+      if (!inactivityFirst) {
+        throw new SonarException(timeoutExceptionMessage);
+      }
+      throw new SonarException("StyleCop's execution on the worker " + worker + " was stopped after "
+        + TimeUnit.MILLISECONDS.toSeconds(inactivityTimeoutMillis) + " seconds without any output. Increase the inactivity timeout by setting \""
+        + StyleCopPlugin.STYLECOP_INACTIVITY_TIMEOUT_MINUTES_PROPERTY_KEY + "\" property.");
+    }
+  }
+
+  // The output of one attempt: ended when the job succeeded, discarded when it is retried
+  public interface Output extends StreamConsumer {
+
+    void end();
+
+    void discard();
+
+  }
+
+}
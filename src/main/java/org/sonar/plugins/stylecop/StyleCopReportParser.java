@@ -38,21 +38,69 @@ import java.util.List;
 
 public class StyleCopReportParser {
 
+  // Reports and project files are parsed from several threads: the factory is configured once, then only read. It never
+  // resolves external entities, which a project file could use to read or fetch arbitrary resources.
+  static final XMLInputFactory XML_FACTORY = xmlFactory();
+
+  private static XMLInputFactory xmlFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    return factory;
+  }
+
   public List<StyleCopIssue> parse(File file) {
-    return new Parser().parse(file);
+    final ImmutableList.Builder<StyleCopIssue> builder = ImmutableList.builder();
+    parse(file, new StyleCopIssueHandler() {
+      @Override
+      public void handle(StyleCopIssue issue) {
+        builder.add(issue);
+      }
+    });
+    return builder.build();
+  }
+
+  public void parse(File file, StyleCopIssueHandler handler) {
+    new Parser(XML_FACTORY, file, handler).parse();
+  }
+
+  static String requiredAttribute(@Nullable String value, String name, File file, int line) {
+    if (value == null) {
+      throw parseError("Missing attribute \"" + name + "\" in element <Violation>", file, line);
+    }
+
+    return value;
+  }
+
+  static int requiredIntAttribute(@Nullable String value, String name, File file, int line) {
+    String requiredValue = requiredAttribute(value, name, file, line);
+
+    try {
+      return Integer.parseInt(requiredValue);
+    } catch (NumberFormatException e) {
+      throw parseError("Expected an integer instead of \"" + requiredValue + "\" for the attribute \"" + name + "\"", file, line);
+    }
+  }
+
+  static ParseErrorException parseError(String message, File file, int line) {
+    return new ParseErrorException(message + " in " + file.getAbsolutePath() + " at line " + line);
   }
 
   private static class Parser {
 
-    private File file;
+    private final XMLInputFactory xmlFactory;
+    private final File file;
+    private final StyleCopIssueHandler handler;
     private XMLStreamReader stream;
-    private final ImmutableList.Builder<StyleCopIssue> filesBuilder = ImmutableList.builder();
 
-    public List<StyleCopIssue> parse(File file) {
+    public Parser(XMLInputFactory xmlFactory, File file, StyleCopIssueHandler handler) {
+      this.xmlFactory = xmlFactory;
       this.file = file;
+      this.handler = handler;
+    }
 
+    public void parse() {
       InputStreamReader reader = null;
-      XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
 
       try {
         reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
@@ -75,8 +123,6 @@ public class StyleCopReportParser {
         closeXmlStream();
         Closeables.closeQuietly(reader);
       }
-
-      return filesBuilder.build();
     }
 
     private void closeXmlStream() {
@@ -90,51 +136,34 @@ public class StyleCopReportParser {
     }
 
     private void handleViolationTag() throws XMLStreamException {
-      int lineNumber = getRequiredIntAttribute("LineNumber");
-      String source = getRequiredAttribute("Source");
-      String ruleNamespace = getAttribute("RuleNamespace");
-      String rule = getAttribute("Rule");
-      String message = stream.getElementText();
-      filesBuilder.add(new StyleCopIssue(stream.getLocation().getLineNumber(), lineNumber, source, ruleNamespace, rule, message));
-    }
-
-    private String getRequiredAttribute(String name) {
-      String value = getAttribute(name);
-      if (value == null) {
-        throw parseError("Missing attribute \"" + name + "\" in element <" + stream.getLocalName() + ">");
-      }
-
-      return value;
-    }
-
-    private int getRequiredIntAttribute(String name) {
-      String value = getRequiredAttribute(name);
+      String lineNumber = null;
+      String source = null;
+      String ruleNamespace = null;
+      String rule = null;
 
-      try {
-        return Integer.parseInt(value);
-      } catch (NumberFormatException e) {
-        throw parseError("Expected an integer instead of \"" + value + "\" for the attribute \"" + name + "\"");
-      }
-    }
-
-    @Nullable
-    private String getAttribute(String name) {
       for (int i = 0; i < stream.getAttributeCount(); i++) {
-        if (name.equals(stream.getAttributeLocalName(i))) {
-          return stream.getAttributeValue(i);
+        String name = stream.getAttributeLocalName(i);
+        if ("LineNumber".equals(name)) {
+          lineNumber = stream.getAttributeValue(i);
+        } else if ("Source".equals(name)) {
+          source = stream.getAttributeValue(i);
+        } else if ("RuleNamespace".equals(name)) {
+          ruleNamespace = stream.getAttributeValue(i);
+        } else if ("Rule".equals(name)) {
+          rule = stream.getAttributeValue(i);
         }
       }
 
-      return null;
-    }
-
-    private ParseErrorException parseError(String message) {
-      return new ParseErrorException(message + " in " + file.getAbsolutePath() + " at line " + stream.getLocation().getLineNumber());
+      int line = stream.getLocation().getLineNumber();
+      int parsedLineNumber = requiredIntAttribute(lineNumber, "LineNumber", file, line);
+      String requiredSource = requiredAttribute(source, "Source", file, line);
+      String message = stream.getElementText();
+      handler.handle(new StyleCopIssue(stream.getLocation().getLineNumber(), parsedLineNumber, requiredSource, ruleNamespace, rule, message));
     }
 
   }
 
-  private static class ParseErrorException extends RuntimeException {
+  static class ParseErrorException extends RuntimeException {
 
     private static final long serialVersionUID = 1L;
 
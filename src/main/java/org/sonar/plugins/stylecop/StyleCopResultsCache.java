@@ -0,0 +1,131 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.NameFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StyleCopResultsCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopResultsCache.class);
+
+  private static final String FINGERPRINT_FILE_NAME = "settings.sha1";
+  private static final String STYLECOP_CACHE_FILE_NAME = "StyleCop.Cache";
+
+  private final File directory;
+
+  public StyleCopResultsCache(File directory) {
+    this.directory = directory;
+  }
+
+  public File directory() {
+    return directory;
+  }
+
+  public File directory(String name) {
+    File result = new File(directory, name);
+    result.mkdirs();
+    return result;
+  }
+
+  public void prepare(File settingsFile) {
+    try {
+      String fingerprint = DigestUtils.sha1Hex(Files.toByteArray(settingsFile));
+      String invalidityReason = invalidityReason(fingerprint);
+
+      if (invalidityReason == null) {
+        LOG.info("Performing an incremental StyleCop analysis using the previous results from: " + directory.getAbsolutePath());
+      } else {
+        LOG.info("Performing a full StyleCop analysis " + invalidityReason);
+        FileUtils.deleteQuietly(directory);
+        directory.mkdirs();
+        Files.write(fingerprint, new File(directory, FINGERPRINT_FILE_NAME), Charsets.UTF_8);
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @Nullable
+  private String invalidityReason(String fingerprint) throws IOException {
+    File fingerprintFile = new File(directory, FINGERPRINT_FILE_NAME);
+    if (!fingerprintFile.isFile()) {
+      return "because there are no previous results.";
+    }
+    if (!fingerprint.equals(Files.toString(fingerprintFile, Charsets.UTF_8).trim())) {
+      return "because the StyleCop settings changed since the previous analysis.";
+    }
+    for (File cacheFile : FileUtils.listFiles(directory, new NameFileFilter(STYLECOP_CACHE_FILE_NAME), TrueFileFilter.INSTANCE)) {
+      if (!isWellFormed(cacheFile)) {
+        return "because the previous results are corrupted: " + cacheFile.getAbsolutePath();
+      }
+    }
+    return null;
+  }
+
+  private static boolean isWellFormed(File file) {
+    InputStream input = null;
+    XMLStreamReader stream = null;
+    try {
+      input = new FileInputStream(file);
+      stream = XMLInputFactory.newInstance().createXMLStreamReader(input);
+      while (stream.hasNext()) {
+        stream.next();
+      }
+      return true;
+    } catch (IOException e) {
+      return false;
+    } catch (XMLStreamException e) {
+      return false;
+    } finally {
+      closeQuietly(stream);
+      Closeables.closeQuietly(input);
+    }
+  }
+
+  private static void closeQuietly(@Nullable XMLStreamReader stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (XMLStreamException e) {
+        // Ignore
+      }
+    }
+  }
+
+}
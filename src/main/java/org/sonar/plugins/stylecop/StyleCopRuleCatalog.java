@@ -0,0 +1,109 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleParam;
+import org.sonar.api.rules.RulePriority;
+import org.sonar.check.Cardinality;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+// Binary form of src/main/rules/rules.xml, compiled by the build (see StyleCopRuleCatalogCompiler, in src/build/java and
+// run by the exec-maven-plugin execution in the pom) so that creating the rule repository does not parse the XML.
+public final class StyleCopRuleCatalog {
+
+  public static final String RESOURCE = "/org/sonar/plugins/stylecop/rules.catalog";
+
+  static final int VERSION = 2;
+
+  private StyleCopRuleCatalog() {
+  }
+
+  public static List<Rule> read(InputStream input) {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+    try {
+      int version = in.readInt();
+      Preconditions.checkArgument(version == VERSION, "Unsupported StyleCop rule catalog version: " + version);
+
+      int ruleCount = in.readInt();
+      List<Rule> rules = Lists.newArrayListWithCapacity(ruleCount);
+      for (int i = 0; i < ruleCount; i++) {
+        Rule rule = Rule.create();
+        rule.setKey(in.readUTF());
+        rule.setName(in.readUTF());
+        rule.setConfigKey(readNullableUTF(in));
+        String severity = readNullableUTF(in);
+        rule.setSeverity(severity == null ? null : RulePriority.valueOf(severity));
+        String cardinality = readNullableUTF(in);
+        rule.setCardinality(cardinality == null ? null : Cardinality.valueOf(cardinality));
+        rule.setStatus(readNullableUTF(in));
+        rule.setDescription(readDescription(in));
+        int paramCount = in.readInt();
+        for (int j = 0; j < paramCount; j++) {
+          RuleParam param = rule.createParameter(in.readUTF());
+          String description = readNullableUTF(in);
+          // setDescription() would turn a missing description into an empty one, unlike XMLRuleParser
+          if (description != null) {
+            param.setDescription(description);
+          }
+          param.setType(readNullableUTF(in));
+          param.setDefaultValue(readNullableUTF(in));
+        }
+        rules.add(rule);
+      }
+
+      return rules;
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  @Nullable
+  private static String readDescription(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  @Nullable
+  private static String readNullableUTF(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+}
@@ -21,25 +21,28 @@ package org.sonar.plugins.stylecop;
 
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleRepository;
-import org.sonar.api.rules.XMLRuleParser;
+import org.sonar.api.utils.SonarException;
 
+import java.io.InputStream;
 import java.util.List;
 
 public class StyleCopRuleRepository extends RuleRepository {
 
   private static final String REPOSITORY_NAME = "StyleCop";
 
-  private final XMLRuleParser xmlRuleParser;
-
-  public StyleCopRuleRepository(XMLRuleParser xmlRuleParser) {
+  public StyleCopRuleRepository() {
     super(StyleCopPlugin.REPOSITORY_KEY, StyleCopPlugin.LANGUAGE_KEY);
     setName(REPOSITORY_NAME);
-    this.xmlRuleParser = xmlRuleParser;
   }
 
   @Override
   public List<Rule> createRules() {
-    return xmlRuleParser.parse(getClass().getResourceAsStream("/org/sonar/plugins/stylecop/rules.xml"));
+    InputStream catalog = getClass().getResourceAsStream(StyleCopRuleCatalog.RESOURCE);
+    if (catalog == null) {
+      throw new SonarException("Missing the StyleCop rule catalog " + StyleCopRuleCatalog.RESOURCE + ": rebuild the plugin with Maven");
+    }
+
+    return StyleCopRuleCatalog.read(catalog);
   }
 
 }
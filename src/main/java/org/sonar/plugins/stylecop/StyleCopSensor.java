@@ -20,8 +20,12 @@
 package org.sonar.plugins.stylecop;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor;
@@ -35,10 +39,15 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.stylecop.StyleCopStatistics.Counter;
+import org.sonar.plugins.stylecop.StyleCopStatistics.Phase;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class StyleCopSensor implements Sensor {
 
@@ -52,19 +61,29 @@ public class StyleCopSensor implements Sensor {
   private final RulesProfile profile;
   private final ModuleFileSystem fileSystem;
   private final ResourcePerspectives perspectives;
+  private final StyleCopWorkers workers;
+  private final StyleCopBatch batch;
+  private List<File> sourceFiles;
 
   public StyleCopSensor(Settings settings, RulesProfile profile, ModuleFileSystem fileSystem, ResourcePerspectives perspectives) {
+    this(settings, profile, fileSystem, perspectives, null, null);
+  }
+
+  public StyleCopSensor(Settings settings, RulesProfile profile, ModuleFileSystem fileSystem, ResourcePerspectives perspectives,
+    @Nullable StyleCopWorkers workers, @Nullable StyleCopBatch batch) {
     this.settings = settings;
     this.profile = profile;
     this.fileSystem = fileSystem;
     this.perspectives = perspectives;
+    this.workers = workers;
+    this.batch = batch;
   }
 
   @Override
   public boolean shouldExecuteOnProject(Project project) {
     boolean shouldExecute;
 
-    if (!hasFilesToAnalyze()) {
+    if (sourceFiles().isEmpty()) {
       shouldExecute = false;
     } else if (profile.getActiveRulesByRepository(StyleCopPlugin.REPOSITORY_KEY).isEmpty()) {
       LOG.info("All StyleCop rules are disabled, skipping its execution.");
@@ -76,15 +95,37 @@ public class StyleCopSensor implements Sensor {
     return shouldExecute;
   }
 
-  private boolean hasFilesToAnalyze() {
-    return !fileSystem.files(FileQuery.onSource().onLanguage(StyleCopPlugin.LANGUAGE_KEY)).isEmpty();
+  // The source files indexed by SonarQube, inclusions and exclusions applied, enumerated once for the module
+  private List<File> sourceFiles() {
+    if (sourceFiles == null) {
+      sourceFiles = fileSystem.files(FileQuery.onSource().onLanguage(StyleCopPlugin.LANGUAGE_KEY));
+    }
+    return sourceFiles;
   }
 
   @Override
   public void analyse(Project project, SensorContext context) {
+    StyleCopConfiguration styleCopConf = new StyleCopConfiguration(settings);
+    StyleCopOutputLog outputLog = new StyleCopOutputLog(
+      styleCopConf.outputLinesPerSecond(),
+      styleCopConf.rawOutput() ? new File(fileSystem.workingDir(), "StyleCop-msbuild-output.log") : null);
+
     analyse(context, new FileProvider(project, context),
-      new StyleCopConfiguration(settings),
-      new StyleCopSettingsWriter(), new StyleCopMsBuildWriter(), new StyleCopReportParser(), new StyleCopExecutor());
+      styleCopConf,
+      new StyleCopSettingsWriter(), new StyleCopMsBuildWriter(), reportParser(styleCopConf),
+      new StyleCopExecutor(styleCopConf.inactivityTimeoutMinutes(), styleCopConf.worker() ? workers : null, remoteWorkers(styleCopConf), outputLog));
+  }
+
+  static StyleCopReportParser reportParser(StyleCopConfiguration styleCopConf) {
+    StyleCopReportParser parser;
+    if (styleCopConf.reportParserThreads() > 1) {
+      parser = new StyleCopParallelReportParser(styleCopConf.reportParserThreads());
+    } else if (styleCopConf.mappedReportParser()) {
+      parser = new StyleCopMappedReportParser();
+    } else {
+      parser = new StyleCopReportParser();
+    }
+    return parser;
   }
 
   @VisibleForTesting
@@ -93,59 +134,142 @@ public class StyleCopSensor implements Sensor {
     StyleCopSettingsWriter settingsWriter, StyleCopMsBuildWriter msBuildWriter, StyleCopReportParser parser,
     StyleCopExecutor executor) {
 
+    StyleCopStatistics statistics = new StyleCopStatistics();
+
+    long start = System.nanoTime();
     File settingsFile = new File(fileSystem.workingDir(), "StyleCop-settings.StyleCop");
     settingsWriter.write(enabledRuleConfigKeys(), styleCopConf.ignoredHungarianPrefixes(), settingsFile);
 
-    File msBuildFile = new File(fileSystem.workingDir(), "StyleCop-msbuild.proj");
-    File reportFile = new File(fileSystem.workingDir(), "StyleCop-report.xml");
-    msBuildWriter.write(
-      new File(styleCopConf.styleCopDllPath()),
-      new File(styleCopConf.projectFilePath()),
-      settingsFile, reportFile, msBuildFile);
+    StyleCopResultsCache resultsCache = null;
+    if (styleCopConf.incremental()) {
+      resultsCache = new StyleCopResultsCache(new File(fileSystem.workingDir(), "StyleCop-cache"));
+      resultsCache.prepare(settingsFile);
+    }
+    statistics.addSince(Phase.SETTINGS, start);
 
-    executor.execute(
-      styleCopConf.msBuildPath(),
-      msBuildFile.getAbsolutePath(),
-      styleCopConf.timeoutMinutes(),
-      "StyleCop's execution timed out. Increase the timeout by setting \"" + StyleCopPlugin.STYLECOP_TIMEOUT_MINUTES_PROPERTY_KEY + "\" property.");
+    start = System.nanoTime();
+    List<File> sourceFiles = sourceFiles();
+    List<File> ownedFiles = sourceFiles;
+    Set<String> sharedFiles = ImmutableSet.of();
+    if (styleCopConf.analyzeSharedFilesOnce() && batch != null) {
+      ownedFiles = batch.claim(new File(styleCopConf.projectFilePath()), sourceFiles);
+      sharedFiles = sharedFiles(sourceFiles, ownedFiles);
+      if (!sharedFiles.isEmpty()) {
+        LOG.info("Skipping the " + sharedFiles.size() + " files already analyzed with another module.");
+      }
+    }
+    IssueImporter importer = new IssueImporter(
+      new IssuableIndex(sourceFiles, fileProvider, perspectives), sharedFiles, ruleKeysMapping(), statistics);
+    List<File> nonGeneratedFiles = ownedFiles;
+    if (styleCopConf.excludeGeneratedCode()) {
+      nonGeneratedFiles = new StyleCopGeneratedCode(new File(fileSystem.workingDir(), "StyleCop-generated.cache")).exclude(ownedFiles);
+    }
+    List<File> filesToAnalyze = nonGeneratedFiles;
+    statistics.addSince(Phase.INDEX, start);
 
-    boolean skippedIssues = false;
+    start = System.nanoTime();
+    StyleCopIssueCache issueCache = null;
+    if (styleCopConf.issueCache()) {
+      issueCache = new StyleCopIssueCache(
+        new File(fileSystem.workingDir(), "StyleCop-issues.cache"),
+        issueCacheFingerprint(styleCopConf),
+        enabledRuleConfigKeys());
+      filesToAnalyze = issueCache.changedFiles(filesToAnalyze);
+    }
+    statistics.addSince(Phase.ISSUE_CACHE, start);
 
-    Map<String, String> ruleKeysMapping = ruleKeysMapping();
-    for (StyleCopIssue issue : parser.parse(reportFile)) {
-      File file = new File(issue.source());
-      org.sonar.api.resources.File sonarFile = fileProvider.fromIOFile(file);
-      if (sonarFile == null) {
-        skippedIssues = true;
-        logSkippedIssueOutsideOfSonarQube(issue, file);
-      } else {
-        Issuable issuable = perspectives.as(Issuable.class, sonarFile);
-        if (issuable == null) {
-          skippedIssues = true;
-          logSkippedIssueOutsideOfSonarQube(issue, file);
-        } else if (!ruleKeysMapping.containsKey(issue.rule())) {
-          skippedIssues = true;
-          logSkippedIssue(issue, "because the rule \"" + issue.rule() + "\" is either missing or inactive in the quality profile.");
-        } else {
-          issuable.addIssue(
-            issuable.newIssueBuilder()
-              .ruleKey(RuleKey.of(StyleCopPlugin.REPOSITORY_KEY, ruleKeysMapping.get(issue.rule())))
-              .line(issue.lineNumber())
-              .message(issue.message())
-              .build());
-        }
-      }
+    StyleCopIssueHandler handler = importer;
+    if (issueCache != null) {
+      issueCache.replay(statistics.counting(Counter.REPLAYED, importer));
+      handler = issueCache.recorder(importer);
+    }
+    handler = statistics.counting(Counter.PARSED, handler);
+    if (styleCopConf.importGroupingThreshold() > 0) {
+      handler = new StyleCopIssueGrouper(handler, styleCopConf.importGroupingThreshold(), new File(fileSystem.workingDir(), "StyleCop-spill"));
     }
 
-    if (skippedIssues) {
+    if (filesToAnalyze.isEmpty()) {
+      LOG.info("No file left to analyze, skipping StyleCop's execution.");
+    } else {
+      execution(styleCopConf, settingsWriter, msBuildWriter, parser, executor, statistics, resultsCache).execute(settingsFile, filesToAnalyze, handler);
+    }
+
+    if (issueCache != null && !issueCache.addedRuleConfigKeys().isEmpty() && !issueCache.unchangedFiles().isEmpty()) {
+      File addedRulesSettingsFile = new File(fileSystem.workingDir(), "StyleCop-settings-added.StyleCop");
+      settingsWriter.write(issueCache.addedRuleConfigKeys(), styleCopConf.ignoredHungarianPrefixes(), addedRulesSettingsFile);
+      LOG.info("Executing the " + issueCache.addedRuleConfigKeys().size() + " newly activated rules on the " + issueCache.unchangedFiles().size()
+        + " unchanged files.");
+      new StyleCopShardedExecution(styleCopConf, fileSystem.workingDir(), msBuildWriter, parser, executor, statistics,
+        settingsWriter, ImmutableList.<List<String>>of(), null)
+        .execute(addedRulesSettingsFile, issueCache.unchangedFiles(), handler);
+    }
+
+    if (styleCopConf.profileAnalyzers() && !nonGeneratedFiles.isEmpty()) {
+      List<StyleCopAnalyzerProfiler.Pass> passes = new StyleCopAnalyzerProfiler(settingsWriter, msBuildWriter, parser, executor)
+        .profile(styleCopConf, enabledRuleConfigKeys(), nonGeneratedFiles, fileSystem.workingDir(), StyleCopExecution.TIMEOUT_EXCEPTION_MESSAGE);
+      LOG.info(StyleCopAnalyzerProfiler.summary(passes));
+      StyleCopAnalyzerProfiler.write(passes, new File(fileSystem.workingDir(), "StyleCop-profile.json"));
+    }
+
+    if (issueCache != null) {
+      start = System.nanoTime();
+      issueCache.save();
+      statistics.addSince(Phase.ISSUE_CACHE, start);
+    }
+
+    if (importer.skippedIssues) {
       LOG.info("The import of some StyleCop issues were skipped. See DEBUG logs for details.");
     }
+
+    statistics.stop();
+    LOG.info(statistics.summary());
+    statistics.write(new File(fileSystem.workingDir(), "StyleCop-statistics.json"));
+  }
+
+  // The only place where the execution modes of the configuration are combined
+  private StyleCopExecution execution(StyleCopConfiguration styleCopConf, StyleCopSettingsWriter settingsWriter, StyleCopMsBuildWriter msBuildWriter,
+    StyleCopReportParser parser, StyleCopExecutor executor, StyleCopStatistics statistics, @Nullable StyleCopResultsCache resultsCache) {
+    File workingDir = fileSystem.workingDir();
+    StyleCopExecution execution;
+    if (styleCopConf.shards() > 1 || styleCopConf.analyzerGroups() > 1) {
+      List<List<String>> analyzerGroups = StyleCopShardedExecution.analyzerGroups(enabledRuleConfigKeys(), styleCopConf.analyzerGroups());
+      execution = new StyleCopShardedExecution(styleCopConf, workingDir, msBuildWriter, parser, executor, statistics, settingsWriter, analyzerGroups,
+        resultsCache);
+    } else if (styleCopConf.batch() && batch != null && styleCopConf.remoteWorkers().isEmpty() && !styleCopConf.issueCache()) {
+      // The batch report covers whole projects, while the remote workers only receive the files of their job, and the issue cache
+      // replays the issues of the unchanged files
+      execution = new StyleCopBatchExecution(styleCopConf, workingDir, msBuildWriter, parser, executor, statistics, batch, resultsCache);
+    } else {
+      execution = new StyleCopSingleExecution(styleCopConf, workingDir, msBuildWriter, parser, executor, statistics, resultsCache);
+    }
+    return execution;
+  }
+
+  private static Set<String> sharedFiles(List<File> sourceFiles, List<File> ownedFiles) {
+    Set<File> owned = Sets.newHashSet(ownedFiles);
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for (File file : sourceFiles) {
+      if (!owned.contains(file)) {
+        builder.add(StyleCopPaths.normalize(file));
+      }
+    }
+    return builder.build();
+  }
+
+  @Nullable
+  private static StyleCopRemoteWorkers remoteWorkers(StyleCopConfiguration styleCopConf) {
+    List<String> hostsAndPorts = styleCopConf.remoteWorkers();
+    return hostsAndPorts.isEmpty() ? null : new StyleCopRemoteWorkers(StyleCopRemoteWorkers.addresses(hostsAndPorts), styleCopConf.remoteWorkersSecret());
   }
 
   private static void logSkippedIssueOutsideOfSonarQube(StyleCopIssue issue, File file) {
     logSkippedIssue(issue, "whose file \"" + file.getAbsolutePath() + "\" is not in SonarQube.");
   }
 
+  private static void logSkippedIssueWithoutIssuable(StyleCopIssue issue, File file) {
+    logSkippedIssue(issue, "because no issuable was found for its file \"" + file.getAbsolutePath() + "\".");
+  }
+
   private static void logSkippedIssue(StyleCopIssue issue, String reason) {
     LOG.debug("Skipping the StyleCop issue at line " + issue.reportLine() + " " + reason);
   }
@@ -164,8 +288,19 @@ public class StyleCopSensor implements Sensor {
     return builder.build();
   }
 
-  private Map<String, String> ruleKeysMapping() {
-    ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+  // Cached issues are dropped, including the ones of unchanged rules, when another StyleCop or MSBuild may report different ones
+  private static String issueCacheFingerprint(StyleCopConfiguration styleCopConf) {
+    File styleCopDll = new File(styleCopConf.styleCopDllPath()).getAbsoluteFile();
+    return DigestUtils.sha1Hex(Joiner.on('\n').join(
+      styleCopDll.getPath(),
+      styleCopDll.length(),
+      styleCopDll.lastModified(),
+      styleCopConf.msBuildPath(),
+      Joiner.on('\n').join(styleCopConf.ignoredHungarianPrefixes())));
+  }
+
+  private Map<String, RuleKey> ruleKeysMapping() {
+    ImmutableMap.Builder<String, RuleKey> builder = ImmutableMap.builder();
     for (ActiveRule activeRule : profile.getActiveRulesByRepository(StyleCopPlugin.REPOSITORY_KEY)) {
       String effectiveConfigKey = activeRule.getConfigKey();
       if (effectiveConfigKey == null) {
@@ -173,9 +308,82 @@ public class StyleCopSensor implements Sensor {
       } else {
         effectiveConfigKey = activeRule.getRuleKey();
       }
-      builder.put(effectiveConfigKey, activeRule.getRuleKey());
+      builder.put(effectiveConfigKey, RuleKey.of(StyleCopPlugin.REPOSITORY_KEY, activeRule.getRuleKey()));
     }
     return builder.build();
   }
 
+  // Only one issue out of TIMING_SAMPLE is timed, its durations being extrapolated to the others: reading the clock for each
+  // issue would cost as much as importing it
+  private static class IssueImporter implements StyleCopIssueHandler {
+
+    private static final int TIMING_SAMPLE = 64;
+
+    private final IssuableIndex issuableIndex;
+    private final Set<String> sharedFiles;
+    private final Map<String, RuleKey> ruleKeysMapping;
+    private final StyleCopStatistics statistics;
+    private boolean skippedIssues = false;
+    private String lastSource;
+    private boolean lastShared;
+    private Issuable lastIssuable;
+    private long handledIssues;
+
+    public IssueImporter(IssuableIndex issuableIndex, Set<String> sharedFiles, Map<String, RuleKey> ruleKeysMapping, StyleCopStatistics statistics) {
+      this.issuableIndex = issuableIndex;
+      this.sharedFiles = sharedFiles;
+      this.ruleKeysMapping = ruleKeysMapping;
+      this.statistics = statistics;
+    }
+
+    @Override
+    public void handle(StyleCopIssue issue) {
+      boolean timed = handledIssues++ % TIMING_SAMPLE == 0;
+      long start = timed ? System.nanoTime() : 0;
+      // Consecutive issues of the same file, as when grouped, share its issuable
+      if (!issue.source().equals(lastSource)) {
+        lastSource = issue.source();
+        lastShared = !sharedFiles.isEmpty() && sharedFiles.contains(StyleCopPaths.normalize(lastSource));
+        lastIssuable = lastShared ? null : issuableIndex.issuable(lastSource);
+      }
+      Issuable issuable = lastIssuable;
+      if (timed) {
+        long now = System.nanoTime();
+        statistics.add(Phase.RESOLUTION, (now - start) * TIMING_SAMPLE);
+        start = now;
+      }
+      RuleKey ruleKey = issuable == null ? null : ruleKeysMapping.get(issue.rule());
+
+      if (lastShared) {
+        // Reported by the module which owns the file, as when the batch report covers the projects of several modules
+        statistics.increment(Counter.SKIPPED_SHARED);
+      } else if (issuable == null) {
+        skippedIssues = true;
+        if (issuableIndex.isInSonarQube(issue.source())) {
+          statistics.increment(Counter.SKIPPED_NO_ISSUABLE);
+          logSkippedIssueWithoutIssuable(issue, new File(issue.source()));
+        } else {
+          statistics.increment(Counter.SKIPPED_NOT_IN_SONARQUBE);
+          logSkippedIssueOutsideOfSonarQube(issue, new File(issue.source()));
+        }
+      } else if (ruleKey == null) {
+        skippedIssues = true;
+        statistics.increment(Counter.SKIPPED_INACTIVE_RULE);
+        logSkippedIssue(issue, "because the rule \"" + issue.rule() + "\" is either missing or inactive in the quality profile.");
+      } else {
+        issuable.addIssue(
+          issuable.newIssueBuilder()
+            .ruleKey(ruleKey)
+            .line(issue.lineNumber())
+            .message(issue.message())
+            .build());
+        if (timed) {
+          statistics.add(Phase.ADD_ISSUE, (System.nanoTime() - start) * TIMING_SAMPLE);
+        }
+        statistics.increment(Counter.IMPORTED);
+      }
+    }
+
+  }
+
 }
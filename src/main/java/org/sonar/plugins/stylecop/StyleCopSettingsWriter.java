@@ -28,11 +28,14 @@ import org.apache.commons.io.IOUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 public class StyleCopSettingsWriter {
 
+  private static final char NAMESPACE_SEPARATOR = '#';
+
   public void write(List<String> ruleConfigKeys, Iterable<String> ignoredHungarianPrefixes, File file) {
     StringBuilder sb = new StringBuilder();
 
@@ -66,18 +69,27 @@ public class StyleCopSettingsWriter {
     appendLine(sb, "</StyleCopSettings>");
 
     try {
-      Files.write(sb.toString().getBytes(Charsets.UTF_8), file);
+      byte[] contents = sb.toString().getBytes(Charsets.UTF_8);
+      // Keep the previous timestamp when nothing changed, so that StyleCop's results cache remains valid
+      if (!file.isFile() || !Arrays.equals(contents, Files.toByteArray(file))) {
+        Files.write(contents, file);
+      }
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
   }
 
-  private static List<String> ruleNamespaces(List<String> ruleConfigKeys) {
+  // The keys without a namespace, which StyleCop could not enable, are ignored
+  static List<String> ruleNamespaces(List<String> ruleConfigKeys) {
     ImmutableList.Builder<String> builder = ImmutableList.builder();
     Set<String> alreadyAddedNamespaces = Sets.newHashSet();
 
     for (String ruleConfigKey : ruleConfigKeys) {
-      String ruleNamespace = ruleConfigKey.substring(0, ruleConfigKey.indexOf('#'));
+      int separator = ruleConfigKey.indexOf(NAMESPACE_SEPARATOR);
+      if (separator <= 0) {
+        continue;
+      }
+      String ruleNamespace = ruleConfigKey.substring(0, separator);
       if (!alreadyAddedNamespaces.contains(ruleNamespace)) {
         builder.add(ruleNamespace);
         alreadyAddedNamespaces.add(ruleNamespace);
@@ -87,19 +99,28 @@ public class StyleCopSettingsWriter {
     return builder.build();
   }
 
-  private static List<String> ruleKeys(String ruleNamespace, List<String> ruleConfigKeys) {
+  static List<String> ruleConfigKeys(String ruleNamespace, List<String> ruleConfigKeys) {
     ImmutableList.Builder<String> builder = ImmutableList.builder();
 
     for (String ruleConfigKey : ruleConfigKeys) {
-      if (ruleConfigKey.startsWith(ruleNamespace)) {
-        String ruleKey = ruleConfigKey.substring(ruleNamespace.length() + 1);
-        builder.add(ruleKey);
+      if (ruleConfigKey.startsWith(ruleNamespace + NAMESPACE_SEPARATOR)) {
+        builder.add(ruleConfigKey);
       }
     }
 
     return builder.build();
   }
 
+  private static List<String> ruleKeys(String ruleNamespace, List<String> ruleConfigKeys) {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+
+    for (String ruleConfigKey : ruleConfigKeys(ruleNamespace, ruleConfigKeys)) {
+      builder.add(ruleConfigKey.substring(ruleNamespace.length() + 1));
+    }
+
+    return builder.build();
+  }
+
   private static void appendLine(StringBuilder sb, String s) {
     sb.append(s);
     sb.append(IOUtils.LINE_SEPARATOR);
@@ -0,0 +1,186 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.stylecop.StyleCopStatistics.Phase;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Each shard of files is analyzed once per group of analyzers, all of them concurrently, each report being imported as soon as its
+// execution completes
+public class StyleCopShardedExecution extends StyleCopExecution {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopShardedExecution.class);
+
+  private final StyleCopSettingsWriter settingsWriter;
+  private final List<List<String>> analyzerGroups;
+  private final StyleCopResultsCache resultsCache;
+
+  // No analyzer group, or a single one, to analyze with the given settings file only
+  public StyleCopShardedExecution(StyleCopConfiguration styleCopConf, File workingDir, StyleCopMsBuildWriter msBuildWriter, StyleCopReportParser parser,
+    StyleCopExecutor executor, StyleCopStatistics statistics, StyleCopSettingsWriter settingsWriter, List<List<String>> analyzerGroups,
+    @Nullable StyleCopResultsCache resultsCache) {
+    super(styleCopConf, workingDir, msBuildWriter, parser, executor, statistics);
+    this.settingsWriter = settingsWriter;
+    this.analyzerGroups = analyzerGroups;
+    this.resultsCache = resultsCache;
+  }
+
+  @Override
+  public void execute(File settingsFile, List<File> files, final StyleCopIssueHandler handler) {
+    long start = System.nanoTime();
+    List<File> settingsFiles = analyzerGroupSettingsFiles(settingsFile);
+    List<StyleCopJob> jobs = Lists.newArrayList();
+
+    List<List<File>> shards = shards(files, styleCopConf.shards());
+    for (int i = 0; i < shards.size(); i++) {
+      for (int j = 0; j < settingsFiles.size(); j++) {
+        String part = settingsFiles.size() == 1 ? Integer.toString(i) : i + "-" + j;
+        File msBuildFile = new File(workingDir, "StyleCop-msbuild-" + part + ".proj");
+        File reportFile = new File(workingDir, "StyleCop-report-" + part + ".xml");
+        FileUtils.deleteQuietly(reportFile);
+        msBuildWriter.write(
+          new File(styleCopConf.styleCopDllPath()),
+          new File(styleCopConf.projectFilePath()),
+          settingsFiles.get(j), reportFile, shards.get(i), resultsCache == null ? null : resultsCache.directory(part), msBuildFile);
+
+        jobs.add(new StyleCopJob(msBuildFile, settingsFiles.get(j), reportFile, shards.get(i)));
+      }
+    }
+
+    int slots = styleCopConf.remoteWorkers().isEmpty() ? Runtime.getRuntime().availableProcessors() : styleCopConf.remoteWorkers().size();
+    int parallelism = Math.min(jobs.size(), slots);
+    LOG.info("Executing StyleCop on " + shards.size() + " shards and " + settingsFiles.size() + " analyzer groups, "
+      + parallelism + " executions at a time.");
+
+    long parsingAndImportNanos = statistics.nanos(Phase.PARSING) + importNanos();
+    executor.execute(styleCopConf.msBuildPath(), jobs, parallelism, styleCopConf.timeoutMinutes(), TIMEOUT_EXCEPTION_MESSAGE,
+      new StyleCopExecutor.CompletionListener() {
+        @Override
+        public void completed(StyleCopJob job) {
+          parse(job.reportFile(), handler);
+        }
+      });
+    statistics.add(Phase.EXECUTION,
+      Math.max(0, System.nanoTime() - start - (statistics.nanos(Phase.PARSING) + importNanos() - parsingAndImportNanos)));
+  }
+
+  // One settings file per group of analyzer namespaces, or the given one when the rules are not split
+  private List<File> analyzerGroupSettingsFiles(File settingsFile) {
+    if (analyzerGroups.size() <= 1) {
+      return ImmutableList.of(settingsFile);
+    }
+
+    ImmutableList.Builder<File> builder = ImmutableList.builder();
+    for (int i = 0; i < analyzerGroups.size(); i++) {
+      File groupSettingsFile = new File(workingDir, "StyleCop-settings-" + i + ".StyleCop");
+      settingsWriter.write(analyzerGroups.get(i), styleCopConf.ignoredHungarianPrefixes(), groupSettingsFile);
+      builder.add(groupSettingsFile);
+    }
+    return builder.build();
+  }
+
+  @VisibleForTesting
+  static List<List<File>> shards(List<File> files, int count) {
+    List<File> sortedFiles = Lists.newArrayList(files);
+    final Map<File, Long> sizes = Maps.newHashMap();
+    for (File file : sortedFiles) {
+      sizes.put(file, file.length());
+    }
+    Collections.sort(sortedFiles, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return sizes.get(b).compareTo(sizes.get(a));
+      }
+    });
+
+    // Largest files first, each one to the currently smallest shard, to balance the shards by size
+    List<List<File>> shards = Lists.newArrayList();
+    long[] shardSizes = new long[count];
+    for (int i = 0; i < count; i++) {
+      shards.add(Lists.<File>newArrayList());
+    }
+    for (File file : sortedFiles) {
+      int smallest = 0;
+      for (int i = 1; i < count; i++) {
+        if (shardSizes[i] < shardSizes[smallest]) {
+          smallest = i;
+        }
+      }
+      shards.get(smallest).add(file);
+      shardSizes[smallest] += Math.max(1, sizes.get(file));
+    }
+
+    ImmutableList.Builder<List<File>> builder = ImmutableList.builder();
+    for (List<File> shard : shards) {
+      if (!shard.isEmpty()) {
+        builder.add(shard);
+      }
+    }
+    return builder.build();
+  }
+
+  // Whole analyzer namespaces, the largest first, each one to the group with the fewest rules so far
+  @VisibleForTesting
+  static List<List<String>> analyzerGroups(List<String> ruleConfigKeys, int count) {
+    final Map<String, List<String>> rulesByNamespace = Maps.newLinkedHashMap();
+    for (String ruleNamespace : StyleCopSettingsWriter.ruleNamespaces(ruleConfigKeys)) {
+      rulesByNamespace.put(ruleNamespace, StyleCopSettingsWriter.ruleConfigKeys(ruleNamespace, ruleConfigKeys));
+    }
+
+    List<String> ruleNamespaces = Lists.newArrayList(rulesByNamespace.keySet());
+    Collections.sort(ruleNamespaces, new Comparator<String>() {
+      @Override
+      public int compare(String a, String b) {
+        return rulesByNamespace.get(b).size() - rulesByNamespace.get(a).size();
+      }
+    });
+
+    int groupCount = Math.max(1, Math.min(count, ruleNamespaces.size()));
+    List<List<String>> groups = Lists.newArrayList();
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(Lists.<String>newArrayList());
+    }
+    for (String ruleNamespace : ruleNamespaces) {
+      List<String> smallest = groups.get(0);
+      for (List<String> group : groups) {
+        if (group.size() < smallest.size()) {
+          smallest = group;
+        }
+      }
+      smallest.addAll(rulesByNamespace.get(ruleNamespace));
+    }
+    return groups;
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import org.sonar.plugins.stylecop.StyleCopStatistics.Phase;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.List;
+
+// All the files in a single StyleCop execution, local or remote
+public class StyleCopSingleExecution extends StyleCopExecution {
+
+  private final StyleCopResultsCache resultsCache;
+
+  public StyleCopSingleExecution(StyleCopConfiguration styleCopConf, File workingDir, StyleCopMsBuildWriter msBuildWriter, StyleCopReportParser parser,
+    StyleCopExecutor executor, StyleCopStatistics statistics, @Nullable StyleCopResultsCache resultsCache) {
+    super(styleCopConf, workingDir, msBuildWriter, parser, executor, statistics);
+    this.resultsCache = resultsCache;
+  }
+
+  @Override
+  public void execute(File settingsFile, List<File> files, StyleCopIssueHandler handler) {
+    long start = System.nanoTime();
+    File msBuildFile = new File(workingDir, "StyleCop-msbuild.proj");
+    File reportFile = new File(workingDir, "StyleCop-report.xml");
+    msBuildWriter.write(
+      new File(styleCopConf.styleCopDllPath()),
+      new File(styleCopConf.projectFilePath()),
+      settingsFile, reportFile, files, resultsCache == null ? null : resultsCache.directory(), msBuildFile);
+
+    executor.execute(
+      styleCopConf.msBuildPath(),
+      new StyleCopJob(msBuildFile, settingsFile, reportFile, files),
+      styleCopConf.timeoutMinutes(),
+      TIMEOUT_EXCEPTION_MESSAGE);
+    statistics.addSince(Phase.EXECUTION, start);
+
+    parse(reportFile, handler);
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class StyleCopStatistics {
+
+  public enum Phase {
+    SETTINGS("settings"),
+    INDEX("index"),
+    ISSUE_CACHE("issueCache"),
+    EXECUTION("execution"),
+    PARSING("parsing"),
+    RESOLUTION("resolution"),
+    ADD_ISSUE("addIssue");
+
+    private final String key;
+
+    private Phase(String key) {
+      this.key = key;
+    }
+
+  }
+
+  public enum Counter {
+    PARSED("parsed"),
+    REPLAYED("replayed"),
+    IMPORTED("imported"),
+    SKIPPED_NOT_IN_SONARQUBE("skippedNotInSonarQube"),
+    SKIPPED_NO_ISSUABLE("skippedNoIssuable"),
+    SKIPPED_INACTIVE_RULE("skippedInactiveRule"),
+    SKIPPED_SHARED("skippedSharedFile");
+
+    private final String key;
+
+    private Counter(String key) {
+      this.key = key;
+    }
+
+  }
+
+  private final long start = System.nanoTime();
+  private final long[] nanos = new long[Phase.values().length];
+  private final long[] counts = new long[Counter.values().length];
+  private long totalNanos = -1;
+
+  public void add(Phase phase, long elapsedNanos) {
+    nanos[phase.ordinal()] += elapsedNanos;
+  }
+
+  public void addSince(Phase phase, long startNanos) {
+    add(phase, System.nanoTime() - startNanos);
+  }
+
+  public long nanos(Phase phase) {
+    return nanos[phase.ordinal()];
+  }
+
+  public void increment(Counter counter) {
+    counts[counter.ordinal()]++;
+  }
+
+  public long count(Counter counter) {
+    return counts[counter.ordinal()];
+  }
+
+  public StyleCopIssueHandler counting(final Counter counter, final StyleCopIssueHandler delegate) {
+    return new StyleCopIssueHandler() {
+      @Override
+      public void handle(StyleCopIssue issue) {
+        increment(counter);
+        delegate.handle(issue);
+      }
+    };
+  }
+
+  public void stop() {
+    totalNanos = System.nanoTime() - start;
+  }
+
+  public long totalMillis() {
+    return millis(totalNanos == -1 ? System.nanoTime() - start : totalNanos);
+  }
+
+  public long violationsPerSecond() {
+    long parsingNanos = nanos(Phase.PARSING);
+    return parsingNanos == 0 ? 0 : count(Counter.PARSED) * TimeUnit.SECONDS.toNanos(1) / parsingNanos;
+  }
+
+  public String summary() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("StyleCop analysis took ").append(totalMillis()).append(" ms (");
+    for (Phase phase : Phase.values()) {
+      if (phase.ordinal() > 0) {
+        sb.append(", ");
+      }
+      sb.append(phase.key).append(": ").append(millis(nanos(phase))).append(" ms");
+    }
+    sb.append("), ")
+      .append(count(Counter.PARSED)).append(" violations parsed (").append(violationsPerSecond()).append("/s), ")
+      .append(count(Counter.REPLAYED)).append(" replayed, ")
+      .append(count(Counter.IMPORTED)).append(" imported, ")
+      .append(count(Counter.SKIPPED_NOT_IN_SONARQUBE)).append(" skipped as not in SonarQube, ")
+      .append(count(Counter.SKIPPED_NO_ISSUABLE)).append(" skipped without issuable, ")
+      .append(count(Counter.SKIPPED_INACTIVE_RULE)).append(" skipped as inactive rule, ")
+      .append(count(Counter.SKIPPED_SHARED)).append(" skipped as shared with another module");
+    return sb.toString();
+  }
+
+  public String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    sb.append("  \"totalMs\": ").append(totalMillis()).append(",\n");
+    sb.append("  \"phasesMs\": {");
+    for (Phase phase : Phase.values()) {
+      appendJsonEntry(sb, phase.ordinal(), phase.key, millis(nanos(phase)));
+    }
+    sb.append("},\n");
+    sb.append("  \"counts\": {");
+    for (Counter counter : Counter.values()) {
+      appendJsonEntry(sb, counter.ordinal(), counter.key, count(counter));
+    }
+    sb.append("},\n");
+    sb.append("  \"violationsPerSecond\": ").append(violationsPerSecond()).append("\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  public void write(File file) {
+    try {
+      Files.createParentDirs(file);
+      Files.write(toJson(), file, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static void appendJsonEntry(StringBuilder sb, int index, String key, long value) {
+    if (index > 0) {
+      sb.append(", ");
+    }
+    appendJsonString(sb, key).append(": ").append(value);
+  }
+
+  static StringBuilder appendJsonString(StringBuilder sb, String value) {
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else if (c == '\r') {
+        sb.append("\\r");
+      } else if (c == '\t') {
+        sb.append("\\t");
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"');
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+}
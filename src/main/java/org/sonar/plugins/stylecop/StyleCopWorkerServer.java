@@ -0,0 +1,559 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Remote StyleCop worker, run on the agents which have MSBuild and StyleCop. Only depends on the JDK, so that it runs from the
+// plugin jar alone, with the secret shared with the analyses in the STYLECOP_WORKER_SECRET environment variable:
+//   java -cp sonar-stylecop-plugin.jar org.sonar.plugins.stylecop.StyleCopWorkerServer <bind address> <port> <MSBuild.exe path> <StyleCop.dll path> <jobs directory>
+// The analysis uploads the settings and the source files of each job, which the worker writes under a directory of its own
+// in the jobs directory, analyzes through an MSBuild project it generates, and deletes afterwards: no path received from
+// the network is ever opened. Connections are only given a job slot once authenticated, and both the pending
+// authentications and the jobs are bounded, the connections beyond them being turned down. One connection per job, each message being a type written with DataOutput.writeUTF():
+//   worker -> "HELLO" <nonce>, sonar -> "AUTH" <HMAC-SHA256 of the nonce with the secret>
+//   sonar -> "SETTINGS" <content>, "SOURCE" <path on the analysis side> <content>..., "RUN"
+//   worker -> "OUT" <output line>..., "REPORT" <content, its Source attributes mapped back to the paths of the analysis>,
+//   "END" <exit code>, or "ERR" <message> when the job could not be executed
+public class StyleCopWorkerServer implements Closeable {
+
+  public static final String SECRET_ENVIRONMENT_VARIABLE = "STYLECOP_WORKER_SECRET";
+
+  static final String HELLO = "HELLO";
+  static final String AUTH = "AUTH";
+  static final String SETTINGS = "SETTINGS";
+  static final String SOURCE = "SOURCE";
+  static final String RUN = "RUN";
+  static final String OUT = "OUT";
+  static final String REPORT = "REPORT";
+  static final String END = "END";
+  static final String ERR = "ERR";
+
+  static final int NONCE_BYTES = 32;
+
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+  private static final String CHARSET = "UTF-8";
+  private static final int AUTHENTICATION_TIMEOUT_MILLIS = 10000;
+  private static final int REQUEST_TIMEOUT_MILLIS = 60000;
+  private static final int MAX_PENDING_AUTHENTICATIONS = 16;
+  private static final long MAX_FILE_BYTES = 64L * 1024 * 1024;
+  private static final long MAX_JOB_BYTES = 1024L * 1024 * 1024;
+  // writeUTF() is limited to 65535 bytes, up to 3 per char
+  private static final int MAX_STRING_CHARS = 65535 / 3;
+  private static final String SOURCE_ATTRIBUTE = "Source=\"";
+
+  private final ServerSocket serverSocket;
+  private final byte[] secret;
+  private final String msBuildPath;
+  private final File styleCopDllFile;
+  private final File jobsDirectory;
+  private final SecureRandom random = new SecureRandom();
+  private final AtomicInteger jobCount = new AtomicInteger();
+  private final ThreadPoolExecutor authentications = boundedExecutor(MAX_PENDING_AUTHENTICATIONS, "StyleCop worker authentication");
+  private final ThreadPoolExecutor jobs = boundedExecutor(Runtime.getRuntime().availableProcessors(), "StyleCop worker job");
+
+  public StyleCopWorkerServer(InetAddress bindAddress, int port, byte[] secret, String msBuildPath, File styleCopDllFile, File jobsDirectory)
+    throws IOException {
+    if (secret.length == 0) {
+      throw new IllegalArgumentException("The StyleCop worker requires a secret.");
+    }
+    if (!jobsDirectory.isDirectory()) {
+      throw new IllegalArgumentException("The jobs directory \"" + jobsDirectory.getAbsolutePath() + "\" does not exist.");
+    }
+    this.serverSocket = new ServerSocket(port, 0, bindAddress);
+    this.secret = secret.clone();
+    this.msBuildPath = msBuildPath;
+    this.styleCopDllFile = styleCopDllFile.getAbsoluteFile();
+    this.jobsDirectory = jobsDirectory.getCanonicalFile();
+  }
+
+  public static void main(String[] args) throws IOException {
+    String secret = System.getenv(SECRET_ENVIRONMENT_VARIABLE);
+    if (args.length != 5 || secret == null || secret.length() == 0) {
+      System.err.println("Usage: " + SECRET_ENVIRONMENT_VARIABLE + "=<secret> "
+        + "StyleCopWorkerServer <bind address> <port> <MSBuild.exe path> <StyleCop.dll path> <jobs directory>");
+      System.exit(1);
+    }
+
+    StyleCopWorkerServer server = new StyleCopWorkerServer(InetAddress.getByName(args[0]), Integer.parseInt(args[1]), secret.getBytes(CHARSET),
+      args[2], new File(args[3]), new File(args[4]));
+    System.out.println("StyleCop worker listening on " + server.serverSocket.getLocalSocketAddress() + ", executing " + args[2]);
+    server.serve();
+  }
+
+  public int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  public void serve() {
+    while (!serverSocket.isClosed()) {
+      final Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        if (serverSocket.isClosed()) {
+          return;
+        }
+        System.err.println("Unable to accept a connection: " + e.getMessage());
+        continue;
+      }
+
+      try {
+        authentications.execute(new Runnable() {
+          @Override
+          public void run() {
+            authenticate(socket);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        closeQuietly(socket);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    authentications.shutdownNow();
+    jobs.shutdownNow();
+  }
+
+  // A silent client is dropped rather than holding a thread
+  private void authenticate(final Socket socket) {
+    boolean handedOver = false;
+    try {
+      socket.setSoTimeout(AUTHENTICATION_TIMEOUT_MILLIS);
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      if (!authenticate(in, out)) {
+        respondError(out, "Authentication failed");
+        return;
+      }
+
+      try {
+        jobs.execute(new Runnable() {
+          @Override
+          public void run() {
+            handle(socket, in, out);
+          }
+        });
+        handedOver = true;
+      } catch (RejectedExecutionException e) {
+        respondError(out, "All the jobs of the worker are busy");
+      }
+    } catch (IOException e) {
+      System.err.println("Connection to " + socket.getRemoteSocketAddress() + " lost: " + e.getMessage());
+    } finally {
+      if (!handedOver) {
+        closeQuietly(socket);
+      }
+    }
+  }
+
+  private void handle(Socket socket, DataInputStream in, DataOutputStream out) {
+    File jobDirectory = null;
+    try {
+      // Until the job is run, a silent client is dropped rather than holding a job slot
+      socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+      jobDirectory = newJobDirectory();
+      Job job = receive(in, out, jobDirectory);
+      if (job == null) {
+        return;
+      }
+
+      socket.setSoTimeout(0);
+      run(in, out, job);
+    } catch (IOException e) {
+      System.err.println("Connection to " + socket.getRemoteSocketAddress() + " lost: " + e.getMessage());
+    } finally {
+      closeQuietly(socket);
+      if (jobDirectory != null) {
+        delete(jobDirectory);
+      }
+    }
+  }
+
+  private boolean authenticate(DataInputStream in, DataOutputStream out) throws IOException {
+    byte[] nonce = new byte[NONCE_BYTES];
+    random.nextBytes(nonce);
+    out.writeUTF(HELLO);
+    out.write(nonce);
+    out.flush();
+
+    if (!AUTH.equals(in.readUTF())) {
+      return false;
+    }
+    byte[] expectedMac = mac(secret, nonce);
+    byte[] mac = new byte[expectedMac.length];
+    in.readFully(mac);
+    return MessageDigest.isEqual(mac, expectedMac);
+  }
+
+  // Null when the request was rejected
+  private Job receive(DataInputStream in, DataOutputStream out, File jobDirectory) throws IOException {
+    Job job = new Job(jobDirectory);
+    long jobBytes = 0;
+    while (true) {
+      String type = in.readUTF();
+      if (SETTINGS.equals(type)) {
+        jobBytes += receiveFile(in, job.settingsFile, MAX_FILE_BYTES);
+      } else if (SOURCE.equals(type)) {
+        String clientPath = in.readUTF();
+        File sourceFile = job.newSourceFile(clientPath);
+        if (sourceFile == null) {
+          respondError(out, "Invalid source file name: " + clientPath);
+          return null;
+        }
+        jobBytes += receiveFile(in, sourceFile, MAX_FILE_BYTES);
+      } else if (RUN.equals(type) && job.settingsFile.isFile()) {
+        return job;
+      } else {
+        respondError(out, "Unexpected request: " + type);
+        return null;
+      }
+
+      if (jobBytes > MAX_JOB_BYTES) {
+        respondError(out, "The job exceeds " + MAX_JOB_BYTES + " bytes");
+        return null;
+      }
+    }
+  }
+
+  private void run(DataInputStream in, DataOutputStream out, Job job) throws IOException {
+    new StyleCopMsBuildWriter().write(styleCopDllFile, job.projectFile, job.settingsFile, job.reportFile, job.sourceFiles, job.msBuildFile);
+
+    Process process;
+    try {
+      process = new ProcessBuilder(msBuildPath, job.msBuildFile.getAbsolutePath()).redirectErrorStream(true).start();
+    } catch (IOException e) {
+      respondError(out, "Unable to execute \"" + msBuildPath + "\": " + e.getMessage());
+      return;
+    }
+
+    try {
+      process.getOutputStream().close();
+      stopOnDisconnection(in, process);
+      relayOutput(process, out);
+      int exitCode = process.waitFor();
+      if (job.reportFile.isFile()) {
+        out.writeUTF(REPORT);
+        job.sendReport(out);
+      }
+      // Before the end of the job is acknowledged, so that the next ones never see its files
+      delete(job.directory);
+      out.writeUTF(END);
+      out.writeInt(exitCode);
+      out.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      process.destroy();
+    }
+  }
+
+  private File newJobDirectory() throws IOException {
+    while (true) {
+      File directory = new File(jobsDirectory, "job-" + System.currentTimeMillis() + "-" + jobCount.incrementAndGet());
+      if (directory.mkdir()) {
+        return directory;
+      }
+      if (!jobsDirectory.isDirectory()) {
+        throw new IOException("Unable to create a job directory in \"" + jobsDirectory.getAbsolutePath() + "\"");
+      }
+    }
+  }
+
+  // The analysis sends nothing more: the end of its stream means it gave up, for instance after a timeout
+  private static void stopOnDisconnection(final InputStream in, final Process process) {
+    Thread thread = new Thread("StyleCop worker disconnection") {
+      @Override
+      public void run() {
+        try {
+          while (in.read() != -1) {
+            // Ignored
+          }
+        } catch (IOException e) {
+          // Disconnected as well
+        }
+        process.destroy();
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static void relayOutput(Process process, DataOutputStream out) throws IOException {
+    BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), CHARSET));
+    try {
+      String line;
+      while ((line = output.readLine()) != null) {
+        out.writeUTF(OUT);
+        out.writeUTF(truncate(line));
+        // Batches the lines of verbose outputs
+        if (!output.ready()) {
+          out.flush();
+        }
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  private static void respondError(DataOutputStream out, String message) throws IOException {
+    out.writeUTF(ERR);
+    out.writeUTF(truncate(message));
+    out.flush();
+  }
+
+  private static String truncate(String s) {
+    return s.length() > MAX_STRING_CHARS ? s.substring(0, MAX_STRING_CHARS) : s;
+  }
+
+  static byte[] mac(byte[] secret, byte[] nonce) {
+    try {
+      Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+      return mac.doFinal(nonce);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static void sendFile(DataOutputStream out, File file) throws IOException {
+    long length = file.length();
+    out.writeLong(length);
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      copy(in, out, length);
+    } finally {
+      in.close();
+    }
+  }
+
+  static long receiveFile(DataInputStream in, File file, long maxLength) throws IOException {
+    long length = in.readLong();
+    if (length < 0 || length > maxLength) {
+      throw new IOException("Invalid file length: " + length);
+    }
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      copy(in, out, length);
+    } finally {
+      out.close();
+    }
+    return length;
+  }
+
+  private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+    byte[] buffer = new byte[8192];
+    long remaining = length;
+    while (remaining > 0) {
+      int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (read == -1) {
+        throw new EOFException("Truncated file, " + remaining + " bytes missing");
+      }
+      out.write(buffer, 0, read);
+      remaining -= read;
+    }
+  }
+
+  private static String escapeXml(String s) {
+    StringBuilder sb = new StringBuilder();
+    for (char c : s.toCharArray()) {
+      sb.append(escapeXml(c));
+    }
+    return sb.toString();
+  }
+
+  private static String escapeXml(char c) {
+    switch (c) {
+      case '&':
+        return "&amp;";
+      case '"':
+        return "&quot;";
+      case '<':
+        return "&lt;";
+      case '>':
+        return "&gt;";
+      default:
+        return String.valueOf(c);
+    }
+  }
+
+  // Turns down the tasks beyond its threads rather than queuing them
+  private static ThreadPoolExecutor boundedExecutor(int threads, final String name) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    if (!file.delete() && file.exists()) {
+      System.err.println("Unable to delete \"" + file.getAbsolutePath() + "\"");
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Already closed
+    }
+  }
+
+  // The files of a job, all of them named by the worker under the job directory
+  private static class Job {
+
+    private final File directory;
+    private final File settingsFile;
+    private final File msBuildFile;
+    private final File projectFile;
+    private final File reportFile;
+    private final List<File> sourceFiles = new ArrayList<File>();
+    // Source attributes of the report, as written by StyleCop, to the paths of the analysis
+    private final Map<String, String> clientPaths = new HashMap<String, String>();
+
+    public Job(File directory) {
+      this.directory = directory;
+      this.settingsFile = new File(directory, "Settings.StyleCop");
+      this.msBuildFile = new File(directory, "StyleCop-msbuild.proj");
+      this.projectFile = new File(directory, "StyleCop.csproj");
+      this.reportFile = new File(directory, "StyleCop-report.xml");
+    }
+
+    // The name of the file is kept, as some StyleCop rules check it, each one in a directory of its own in case of duplicates.
+    // Null when the name could lead out of that directory.
+    public File newSourceFile(String clientPath) throws IOException {
+      String name = clientPath.substring(Math.max(clientPath.lastIndexOf('/'), clientPath.lastIndexOf('\\')) + 1);
+      if (!isValidName(name)) {
+        return null;
+      }
+
+      File sourceDirectory = new File(directory, Integer.toString(sourceFiles.size()));
+      if (!sourceDirectory.mkdir()) {
+        throw new IOException("Unable to create \"" + sourceDirectory.getAbsolutePath() + "\"");
+      }
+      File sourceFile = new File(sourceDirectory, name);
+      sourceFiles.add(sourceFile);
+      clientPaths.put(escapeXml(sourceFile.getAbsolutePath()), escapeXml(clientPath));
+      return sourceFile;
+    }
+
+    // Drive prefixes, such as "C:", and alternate data streams alike contain a colon
+    private static boolean isValidName(String name) {
+      return name.length() > 0 && !".".equals(name) && !"..".equals(name) && name.indexOf(':') == -1 && name.indexOf('\0') == -1;
+    }
+
+    // Streams the report, replacing the value of each Source attribute in a single pass
+    public void sendReport(DataOutputStream out) throws IOException {
+      File mappedReportFile = new File(directory, "StyleCop-report-mapped.xml");
+      Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(reportFile), CHARSET));
+      Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mappedReportFile), CHARSET));
+      try {
+        mapSources(reader, writer);
+      } finally {
+        writer.close();
+        reader.close();
+      }
+      sendFile(out, mappedReportFile);
+    }
+
+    private void mapSources(Reader reader, Writer writer) throws IOException {
+      int matched = 0;
+      StringBuilder value = null;
+      int c;
+      while ((c = reader.read()) != -1) {
+        if (value != null) {
+          if (c == '"') {
+            String clientPath = clientPaths.get(value.toString());
+            writer.write(clientPath == null ? value.toString() : clientPath);
+            writer.write(c);
+            value = null;
+          } else {
+            value.append((char) c);
+          }
+          continue;
+        }
+
+        writer.write(c);
+        matched = c == SOURCE_ATTRIBUTE.charAt(matched) ? matched + 1 : (c == SOURCE_ATTRIBUTE.charAt(0) ? 1 : 0);
+        if (matched == SOURCE_ATTRIBUTE.length()) {
+          matched = 0;
+          value = new StringBuilder();
+        }
+      }
+      if (value != null) {
+        writer.write(value.toString());
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.utils.SonarException;
+import org.sonar.api.utils.command.StreamConsumer;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Long-lived StyleCop host processes, shared by all the modules of the analysis and stopped at its end.
+// Line-based protocol over the standard streams of the host:
+//   host -> "READY" once started
+//   sonar -> "RUN<tab><MSBuild project file>", host -> "OUT<tab><output line>"... then "END<tab><exit code>"
+//   sonar -> "QUIT"
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class StyleCopWorkers implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StyleCopWorkers.class);
+
+  private static final long QUIT_MILLIS = 10000;
+
+  private final List<String> hostCommand;
+  // By MSBuild path, which can differ between the modules
+  private final ListMultimap<String, Worker> idleWorkers = ArrayListMultimap.create();
+  private final List<Worker> workers = Lists.newArrayList();
+
+  public StyleCopWorkers() {
+    this(null);
+  }
+
+  @VisibleForTesting
+  StyleCopWorkers(@Nullable List<String> hostCommand) {
+    this.hostCommand = hostCommand;
+  }
+
+  public synchronized Worker acquire(String msBuildPath) {
+    List<Worker> idleWorkersOfMsBuild = idleWorkers.get(msBuildPath);
+    if (!idleWorkersOfMsBuild.isEmpty()) {
+      return idleWorkersOfMsBuild.remove(idleWorkersOfMsBuild.size() - 1);
+    }
+
+    List<String> command = ImmutableList.<String>builder()
+      .addAll(hostCommand == null ? defaultHostCommand() : hostCommand)
+      .add(msBuildPath)
+      .build();
+    LOG.info("Starting a StyleCop host process: " + command);
+    try {
+      Worker worker = new Worker(msBuildPath, new ProcessBuilder(command).start());
+      workers.add(worker);
+      return worker;
+    } catch (IOException e) {
+      throw new SonarException("Unable to start the StyleCop host process " + command, e);
+    }
+  }
+
+  public synchronized void release(Worker worker) {
+    idleWorkers.put(worker.msBuildPath, worker);
+  }
+
+  public synchronized void discard(Worker worker) {
+    workers.remove(worker);
+    ProcessTree.kill(worker.process);
+  }
+
+  public synchronized void stop() {
+    for (Worker worker : workers) {
+      worker.quit();
+    }
+    for (Worker worker : workers) {
+      if (!worker.waitFor(QUIT_MILLIS)) {
+        ProcessTree.kill(worker.process);
+      }
+    }
+    workers.clear();
+    idleWorkers.clear();
+  }
+
+  private static List<String> defaultHostCommand() {
+    try {
+      File script = File.createTempFile("StyleCopHost", ".ps1");
+      script.deleteOnExit();
+      Files.copy(Resources.newInputStreamSupplier(StyleCopWorkers.class.getResource("StyleCopHost.ps1")), script);
+      return ImmutableList.of("powershell.exe", "-NoLogo", "-NoProfile", "-NonInteractive", "-ExecutionPolicy", "Bypass", "-File", script.getAbsolutePath());
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  public static class Worker {
+
+    private final String msBuildPath;
+    private final Process process;
+    private final Writer requests;
+    private volatile StreamConsumer consumer;
+    private volatile boolean running;
+
+    private Worker(String msBuildPath, Process process) {
+      this.msBuildPath = msBuildPath;
+      this.process = process;
+      this.requests = new OutputStreamWriter(process.getOutputStream(), Charsets.UTF_8);
+      readResponses(process.getInputStream());
+      readErrors(process.getErrorStream());
+    }
+
+    public Process process() {
+      return process;
+    }
+
+    public void run(String msBuildFile, StreamConsumer consumer) {
+      this.consumer = consumer;
+      running = true;
+      try {
+        requests.write("RUN\t" + msBuildFile + "\n");
+        requests.flush();
+      } catch (IOException e) {
+        running = false;
+        throw new SonarException("Unable to send the job to the StyleCop host process", e);
+      }
+    }
+
+    public boolean isRunning() {
+      return running;
+    }
+
+    private void quit() {
+      try {
+        requests.write("QUIT\n");
+        requests.flush();
+      } catch (IOException e) {
+        LOG.debug("The StyleCop host process already exited", e);
+      } finally {
+        Closeables.closeQuietly(requests);
+      }
+    }
+
+    private boolean waitFor(long millis) {
+      long deadline = System.currentTimeMillis() + millis;
+      while (System.currentTimeMillis() < deadline) {
+        try {
+          process.exitValue();
+          return true;
+        } catch (IllegalThreadStateException e) {
+          sleep();
+        }
+      }
+      return false;
+    }
+
+    private void handleResponse(String line) {
+      int tab = line.indexOf('\t');
+      String type = tab == -1 ? line : line.substring(0, tab);
+      String value = tab == -1 ? "" : line.substring(tab + 1);
+
+      StreamConsumer currentConsumer = consumer;
+      if ("OUT".equals(type) && currentConsumer != null) {
+        currentConsumer.consumeLine(value);
+      } else if ("END".equals(type)) {
+        LOG.debug("StyleCop host job completed with exit code " + value);
+        running = false;
+      } else if (!"READY".equals(type)) {
+        LOG.warn("Unexpected response from the StyleCop host process: " + line);
+      }
+    }
+
+    private void readResponses(final InputStream stream) {
+      read(stream, new StreamConsumer() {
+        @Override
+        public void consumeLine(String line) {
+          handleResponse(line);
+        }
+      });
+    }
+
+    private void readErrors(InputStream stream) {
+      read(stream, new StreamConsumer() {
+        @Override
+        public void consumeLine(String line) {
+          StreamConsumer currentConsumer = consumer;
+          if (currentConsumer != null) {
+            currentConsumer.consumeLine(line);
+          } else {
+            LOG.info(line);
+          }
+        }
+      });
+    }
+
+    private static void read(final InputStream stream, final StreamConsumer lineConsumer) {
+      Thread thread = new Thread("StyleCop host output") {
+        @Override
+        public void run() {
+          BufferedReader reader = new BufferedReader(new InputStreamReader(stream, Charsets.UTF_8));
+          try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+              lineConsumer.consumeLine(line);
+            }
+          } catch (IOException e) {
+            LOG.debug("Unable to read the StyleCop host process output", e);
+          } finally {
+            Closeables.closeQuietly(reader);
+          }
+        }
+      };
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    private static void sleep() {
+      try {
+        TimeUnit.MILLISECONDS.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,69 @@
+# StyleCop host process: keeps MSBuild, StyleCop and its rules loaded across the analysis of all the modules.
+# See StyleCopWorkers for the protocol, the only argument is the path to MSBuild.exe.
+param([string] $msBuildPath)
+
+$ErrorActionPreference = 'Stop'
+$msBuildDirectory = Split-Path -Parent $msBuildPath
+[void] [System.Reflection.Assembly]::LoadFrom((Join-Path $msBuildDirectory 'Microsoft.Build.Framework.dll'))
+[void] [System.Reflection.Assembly]::LoadFrom((Join-Path $msBuildDirectory 'Microsoft.Build.dll'))
+
+$stdout = New-Object System.IO.StreamWriter([Console]::OpenStandardOutput(), (New-Object System.Text.UTF8Encoding($false)))
+$stdout.AutoFlush = $true
+$stdin = New-Object System.IO.StreamReader([Console]::OpenStandardInput(), (New-Object System.Text.UTF8Encoding($false)))
+
+function Relay-Log($reader) {
+  while (($line = $reader.ReadLine()) -ne $null) {
+    $stdout.WriteLine("OUT`t" + $line)
+  }
+}
+
+$stdout.WriteLine('READY')
+while (($request = $stdin.ReadLine()) -ne $null) {
+  $parts = $request.Split("`t", 2)
+  if ($parts[0] -eq 'QUIT') {
+    break
+  }
+  if ($parts[0] -ne 'RUN') {
+    $stdout.WriteLine("OUT`tUnexpected request: " + $request)
+    $stdout.WriteLine("END`t1")
+    continue
+  }
+
+  $exitCode = 1
+  $log = [System.IO.Path]::GetTempFileName()
+  try {
+    $logger = New-Object Microsoft.Build.Logging.FileLogger
+    $logger.Parameters = "LogFile=$log;Verbosity=normal"
+    $parameters = New-Object Microsoft.Build.Execution.BuildParameters
+    $parameters.Loggers = [Microsoft.Build.Framework.ILogger[]] @($logger)
+    $buildRequest = New-Object Microsoft.Build.Execution.BuildRequestData($parts[1], (New-Object 'System.Collections.Generic.Dictionary[String,String]'), $null, [string[]] @(), $null)
+
+    # Build asynchronously, so that the log can be relayed while the analysis progresses
+    $manager = [Microsoft.Build.Execution.BuildManager]::DefaultBuildManager
+    $manager.BeginBuild($parameters)
+    $reader = $null
+    try {
+      $submission = $manager.PendBuildRequest($buildRequest)
+      $submission.ExecuteAsync($null, $null)
+      $reader = New-Object System.IO.StreamReader((New-Object System.IO.FileStream($log, 'Open', 'Read', 'ReadWrite')))
+      while (-not $submission.IsCompleted) {
+        Relay-Log $reader
+        Start-Sleep -Milliseconds 200
+      }
+    } finally {
+      $manager.EndBuild()
+      if ($reader -ne $null) {
+        Relay-Log $reader
+        $reader.Close()
+      }
+    }
+    if ($submission.BuildResult.OverallResult -eq 'Success') {
+      $exitCode = 0
+    }
+  } catch {
+    $stdout.WriteLine("OUT`t" + $_)
+  } finally {
+    Remove-Item $log -ErrorAction SilentlyContinue
+  }
+  $stdout.WriteLine("END`t" + $exitCode)
+}
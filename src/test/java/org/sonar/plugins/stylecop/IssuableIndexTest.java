@@ -0,0 +1,81 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IssuableIndexTest {
+
+  @Test
+  public void issuable() {
+    File class1 = new File("Class1.cs");
+    File class2 = new File("src/Class2.cs");
+    File class3 = new File("Class3.cs");
+
+    FileProvider fileProvider = mock(FileProvider.class);
+    ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+
+    org.sonar.api.resources.File sonarFile1 = mock(org.sonar.api.resources.File.class);
+    org.sonar.api.resources.File sonarFile2 = mock(org.sonar.api.resources.File.class);
+    when(fileProvider.fromIOFile(class1)).thenReturn(sonarFile1);
+    when(fileProvider.fromIOFile(class2)).thenReturn(sonarFile2);
+    when(fileProvider.fromIOFile(class3)).thenReturn(null);
+
+    Issuable issuable1 = mock(Issuable.class);
+    when(perspectives.as(Issuable.class, sonarFile1)).thenReturn(issuable1);
+    when(perspectives.as(Issuable.class, sonarFile2)).thenReturn(null);
+
+    IssuableIndex index = new IssuableIndex(ImmutableList.of(class1, class2, class3), fileProvider, perspectives);
+
+    assertThat(index.issuable("Class1.cs")).isSameAs(issuable1);
+    assertThat(index.issuable("CLASS1.CS")).isSameAs(issuable1);
+    assertThat(index.issuable(class1.getAbsolutePath())).isSameAs(issuable1);
+    assertThat(index.issuable("src/../Class1.cs")).isSameAs(issuable1);
+    assertThat(index.issuable("src\\Class2.cs")).isNull();
+    assertThat(index.issuable("src/Class2.cs")).isNull();
+    assertThat(index.issuable("Class3.cs")).isNull();
+    assertThat(index.issuable("Class3.cs")).isNull();
+    assertThat(index.issuable("obj/Generated.cs")).isNull();
+    assertThat(index.issuable("obj/Generated.cs")).isNull();
+
+    assertThat(index.isInSonarQube("Class1.cs")).isTrue();
+    assertThat(index.isInSonarQube("src/Class2.cs")).isTrue();
+    assertThat(index.isInSonarQube("Class3.cs")).isFalse();
+    assertThat(index.isInSonarQube("obj/Generated.cs")).isFalse();
+
+    verify(fileProvider, times(1)).fromIOFile(class1);
+    verify(fileProvider, times(1)).fromIOFile(class2);
+    verify(fileProvider, times(1)).fromIOFile(class3);
+    verify(perspectives, times(1)).as(Issuable.class, sonarFile1);
+    verify(perspectives, times(1)).as(Issuable.class, sonarFile2);
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.stylecop.StyleCopAnalyzerProfiler.Pass;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StyleCopAnalyzerProfilerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void one_pass_per_analyzer() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    File workingDir = tmp.newFolder("working-dir");
+    List<File> files = ImmutableList.of(tmp.newFile("Class1.cs"), tmp.newFile("Class2.cs"), tmp.newFile("Class3.cs"));
+
+    StyleCopConfiguration styleCopConf = mock(StyleCopConfiguration.class);
+    when(styleCopConf.msBuildPath()).thenReturn(new File("src/test/resources/StyleCopSensorTest/MSBuild.sh").getAbsolutePath());
+    when(styleCopConf.styleCopDllPath()).thenReturn("StyleCop.dll");
+    when(styleCopConf.projectFilePath()).thenReturn(new File(tmp.getRoot(), "MyProject.csproj").getAbsolutePath());
+    when(styleCopConf.timeoutMinutes()).thenReturn(1);
+    when(styleCopConf.ignoredHungarianPrefixes()).thenReturn(Collections.<String>emptyList());
+
+    List<Pass> passes = new StyleCopAnalyzerProfiler(new StyleCopSettingsWriter(), new StyleCopMsBuildWriter(), new StyleCopReportParser(), new StyleCopExecutor())
+      .profile(styleCopConf, ImmutableList.of("MyNamespace#Rule1", "MyOtherNamespace#Rule2", "MyNamespace#Rule3"), files, workingDir, "timeout");
+
+    assertThat(passes).hasSize(2);
+    assertThat(passes.get(0).ruleNamespace()).isEqualTo("MyNamespace");
+    assertThat(passes.get(0).files()).isEqualTo(3);
+    assertThat(passes.get(0).violations()).isEqualTo(3);
+    assertThat(passes.get(1).ruleNamespace()).isEqualTo("MyOtherNamespace");
+    assertThat(passes.get(1).violations()).isEqualTo(3);
+
+    assertThat(Files.toString(new File(workingDir, "StyleCop-profile-0.StyleCop"), Charsets.UTF_8))
+      .contains("<Rule Name=\"Rule1\">")
+      .contains("<Rule Name=\"Rule3\">")
+      .doesNotContain("MyOtherNamespace");
+    assertThat(Files.toString(new File(workingDir, "StyleCop-profile-1.StyleCop"), Charsets.UTF_8))
+      .contains("<Rule Name=\"Rule2\">")
+      .doesNotContain("\"MyNamespace\"");
+  }
+
+  @Test
+  public void summary_and_json() throws Exception {
+    List<Pass> passes = ImmutableList.of(
+      new Pass("StyleCop.CSharp.LayoutRules", TimeUnit.MILLISECONDS.toNanos(500), 100, 7),
+      new Pass("StyleCop.CSharp.NamingRules", TimeUnit.MILLISECONDS.toNanos(2000), 100, 42));
+
+    assertThat(StyleCopAnalyzerProfiler.summary(passes)).isEqualTo("StyleCop analyzers profile:"
+      + "\n  StyleCop.CSharp.NamingRules: 2.000 s, 50 files/s, 42 violations"
+      + "\n  StyleCop.CSharp.LayoutRules: 0.500 s, 200 files/s, 7 violations");
+
+    File file = new File(tmp.getRoot(), "sub/StyleCop-profile.json");
+    StyleCopAnalyzerProfiler.write(passes, file);
+    assertThat(Files.toString(file, Charsets.UTF_8)).isEqualTo("{\n"
+      + "  \"analyzers\": [\n"
+      + "    {\"namespace\": \"StyleCop.CSharp.NamingRules\", \"seconds\": 2.000, \"files\": 100, \"filesPerSecond\": 50, \"violations\": 42},\n"
+      + "    {\"namespace\": \"StyleCop.CSharp.LayoutRules\", \"seconds\": 0.500, \"files\": 100, \"filesPerSecond\": 200, \"violations\": 7}\n"
+      + "  ]\n"
+      + "}\n");
+
+    assertThat(StyleCopAnalyzerProfiler.toJson(ImmutableList.<Pass>of())).isEqualTo("{\n  \"analyzers\": []\n}\n");
+  }
+
+  @Test
+  public void json_escapes_namespaces() {
+    List<Pass> passes = ImmutableList.of(new Pass("My\"Rules\\Custom\n", TimeUnit.MILLISECONDS.toNanos(500), 100, 7));
+
+    assertThat(StyleCopAnalyzerProfiler.toJson(passes)).contains("{\"namespace\": \"My\\\"Rules\\\\Custom\\n\", \"seconds\": 0.500");
+  }
+
+}
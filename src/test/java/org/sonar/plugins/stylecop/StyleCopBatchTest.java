@@ -0,0 +1,135 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopBatchTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void project_files_of_all_modules() {
+    ProjectDefinition root = ProjectDefinition.create();
+    root.addSubProject(ProjectDefinition.create().setProperty("sonar.stylecop.projectFilePath", "Project1/Project1.csproj"));
+    root.addSubProject(ProjectDefinition.create());
+    root.addSubProject(ProjectDefinition.create().setProperty("sonar.stylecop.projectFilePath", "Project2/Project2.csproj"));
+    root.addSubProject(ProjectDefinition.create().setProperty("sonar.stylecop.projectFilePath", "Project1/Project1.csproj"));
+
+    assertThat(new StyleCopBatch(new ProjectReactor(root)).projectFiles()).containsExactly(
+      new File("Project1/Project1.csproj").getAbsoluteFile(),
+      new File("Project2/Project2.csproj").getAbsoluteFile());
+  }
+
+  @Test
+  public void report_files() {
+    File projectFile1 = new File("Project1/Project1.csproj").getAbsoluteFile();
+    File projectFile2 = new File("Project2/Project2.csproj").getAbsoluteFile();
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(projectFile1));
+
+    assertThat(batch.isExecuted()).isFalse();
+    assertThat(batch.reportFile(projectFile1, "fingerprint")).isNull();
+
+    batch.executed("fingerprint", ImmutableMap.of(projectFile1, new File("report1.xml")));
+
+    assertThat(batch.isExecuted()).isTrue();
+    assertThat(batch.reportFile(new File("Project1/Project1.csproj"), "fingerprint")).isEqualTo(new File("report1.xml"));
+    assertThat(batch.reportFile(projectFile1, "other fingerprint")).isNull();
+    assertThat(batch.reportFile(projectFile2, "fingerprint")).isNull();
+  }
+
+  @Test
+  public void first_project_to_claim_a_file_owns_it() {
+    File projectFile1 = new File("Project1/Project1.csproj");
+    File projectFile2 = new File("Project2/Project2.csproj");
+    File shared = new File("Shared/Shared.cs");
+    File file1 = new File("Project1/Class1.cs");
+    File file2 = new File("Project2/Class2.cs");
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(projectFile1, projectFile2));
+
+    assertThat(batch.claim(projectFile1, ImmutableList.of(file1, shared))).containsExactly(file1, shared);
+    assertThat(batch.claim(projectFile2, ImmutableList.of(shared, file2))).containsExactly(file2);
+    assertThat(batch.claim(projectFile1.getAbsoluteFile(), ImmutableList.of(file1, shared))).containsExactly(file1, shared);
+    assertThat(batch.claim(projectFile2, ImmutableList.of(new File("Project1/../Shared/Shared.cs")))).isEmpty();
+  }
+
+  @Test
+  public void source_files_listed_by_the_project() throws Exception {
+    File projectDir = tmp.newFolder("Project1");
+    File projectFile = new File(projectDir, "Project1.csproj");
+    Files.write("<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">\n"
+      + "  <ItemGroup>\n"
+      + "    <Compile Include=\"Class1.cs\" />\n"
+      + "    <Compile Include=\"Folder\\My%3BClass.cs;Class2.CS\" />\n"
+      + "    <Compile Include=\"..\\Shared\\Shared.cs\">\n"
+      + "      <Link>Shared.cs</Link>\n"
+      + "    </Compile>\n"
+      + "    <Compile Include=\"Script.fs\" />\n"
+      + "    <None Include=\"Other.cs\" />\n"
+      + "  </ItemGroup>\n"
+      + "</Project>\n", projectFile, Charsets.UTF_8);
+
+    assertThat(StyleCopBatch.sourceFiles(projectFile)).containsExactly(
+      new File(projectDir, "Class1.cs"),
+      new File(new File(projectDir, "Folder"), "My;Class.cs"),
+      new File(projectDir, "Class2.CS"),
+      new File(new File(tmp.getRoot(), "Shared"), "Shared.cs"));
+  }
+
+  @Test
+  public void no_source_files_when_the_project_lists_none_or_uses_wildcards_or_properties() throws Exception {
+    File projectDir = tmp.newFolder("Project1");
+    File projectFile = new File(projectDir, "Project1.csproj");
+    Files.touch(new File(projectDir, "Class1.cs"));
+
+    Files.write("<Project />", projectFile, Charsets.UTF_8);
+    assertThat(StyleCopBatch.sourceFiles(projectFile)).isNull();
+
+    Files.write("<Project><ItemGroup><Compile Include=\"Class1.cs\" /><Compile Include=\"Folder\\*.cs\" /></ItemGroup></Project>", projectFile, Charsets.UTF_8);
+    assertThat(StyleCopBatch.sourceFiles(projectFile)).isNull();
+
+    Files.write("<Project><ItemGroup><Compile Include=\"$(SharedDir)\\Shared.cs\" /></ItemGroup></Project>", projectFile, Charsets.UTF_8);
+    assertThat(StyleCopBatch.sourceFiles(projectFile)).isNull();
+  }
+
+  @Test
+  public void external_dtd_of_the_project_is_not_loaded() throws Exception {
+    File projectDir = tmp.newFolder("Project1");
+    File projectFile = new File(projectDir, "Project1.csproj");
+    Files.write("<!DOCTYPE Project SYSTEM \"" + new File(projectDir, "Missing.dtd").toURI() + "\">\n"
+      + "<Project><ItemGroup><Compile Include=\"Class1.cs\" /></ItemGroup></Project>", projectFile, Charsets.UTF_8);
+
+    assertThat(StyleCopBatch.sourceFiles(projectFile)).containsExactly(new File(projectDir, "Class1.cs"));
+  }
+
+}
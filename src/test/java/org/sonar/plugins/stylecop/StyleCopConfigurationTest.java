@@ -106,6 +106,181 @@ public class StyleCopConfigurationTest {
     assertThat(conf.timeoutMinutes()).isEqualTo(42);
   }
 
+  @Test
+  public void shards() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    when(settings.getInt("sonar.stylecop.shards")).thenReturn(4);
+    assertThat(conf.shards()).isEqualTo(4);
+    when(settings.getInt("sonar.stylecop.shards")).thenReturn(0);
+    assertThat(conf.shards()).isEqualTo(1);
+  }
+
+  @Test
+  public void incremental() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.incremental()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.incremental")).thenReturn(true);
+    assertThat(conf.incremental()).isTrue();
+  }
+
+  @Test
+  public void issueCache() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.issueCache()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.issueCache")).thenReturn(true);
+    assertThat(conf.issueCache()).isTrue();
+  }
+
+  @Test
+  public void inactivityTimeoutMinutes() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.inactivityTimeoutMinutes()).isEqualTo(0);
+    when(settings.getInt("sonar.stylecop.inactivityTimeoutMinutes")).thenReturn(5);
+    assertThat(conf.inactivityTimeoutMinutes()).isEqualTo(5);
+    when(settings.getInt("sonar.stylecop.inactivityTimeoutMinutes")).thenReturn(-1);
+    assertThat(conf.inactivityTimeoutMinutes()).isEqualTo(0);
+  }
+
+  @Test
+  public void worker() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.worker()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.worker")).thenReturn(true);
+    assertThat(conf.worker()).isTrue();
+  }
+
+  @Test
+  public void batch() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.batch()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.batch")).thenReturn(true);
+    assertThat(conf.batch()).isTrue();
+  }
+
+  @Test
+  public void reportParserThreads() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.reportParserThreads()).isEqualTo(1);
+    when(settings.getInt("sonar.stylecop.reportParserThreads")).thenReturn(4);
+    assertThat(conf.reportParserThreads()).isEqualTo(4);
+  }
+
+  @Test
+  public void outputLinesPerSecond() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.outputLinesPerSecond()).isEqualTo(0);
+    when(settings.getInt("sonar.stylecop.outputLinesPerSecond")).thenReturn(20);
+    assertThat(conf.outputLinesPerSecond()).isEqualTo(20);
+  }
+
+  @Test
+  public void rawOutput() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.rawOutput()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.rawOutput")).thenReturn(true);
+    assertThat(conf.rawOutput()).isTrue();
+  }
+
+  @Test
+  public void remoteWorkers() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.remoteWorkers()).isEmpty();
+    when(settings.getString("sonar.stylecop.remoteWorkers")).thenReturn("agent1:9876, agent2:9876,");
+    assertThat(conf.remoteWorkers()).containsExactly("agent1:9876", "agent2:9876");
+  }
+
+  @Test
+  public void remoteWorkersSecret() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.remoteWorkersSecret()).isNull();
+    when(settings.getString("sonar.stylecop.remoteWorkersSecret")).thenReturn("s3cr3t");
+    assertThat(conf.remoteWorkersSecret()).isEqualTo("s3cr3t");
+  }
+
+  @Test
+  public void analyzeSharedFilesOnce() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.analyzeSharedFilesOnce()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.analyzeSharedFilesOnce")).thenReturn(true);
+    assertThat(conf.analyzeSharedFilesOnce()).isTrue();
+  }
+
+  @Test
+  public void analyzerGroups() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.analyzerGroups()).isEqualTo(1);
+    when(settings.getInt("sonar.stylecop.analyzerGroups")).thenReturn(3);
+    assertThat(conf.analyzerGroups()).isEqualTo(3);
+  }
+
+  @Test
+  public void profileAnalyzers() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.profileAnalyzers()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.profileAnalyzers")).thenReturn(true);
+    assertThat(conf.profileAnalyzers()).isTrue();
+  }
+
+  @Test
+  public void excludeGeneratedCode() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.excludeGeneratedCode()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.excludeGeneratedCode")).thenReturn(true);
+    assertThat(conf.excludeGeneratedCode()).isTrue();
+  }
+
+  @Test
+  public void importGroupingThreshold() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.importGroupingThreshold()).isEqualTo(0);
+    when(settings.getInt("sonar.stylecop.importGroupingThreshold")).thenReturn(-1);
+    assertThat(conf.importGroupingThreshold()).isEqualTo(0);
+    when(settings.getInt("sonar.stylecop.importGroupingThreshold")).thenReturn(100000);
+    assertThat(conf.importGroupingThreshold()).isEqualTo(100000);
+  }
+
+  @Test
+  public void mappedReportParser() {
+    Settings settings = mock(Settings.class);
+    StyleCopConfiguration conf = new StyleCopConfiguration(settings);
+
+    assertThat(conf.mappedReportParser()).isFalse();
+    when(settings.getBoolean("sonar.stylecop.mappedReportParser")).thenReturn(true);
+    assertThat(conf.mappedReportParser()).isTrue();
+  }
+
   @Test
   public void should_fail_with_missing_msbuild_exe_path() {
     thrown.expect(IllegalArgumentException.class);
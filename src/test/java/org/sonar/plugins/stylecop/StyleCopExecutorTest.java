@@ -0,0 +1,140 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.SonarException;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class StyleCopExecutorTest {
+
+  private static final String FAKE_MSBUILD = new File("src/test/resources/StyleCopSensorTest/MSBuild.sh").getAbsolutePath();
+  private static final String STALLING_MSBUILD = new File("src/test/resources/StyleCopExecutorTest/Stalling.sh").getAbsolutePath();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void execute_in_parallel() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    List<StyleCopJob> jobs = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      jobs.add(job(i));
+    }
+
+    final Thread thread = Thread.currentThread();
+    final List<StyleCopJob> completed = Lists.newArrayList();
+    new StyleCopExecutor().execute(FAKE_MSBUILD, jobs, 2, 1, "timeout", new StyleCopExecutor.CompletionListener() {
+      @Override
+      public void completed(StyleCopJob job) {
+        assertThat(Thread.currentThread()).isSameAs(thread);
+        assertThat(job.reportFile().isFile()).isTrue();
+        completed.add(job);
+      }
+    });
+
+    assertThat(completed).containsOnly(jobs.toArray());
+    assertThat(completed).hasSize(5);
+  }
+
+  @Test
+  public void execute_in_parallel_failure() throws Exception {
+    thrown.expectMessage("non_existing");
+
+    new StyleCopExecutor().execute(new File(tmp.getRoot(), "non_existing").getAbsolutePath(), ImmutableList.of(job(0)), 1, 1, "timeout",
+      new StyleCopExecutor.CompletionListener() {
+        @Override
+        public void completed(StyleCopJob job) {
+          throw new IllegalStateException();
+        }
+      });
+  }
+
+  @Test
+  public void execute() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    File msBuildFile = msBuildFile(0);
+    new StyleCopExecutor(1, TimeUnit.MINUTES, null).execute(FAKE_MSBUILD, msBuildFile.getAbsolutePath(), 1, "timeout");
+
+    assertThat(new File(msBuildFile.getAbsolutePath() + ".xml").isFile()).isTrue();
+  }
+
+  @Test
+  public void execute_stalled() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    File msBuildFile = msBuildFile(0);
+    long start = System.currentTimeMillis();
+    try {
+      new StyleCopExecutor(1, TimeUnit.SECONDS, null).execute(STALLING_MSBUILD, msBuildFile.getAbsolutePath(), 1, "timeout");
+      fail();
+    } catch (SonarException e) {
+      assertThat(e.getMessage()).isEqualTo("StyleCop's execution was stopped after 1 seconds without any output, "
+        + "the last file being analyzed was \"C:\\My Library\\Class2.cs\". "
+        + "Increase the inactivity timeout by setting \"sonar.stylecop.inactivityTimeoutMinutes\" property.");
+    }
+    assertThat(System.currentTimeMillis() - start).isLessThan(TimeUnit.SECONDS.toMillis(30));
+
+    // The child process was killed as well
+    String pid = Files.toString(new File(msBuildFile.getAbsolutePath() + ".pid"), Charsets.UTF_8).trim();
+    int exitCode = 0;
+    for (int i = 0; i < 50 && exitCode == 0; i++) {
+      Thread.sleep(100);
+      exitCode = new ProcessBuilder("kill", "-0", pid).start().waitFor();
+    }
+    assertThat(exitCode).isNotEqualTo(0);
+  }
+
+  private StyleCopJob job(int i) throws Exception {
+    File msBuildFile = msBuildFile(i);
+    return new StyleCopJob(msBuildFile, new File(tmp.getRoot(), "Settings.StyleCop"), new File(msBuildFile.getAbsolutePath() + ".xml"),
+      ImmutableList.<File>of());
+  }
+
+  private File msBuildFile(int i) throws Exception {
+    File file = new File(tmp.getRoot(), "StyleCop-msbuild-" + i + ".proj");
+    Files.write(
+      "<StyleCopOutputFile>" + file.getAbsolutePath() + ".xml</StyleCopOutputFile>\n"
+        + "<StyleCopFiles Include=\"Class" + i + ".cs\" />\n",
+      file, Charsets.UTF_8);
+    return file;
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopGeneratedCodeTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void generated_by_name() throws Exception {
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Form1.Designer.cs", ""))).isTrue();
+    assertThat(StyleCopGeneratedCode.isGenerated(file("MainWindow.g.cs", ""))).isTrue();
+    assertThat(StyleCopGeneratedCode.isGenerated(file("MainWindow.g.i.cs", ""))).isTrue();
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Model.Generated.cs", ""))).isTrue();
+    assertThat(StyleCopGeneratedCode.isGenerated(file("TemporaryGeneratedFile_E7A71F73.cs", ""))).isTrue();
+
+    file("Entities.tt", "<#@ template #>");
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Entities.cs", ""))).isTrue();
+
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Designer.cs", "class Designer {}"))).isFalse();
+  }
+
+  @Test
+  public void generated_by_header() throws Exception {
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Reference.cs",
+      "//------------------------------------------------------------------------------\n"
+        + "// <auto-generated>\n"
+        + "//     This code was generated by a tool.\n"
+        + "// </auto-generated>\n"))).isTrue();
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Old.cs", "// <autogenerated />\n"))).isTrue();
+
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Class1.cs", "class Class1 {}\n"))).isFalse();
+    assertThat(StyleCopGeneratedCode.isGenerated(file("Class2.cs", Strings.repeat("// Padding\n", 1000) + "// <auto-generated />\n"))).isFalse();
+  }
+
+  @Test
+  public void cached_by_size_and_last_modification() throws Exception {
+    File cacheFile = new File(tmp.getRoot(), "generated.cache");
+    File class1 = file("Class1.cs", "class Class1 {}   ");
+    File class2 = file("Class2.cs", "// <auto-generated />");
+    File designer = file("Form1.Designer.cs", "");
+
+    assertThat(new StyleCopGeneratedCode(cacheFile).exclude(ImmutableList.of(class1, class2, designer))).containsExactly(class1);
+
+    // Same size and last modification: the previous classification is reused
+    long lastModified = class1.lastModified();
+    Files.write("// <auto-generated", class1, Charsets.UTF_8);
+    class1.setLastModified(lastModified);
+    assertThat(new StyleCopGeneratedCode(cacheFile).exclude(ImmutableList.of(class1, class2, designer))).containsExactly(class1);
+
+    class1.setLastModified(lastModified - 10000);
+    assertThat(new StyleCopGeneratedCode(cacheFile).exclude(ImmutableList.of(class1, class2, designer))).isEmpty();
+  }
+
+  @Test
+  public void text_template_output_checked_on_each_analysis() throws Exception {
+    File cacheFile = new File(tmp.getRoot(), "generated.cache");
+    File entities = file("Entities.cs", "class Entities {}");
+
+    assertThat(new StyleCopGeneratedCode(cacheFile).exclude(ImmutableList.of(entities))).containsExactly(entities);
+
+    File template = file("Entities.tt", "<#@ template #>");
+    assertThat(new StyleCopGeneratedCode(cacheFile).exclude(ImmutableList.of(entities))).isEmpty();
+
+    template.delete();
+    assertThat(new StyleCopGeneratedCode(cacheFile).exclude(ImmutableList.of(entities))).containsExactly(entities);
+  }
+
+  @Test
+  public void corrupted_cache() throws Exception {
+    File cacheFile = new File(tmp.getRoot(), "generated.cache");
+    Files.write("corrupted", cacheFile, Charsets.UTF_8);
+    File class1 = file("Class1.cs", "class Class1 {}");
+
+    assertThat(new StyleCopGeneratedCode(cacheFile).exclude(ImmutableList.of(class1))).containsExactly(class1);
+  }
+
+  private File file(String name, String contents) throws Exception {
+    File file = new File(tmp.getRoot(), name);
+    Files.write(contents, file, Charsets.UTF_8);
+    return file;
+  }
+
+}
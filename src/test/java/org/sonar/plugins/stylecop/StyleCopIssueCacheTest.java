@@ -0,0 +1,152 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopIssueCacheTest {
+
+  private static final List<String> RULES = ImmutableList.of("MyNamespace#Rule1");
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test() throws Exception {
+    File cacheFile = new File(tmp.getRoot(), "StyleCop-issues.cache");
+    File class1 = tmp.newFile("Class1.cs");
+    Files.write("class Class1 {}", class1, Charsets.UTF_8);
+    File class2 = tmp.newFile("Class2.cs");
+    Files.write("class Class2 {}", class2, Charsets.UTF_8);
+    File class3 = tmp.newFile("Class3.cs");
+    Files.write("class Class3 {}", class3, Charsets.UTF_8);
+    List<File> files = ImmutableList.of(class1, class2, class3);
+
+    StyleCopIssueCache cache = new StyleCopIssueCache(cacheFile, "fingerprint1", RULES);
+    assertThat(cache.changedFiles(files)).containsExactly(class1, class2, class3);
+    assertThat(replay(cache)).isEmpty();
+
+    List<StyleCopIssue> imported = Lists.newArrayList();
+    StyleCopIssueHandler recorder = cache.recorder(collector(imported));
+    recorder.handle(new StyleCopIssue(2, 1, class1.getAbsolutePath(), "MyNamespace", "Rule1", "First message"));
+    recorder.handle(new StyleCopIssue(3, 5, class2.getAbsolutePath().toUpperCase(), null, null, "Second message"));
+    recorder.handle(new StyleCopIssue(4, 7, "Other.cs", "MyNamespace", "Rule1", "Third message"));
+    assertThat(imported).hasSize(3);
+    cache.save();
+    assertThat(cacheFile.isFile()).isTrue();
+
+    Files.write("class Class1 { int i; }", class1, Charsets.UTF_8);
+    cache = new StyleCopIssueCache(cacheFile, "fingerprint1", RULES);
+    assertThat(cache.changedFiles(files)).containsExactly(class1);
+    List<StyleCopIssue> replayed = replay(cache);
+    assertThat(replayed).hasSize(1);
+    StyleCopIssue issue = replayed.get(0);
+    assertThat(issue.reportLine()).isEqualTo(3);
+    assertThat(issue.lineNumber()).isEqualTo(5);
+    assertThat(issue.source()).isEqualTo(class2.getAbsolutePath().toUpperCase());
+    assertThat(issue.ruleNamespace()).isNull();
+    assertThat(issue.rule()).isNull();
+    assertThat(issue.message()).isEqualTo("Second message");
+    cache.save();
+
+    cache = new StyleCopIssueCache(cacheFile, "fingerprint1", RULES);
+    assertThat(cache.changedFiles(ImmutableList.of(class1, class3))).isEmpty();
+    assertThat(replay(cache)).isEmpty();
+
+    cache = new StyleCopIssueCache(cacheFile, "fingerprint2", RULES);
+    assertThat(cache.changedFiles(files)).containsExactly(class1, class2, class3);
+
+    Files.write("corrupted", cacheFile, Charsets.UTF_8);
+    cache = new StyleCopIssueCache(cacheFile, "fingerprint1", RULES);
+    assertThat(cache.changedFiles(files)).containsExactly(class1, class2, class3);
+  }
+
+  @Test
+  public void quality_profile_changes() throws Exception {
+    File cacheFile = new File(tmp.getRoot(), "StyleCop-issues.cache");
+    File class1 = tmp.newFile("Class1.cs");
+    Files.write("class Class1 {}", class1, Charsets.UTF_8);
+    File class2 = tmp.newFile("Class2.cs");
+    Files.write("class Class2 {}", class2, Charsets.UTF_8);
+    List<File> files = ImmutableList.of(class1, class2);
+
+    StyleCopIssueCache cache = new StyleCopIssueCache(cacheFile, "fingerprint", ImmutableList.of("MyNamespace#Rule1", "MyNamespace#Rule2"));
+    cache.changedFiles(files);
+    assertThat(cache.addedRuleConfigKeys()).isEmpty();
+    StyleCopIssueHandler recorder = cache.recorder(collector(Lists.<StyleCopIssue>newArrayList()));
+    recorder.handle(new StyleCopIssue(2, 1, class1.getAbsolutePath(), "MyNamespace", "Rule1", "First message"));
+    recorder.handle(new StyleCopIssue(3, 2, class1.getAbsolutePath(), "MyNamespace", "Rule2", "Second message"));
+    recorder.handle(new StyleCopIssue(4, 3, class2.getAbsolutePath(), "MyNamespace", "Rule2", "Third message"));
+    cache.save();
+
+    // Rule2 deactivated and Rule3 activated
+    cache = new StyleCopIssueCache(cacheFile, "fingerprint", ImmutableList.of("MyNamespace#Rule1", "MyNamespace#Rule3"));
+    Files.write("class Class2 { int i; }", class2, Charsets.UTF_8);
+    assertThat(cache.changedFiles(files)).containsExactly(class2);
+    assertThat(cache.unchangedFiles()).containsExactly(class1);
+    assertThat(cache.addedRuleConfigKeys()).containsExactly("MyNamespace#Rule3");
+    assertThat(messages(replay(cache))).containsExactly("First message");
+
+    recorder = cache.recorder(collector(Lists.<StyleCopIssue>newArrayList()));
+    recorder.handle(new StyleCopIssue(2, 4, class2.getAbsolutePath(), "MyNamespace", "Rule1", "Fourth message"));
+    recorder.handle(new StyleCopIssue(2, 5, class1.getAbsolutePath(), "MyNamespace", "Rule3", "Fifth message"));
+    cache.save();
+
+    cache = new StyleCopIssueCache(cacheFile, "fingerprint", ImmutableList.of("MyNamespace#Rule1", "MyNamespace#Rule3"));
+    assertThat(cache.changedFiles(files)).isEmpty();
+    assertThat(cache.addedRuleConfigKeys()).isEmpty();
+    assertThat(messages(replay(cache))).containsExactly("First message", "Fifth message", "Fourth message");
+  }
+
+  private static List<String> messages(List<StyleCopIssue> issues) {
+    List<String> messages = Lists.newArrayList();
+    for (StyleCopIssue issue : issues) {
+      messages.add(issue.message());
+    }
+    return messages;
+  }
+
+  private static List<StyleCopIssue> replay(StyleCopIssueCache cache) {
+    List<StyleCopIssue> issues = Lists.newArrayList();
+    cache.replay(collector(issues));
+    return issues;
+  }
+
+  private static StyleCopIssueHandler collector(final List<StyleCopIssue> issues) {
+    return new StyleCopIssueHandler() {
+      @Override
+      public void handle(StyleCopIssue issue) {
+        issues.add(issue);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class StyleCopIssueGrouperTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void in_memory() throws Exception {
+    RecordingHandler recorder = new RecordingHandler();
+    File spillDirectory = new File(tmp.getRoot(), "spill");
+    StyleCopIssueGrouper grouper = new StyleCopIssueGrouper(recorder, 100, spillDirectory);
+
+    handle(grouper, "a.cs", "b.cs", "A.cs", "c.cs", "b.cs");
+    assertThat(recorder.issues).isEmpty();
+
+    grouper.flush();
+    assertThat(recorder.reportLines()).containsExactly(1, 3, 2, 5, 4);
+    assertThat(spillDirectory).doesNotExist();
+
+    handle(grouper, "d.cs");
+    grouper.flush();
+    assertThat(recorder.reportLines()).containsExactly(1, 3, 2, 5, 4, 1);
+  }
+
+  @Test
+  public void spilled_to_disk() throws Exception {
+    RecordingHandler recorder = new RecordingHandler();
+    File spillDirectory = new File(tmp.getRoot(), "spill");
+    StyleCopIssueGrouper grouper = new StyleCopIssueGrouper(recorder, 3, spillDirectory);
+
+    String[] sources = new String[1000];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = "Class" + (i % 37) + ".cs";
+    }
+    handle(grouper, sources);
+    assertThat(recorder.issues).isEmpty();
+    assertThat(spillDirectory).isDirectory();
+
+    grouper.flush();
+    assertThat(recorder.issues).hasSize(1000);
+    assertThat(spillDirectory).doesNotExist();
+
+    // Each file's issues are consecutive, in the order of the report
+    List<String> seenSources = Lists.newArrayList();
+    StyleCopIssue previous = null;
+    for (StyleCopIssue issue : recorder.issues) {
+      if (previous == null || !previous.source().equals(issue.source())) {
+        assertThat(seenSources).excludes(issue.source());
+        seenSources.add(issue.source());
+      } else {
+        assertThat(issue.reportLine()).isGreaterThan(previous.reportLine());
+      }
+      assertThat(issue.message()).isEqualTo("Message " + issue.reportLine());
+      previous = issue;
+    }
+    assertThat(seenSources).hasSize(37);
+  }
+
+  @Test
+  public void partitions_larger_than_the_threshold_are_partitioned_again() throws Exception {
+    RecordingHandler recorder = new RecordingHandler();
+    File spillDirectory = new File(tmp.getRoot(), "spill");
+    StyleCopIssueGrouper grouper = new StyleCopIssueGrouper(recorder, 10, spillDirectory);
+
+    // Far more issues than the threshold times the number of partitions, including a file with more issues than the threshold
+    String[] sources = new String[5000];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = i % 2 == 0 ? "Big.cs" : "Class" + (i % 1001) + ".cs";
+    }
+    handle(grouper, sources);
+    grouper.flush();
+
+    assertThat(recorder.issues).hasSize(5000);
+    assertThat(grouper.peakBufferedIssues()).isLessThanOrEqualTo(10);
+    assertThat(spillDirectory).doesNotExist();
+
+    List<String> seenSources = Lists.newArrayList();
+    StyleCopIssue previous = null;
+    for (StyleCopIssue issue : recorder.issues) {
+      if (previous == null || !previous.source().equals(issue.source())) {
+        assertThat(seenSources).excludes(issue.source());
+        seenSources.add(issue.source());
+      }
+      previous = issue;
+    }
+    assertThat(seenSources).hasSize(1002);
+  }
+
+  @Test
+  public void close_deletes_the_spilled_issues() throws Exception {
+    File spillDirectory = new File(tmp.getRoot(), "spill");
+    StyleCopIssueGrouper grouper = new StyleCopIssueGrouper(new RecordingHandler(), 3, spillDirectory);
+
+    handle(grouper, "a.cs", "b.cs", "c.cs", "d.cs");
+    assertThat(spillDirectory).isDirectory();
+
+    grouper.close();
+    assertThat(spillDirectory).doesNotExist();
+  }
+
+  @Test
+  public void spilled_issues_deleted_when_the_delegate_fails() throws Exception {
+    File spillDirectory = new File(tmp.getRoot(), "spill");
+    StyleCopIssueGrouper grouper = new StyleCopIssueGrouper(new StyleCopIssueHandler() {
+      @Override
+      public void handle(StyleCopIssue issue) {
+        throw new IllegalStateException("Failure");
+      }
+    }, 3, spillDirectory);
+
+    handle(grouper, "a.cs", "b.cs", "c.cs", "d.cs");
+    try {
+      grouper.flush();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(spillDirectory).doesNotExist();
+    }
+  }
+
+  private static void handle(StyleCopIssueGrouper grouper, String... sources) {
+    for (int i = 0; i < sources.length; i++) {
+      grouper.handle(new StyleCopIssue(i + 1, 1, sources[i], "MyNamespace", "MyRule", "Message " + (i + 1)));
+    }
+  }
+
+  private static class RecordingHandler implements StyleCopIssueHandler {
+
+    private final List<StyleCopIssue> issues = Lists.newArrayList();
+
+    @Override
+    public void handle(StyleCopIssue issue) {
+      issues.add(issue);
+    }
+
+    private List<Integer> reportLines() {
+      List<Integer> result = Lists.newArrayList();
+      for (StyleCopIssue issue : issues) {
+        result.add(issue.reportLine());
+      }
+      return result;
+    }
+
+  }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class StyleCopMappedReportParserTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void valid() {
+    List<StyleCopIssue> issues = new StyleCopMappedReportParser().parse(new File("src/test/resources/StyleCopReportParserTest/valid.xml"));
+
+    assertThat(issues).hasSize(7);
+
+    StyleCopIssue issue = issues.get(0);
+    assertThat(issue.reportLine()).isEqualTo(2);
+    assertThat(issue.lineNumber()).isEqualTo(1);
+    assertThat(issue.source()).isEqualTo("MyLibrary\\Program.cs");
+    assertThat(issue.ruleNamespace()).isEqualTo("StyleCop.CSharp.DocumentationRules");
+    assertThat(issue.rule()).isEqualTo("FileMustHaveHeader");
+    assertThat(issue.message()).isEqualTo("The file has no header, the header Xml is invalid, or the header is not located at the top of the file.");
+
+    issue = issues.get(2);
+    assertThat(issue.reportLine()).isEqualTo(4);
+    assertThat(issue.lineNumber()).isEqualTo(11);
+    assertThat(issue.rule()).isEqualTo("AccessModifierMustBeDeclared");
+    assertThat(issue.message()).isEqualTo("The method must have an access modifier.");
+  }
+
+  @Test
+  public void small_windows() {
+    File file = new File("src/test/resources/StyleCopReportParserTest/valid.xml");
+
+    assertSameIssues(new StyleCopMappedReportParser(7).parse(file), new StyleCopReportParser().parse(file));
+  }
+
+  @Test
+  public void same_issues_as_xml_parser() throws Exception {
+    File file = tmp.newFile("report.xml");
+    Files.write("﻿<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n"
+      + "<!DOCTYPE StyleCopViolations [ <!ELEMENT Violation ANY> ]>\r\n"
+      + "<!-- <Violation LineNumber=\"1\" Source=\"Commented.cs\">commented out</Violation> -->\r\n"
+      + "<StyleCopViolations>\r\n"
+      + "  <Violation LineNumber='3' Source=\"A &amp; B\\Café.cs\" RuleNamespace=\"StyleCop.CSharp.NamingRules\" Rule=\"ElementMustBeginWithUpperCaseLetter\" RuleId=\"SA1300\">Name &lt;foo&gt; &quot;bar&quot; &#233;&#x20AC;</Violation>\r\n"
+      + "  <Violation\r\n    Section=\"a > b\"\r\n    LineNumber=\"42\"\n    Source=\"A &amp; B\\Café.cs\"\r\n    Rule=\"Multi&#10;line\">first\r\nsecond<![CDATA[ <third> & ]]><!-- comment -->\rfourth</Violation>\r\n"
+      + "  <Violation LineNumber=\"7\" Source=\"Other.cs\" RuleNamespace=\"StyleCop.CSharp.NamingRules\" Rule=\"a\tb\"/>\r\n"
+      + "</StyleCopViolations>\r\n", file, Charsets.UTF_8);
+
+    List<StyleCopIssue> issues = new StyleCopMappedReportParser(16).parse(file);
+
+    assertThat(issues).hasSize(3);
+    assertThat(issues.get(0).source()).isEqualTo("A & B\\Café.cs");
+    assertThat(issues.get(0).message()).isEqualTo("Name <foo> \"bar\" é€");
+    assertThat(issues.get(1).lineNumber()).isEqualTo(42);
+    assertThat(issues.get(1).rule()).isEqualTo("Multi\nline");
+    assertThat(issues.get(1).ruleNamespace()).isNull();
+    assertThat(issues.get(1).message()).isEqualTo("first\nsecond <third> & \nfourth");
+    assertThat(issues.get(2).rule()).isEqualTo("a b");
+    assertThat(issues.get(2).message()).isEmpty();
+
+    assertSameIssues(issues, new StyleCopReportParser().parse(file));
+  }
+
+  @Test
+  public void invalid_line() {
+    thrown.expectMessage("Expected an integer instead of \"foo\" for the attribute \"LineNumber\"");
+    thrown.expectMessage("invalid_line.xml at line 2");
+
+    new StyleCopMappedReportParser().parse(new File("src/test/resources/StyleCopReportParserTest/invalid_line.xml"));
+  }
+
+  @Test
+  public void missing_source() {
+    thrown.expectMessage("Missing attribute \"Source\" in element <Violation>");
+    thrown.expectMessage("missing_source.xml at line 2");
+
+    new StyleCopMappedReportParser().parse(new File("src/test/resources/StyleCopReportParserTest/missing_source.xml"));
+  }
+
+  @Test
+  public void truncated() throws Exception {
+    File file = tmp.newFile("truncated.xml");
+    Files.write("<StyleCopViolations>\n  <Violation LineNumber=\"1\" Source=\"Program.cs\">The file has", file, Charsets.UTF_8);
+
+    thrown.expectMessage("Malformed element <Violation>");
+    thrown.expectMessage("truncated.xml at line 2");
+
+    new StyleCopMappedReportParser().parse(file);
+  }
+
+  @Test
+  public void malformed() throws Exception {
+    File file = tmp.newFile("malformed.xml");
+    Files.write("<StyleCopViolations>\n  <Violation LineNumber=\"1\" Source=\"Program.cs\">Malformed <Violation\n</StyleCopViolations>", file, Charsets.UTF_8);
+
+    thrown.expectMessage("Malformed element <Violation>");
+    thrown.expectMessage("malformed.xml at line 2");
+
+    new StyleCopMappedReportParser().parse(file);
+  }
+
+  // Malformed XML is only reported as a ParseErrorException by this parser, the StAX one propagates the XMLStreamException
+  @Test
+  public void same_attribute_errors_as_stax_parser() {
+    assertSameError(new File("src/test/resources/StyleCopReportParserTest/invalid_line.xml"));
+    assertSameError(new File("src/test/resources/StyleCopReportParserTest/missing_source.xml"));
+  }
+
+  @Test
+  public void non_existing() {
+    thrown.expectMessage("java.io.FileNotFoundException");
+    thrown.expectMessage("non_existing.xml");
+
+    new StyleCopMappedReportParser().parse(new File("src/test/resources/StyleCopReportParserTest/non_existing.xml"));
+  }
+
+  private static void assertSameError(File file) {
+    String expected = null;
+    try {
+      new StyleCopReportParser().parse(file);
+      fail();
+    } catch (StyleCopReportParser.ParseErrorException e) {
+      expected = e.getMessage();
+    }
+
+    try {
+      new StyleCopMappedReportParser().parse(file);
+      fail();
+    } catch (StyleCopReportParser.ParseErrorException e) {
+      assertThat(e.getMessage()).isEqualTo(expected);
+    }
+  }
+
+  private static void assertSameIssues(List<StyleCopIssue> actual, List<StyleCopIssue> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).reportLine()).isEqualTo(expected.get(i).reportLine());
+      assertThat(actual.get(i).lineNumber()).isEqualTo(expected.get(i).lineNumber());
+      assertThat(actual.get(i).source()).isEqualTo(expected.get(i).source());
+      assertThat(actual.get(i).ruleNamespace()).isEqualTo(expected.get(i).ruleNamespace());
+      assertThat(actual.get(i).rule()).isEqualTo(expected.get(i).rule());
+      assertThat(actual.get(i).message()).isEqualTo(expected.get(i).message());
+    }
+  }
+
+}
@@ -20,6 +20,7 @@
 package org.sonar.plugins.stylecop;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import org.junit.Rule;
 import org.junit.Test;
@@ -41,8 +42,9 @@ public class StyleCopMsBuildWriterTest {
     File settingsFile = tmp.newFile();
     File reportFile = tmp.newFile();
     File file = tmp.newFile();
+    File sourceFile = new File("Class1.cs");
 
-    new StyleCopMsBuildWriter().write(styleCopDllFile, projectFile, settingsFile, reportFile, file);
+    new StyleCopMsBuildWriter().write(styleCopDllFile, projectFile, settingsFile, reportFile, ImmutableList.of(sourceFile), file);
     String contents = Files.toString(file, Charsets.UTF_8);
 
     assertThat(contents.replace("\r", "").replace("\n", ""))
@@ -51,17 +53,16 @@ public class StyleCopMsBuildWriterTest {
           + "  <UsingTask AssemblyFile=\"" + styleCopDllFile.getAbsolutePath() + "\" TaskName=\"StyleCopTask\"/>"
           + ""
           + "  <PropertyGroup>"
-          + "    <FolderToAnalyse>" + projectFile.getParentFile().getAbsolutePath() + "</FolderToAnalyse>"
           + "    <ProjectPath>" + projectFile.getAbsolutePath() + "</ProjectPath>"
           + "    <StyleCopOverrideSettingsFile>" + settingsFile.getAbsolutePath() + "</StyleCopOverrideSettingsFile>"
           + "    <StyleCopOutputFile>" + reportFile.getAbsolutePath() + "</StyleCopOutputFile>"
           + "  </PropertyGroup>"
           + ""
-          + "  <Target Name=\"StyleCopLaunch\">"
-          + "    <CreateItem Include=\"$(FolderToAnalyse)\\**\\*.cs\">"
-          + "      <Output TaskParameter=\"Include\" ItemName=\"StyleCopFiles\"/>"
-          + "    </CreateItem>"
+          + "  <ItemGroup>"
+          + "    <StyleCopFiles Include=\"" + sourceFile.getAbsolutePath() + "\" />"
+          + "  </ItemGroup>"
           + ""
+          + "  <Target Name=\"StyleCopLaunch\">"
           + "    <StyleCopTask"
           + "      ProjectFullPath=\"$(ProjectPath)\""
           + "      SourceFiles=\"@(StyleCopFiles)\""
@@ -77,4 +78,113 @@ public class StyleCopMsBuildWriterTest {
           + "</Project>");
   }
 
+  @Test
+  public void source_files() throws Exception {
+    File styleCopDllFile = tmp.newFile();
+    File projectFile = tmp.newFile();
+    File settingsFile = tmp.newFile();
+    File reportFile = tmp.newFile();
+    File file = tmp.newFile();
+    File sourceFile1 = new File("Class1.cs");
+    File sourceFile2 = new File("My Folder/Class&2;.cs");
+
+    new StyleCopMsBuildWriter().write(styleCopDllFile, projectFile, settingsFile, reportFile, ImmutableList.of(sourceFile1, sourceFile2), file);
+    String contents = Files.toString(file, Charsets.UTF_8);
+
+    assertThat(contents.replace("\r", "").replace("\n", ""))
+      .contains(
+        "  <ItemGroup>"
+          + "    <StyleCopFiles Include=\"" + sourceFile1.getAbsolutePath() + "\" />"
+          + "    <StyleCopFiles Include=\"" + new File("My Folder").getAbsolutePath() + File.separator + "Class&amp;2%3B.cs\" />"
+          + "  </ItemGroup>"
+          + ""
+          + "  <Target Name=\"StyleCopLaunch\">"
+          + "    <StyleCopTask"
+          + "      ProjectFullPath=\"$(ProjectPath)\""
+          + "      SourceFiles=\"@(StyleCopFiles)\"")
+      .contains("<StyleCopOutputFile>" + reportFile.getAbsolutePath() + "</StyleCopOutputFile>")
+      .doesNotContain("CreateItem");
+  }
+
+  @Test
+  public void incremental() throws Exception {
+    File styleCopDllFile = tmp.newFile();
+    File projectFile = tmp.newFile("MyProject.csproj");
+    File settingsFile = tmp.newFile();
+    File reportFile = tmp.newFile();
+    File cacheDirectory = tmp.newFolder("cache");
+    File file = tmp.newFile();
+
+    new StyleCopMsBuildWriter().write(styleCopDllFile, projectFile, settingsFile, reportFile, ImmutableList.of(new File("Class1.cs")), cacheDirectory, file);
+    String contents = Files.toString(file, Charsets.UTF_8);
+
+    assertThat(contents)
+      .contains("<ProjectPath>" + new File(cacheDirectory, "MyProject.csproj").getAbsolutePath() + "</ProjectPath>")
+      .contains("<StyleCopFiles Include=\"" + new File("Class1.cs").getAbsolutePath() + "\" />")
+      .contains("ForceFullAnalysis=\"false\"")
+      .contains("CacheResults=\"true\"");
+  }
+
+  @Test
+  public void projects() throws Exception {
+    File styleCopDllFile = tmp.newFile();
+    File projectFile1 = new File(tmp.newFolder("Project1"), "Project1.csproj");
+    File projectFile2 = new File(tmp.newFolder("Project;2"), "Project2.csproj");
+    File sourceFile1 = new File(projectFile1.getParentFile(), "Class1.cs");
+    File sourceFile2 = new File(projectFile2.getParentFile(), "Class2.cs");
+    File sourceFile3 = new File(projectFile2.getParentFile(), "Class3.cs");
+    File settingsFile = tmp.newFile();
+    File reportFile1 = tmp.newFile("report1.xml");
+    File reportFile2 = tmp.newFile("report2.xml");
+    File cacheDirectory = tmp.newFolder("cache");
+    File file = tmp.newFile();
+
+    new StyleCopMsBuildWriter().write(styleCopDllFile, ImmutableList.of(
+      new StyleCopMsBuildWriter.BatchProject(projectFile1, ImmutableList.of(sourceFile1), reportFile1, null),
+      new StyleCopMsBuildWriter.BatchProject(projectFile2, ImmutableList.of(sourceFile2, sourceFile3), reportFile2, cacheDirectory)),
+      settingsFile, file);
+    String contents = Files.toString(file, Charsets.UTF_8);
+
+    String escapedProjectDir2 = tmp.getRoot().getAbsolutePath() + File.separator + "Project%3B2";
+    assertThat(contents.replace("\r", "").replace("\n", ""))
+      .isEqualTo(
+        "<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\" DefaultTargets=\"StyleCopLaunch\">"
+          + "  <UsingTask AssemblyFile=\"" + styleCopDllFile.getAbsolutePath() + "\" TaskName=\"StyleCopTask\"/>"
+          + ""
+          + "  <ItemGroup>"
+          + "    <StyleCopFiles0 Include=\"" + sourceFile1.getAbsolutePath() + "\" />"
+          + "  </ItemGroup>"
+          + ""
+          + "  <ItemGroup>"
+          + "    <StyleCopFiles1 Include=\"" + escapedProjectDir2 + File.separator + "Class2.cs\" />"
+          + "    <StyleCopFiles1 Include=\"" + escapedProjectDir2 + File.separator + "Class3.cs\" />"
+          + "  </ItemGroup>"
+          + ""
+          + "  <Target Name=\"StyleCopLaunch\">"
+          + "    <StyleCopTask"
+          + "      ProjectFullPath=\"" + projectFile1.getAbsolutePath() + "\""
+          + "      SourceFiles=\"@(StyleCopFiles0)\""
+          + "      AdditionalAddinPaths=\"\""
+          + "      ForceFullAnalysis=\"true\""
+          + "      DefineConstants=\"DEBUG;TRACE\""
+          + "      TreatErrorsAsWarnings=\"true\""
+          + "      CacheResults=\"false\""
+          + "      OverrideSettingsFile=\"" + settingsFile.getAbsolutePath() + "\""
+          + "      OutputFile=\"" + reportFile1.getAbsolutePath() + "\""
+          + "      MaxViolationCount=\"-1\" />"
+          + "    <StyleCopTask"
+          + "      ProjectFullPath=\"" + new File(cacheDirectory, "Project2.csproj").getAbsolutePath() + "\""
+          + "      SourceFiles=\"@(StyleCopFiles1)\""
+          + "      AdditionalAddinPaths=\"\""
+          + "      ForceFullAnalysis=\"false\""
+          + "      DefineConstants=\"DEBUG;TRACE\""
+          + "      TreatErrorsAsWarnings=\"true\""
+          + "      CacheResults=\"true\""
+          + "      OverrideSettingsFile=\"" + settingsFile.getAbsolutePath() + "\""
+          + "      OutputFile=\"" + reportFile2.getAbsolutePath() + "\""
+          + "      MaxViolationCount=\"-1\" />"
+          + "  </Target>"
+          + "</Project>");
+  }
+
 }
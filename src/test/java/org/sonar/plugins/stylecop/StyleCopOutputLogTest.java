@@ -0,0 +1,117 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopOutputLogTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void warnings_by_rule() {
+    StyleCopOutputLog log = new StyleCopOutputLog(0, null);
+    StyleCopOutputLog.Shard shard = log.shard();
+    shard.log("Build started.");
+    shard.log("Class1.cs(1,1): warning : SA1633: The file has no header.");
+    shard.log("Class2.cs(1,1): warning : SA1633: The file has no header.");
+    shard.log("Class2.cs(7,5): warning : SA1101: The call must begin with the 'this.' prefix.");
+    shard.log("Class3.cs(1,1): warning CS0168: The variable is declared but never used.");
+    shard.log("Class4.cs(1,1): warning : SAxxxx: Not a StyleCop rule.");
+
+    assertThat(log.summary()).isEqualTo("MSBuild reported 0 StyleCop warnings.");
+    shard.end();
+    assertThat(log.summary()).isEqualTo("MSBuild reported 3 StyleCop warnings (SA1101: 1, SA1633: 2).");
+
+    log.end();
+    assertThat(log.summary()).isEqualTo("MSBuild reported 0 StyleCop warnings.");
+  }
+
+  @Test
+  public void shards_merged_when_ended() {
+    StyleCopOutputLog log = new StyleCopOutputLog(0, null);
+    StyleCopOutputLog.Shard shard1 = log.shard();
+    StyleCopOutputLog.Shard shard2 = log.shard();
+    StyleCopOutputLog.Shard retried = log.shard();
+    shard1.log("Class1.cs(1,1): warning : SA1633: The file has no header.");
+    shard2.log("Class2.cs(1,1): warning : SA1633: The file has no header.");
+    shard2.log("Class2.cs(7,5): warning : SA1101: The call must begin with the 'this.' prefix.");
+    retried.log("Class3.cs(1,1): warning : SA1633: The file has no header.");
+
+    shard1.end();
+    shard2.end();
+    retried.discard();
+    assertThat(log.summary()).isEqualTo("MSBuild reported 3 StyleCop warnings (SA1101: 1, SA1633: 2).");
+  }
+
+  @Test
+  public void rate_limit() {
+    StyleCopOutputLog log = new StyleCopOutputLog(2, null);
+    StyleCopOutputLog.Shard shard = log.shard();
+    for (int i = 0; i < 5; i++) {
+      log(shard, "Line " + i, 10000);
+    }
+    log(shard, "Class1.cs(1,1): warning : SA1633: The file has no header.", 10500);
+    log(shard, "Line 5", 10999);
+    log(shard, "Line 6", 11000);
+    log(shard, "Line 7", 11000);
+    // The rate limit is shared by the shards
+    log(log.shard(), "Line 8", 11000);
+    shard.end();
+
+    assertThat(log.summary()).isEqualTo(
+      "MSBuild reported 1 StyleCop warnings (SA1633: 1), 4 other output lines were not logged, over the limit of 2 lines per second.");
+  }
+
+  @Test
+  public void raw_output() throws Exception {
+    File file = new File(tmp.getRoot(), "StyleCop-msbuild-output.log");
+    Files.write("previous analysis", file, Charsets.UTF_8);
+
+    StyleCopOutputLog log = new StyleCopOutputLog(1, file);
+    assertThat(file.exists()).isFalse();
+    StyleCopOutputLog.Shard shard = log.shard();
+    shard.log("Line 0");
+    shard.log("Line 1");
+    shard.end();
+    log.end();
+    shard = log.shard();
+    shard.log("Class1.cs(1,1): warning : SA1633: The file has no header.");
+    shard.discard();
+    log.end();
+
+    assertThat(Files.toString(file, Charsets.UTF_8)).isEqualTo("Line 0\nLine 1\nClass1.cs(1,1): warning : SA1633: The file has no header.\n");
+    assertThat(log.summary()).isEqualTo("MSBuild reported 0 StyleCop warnings. Its whole output is in " + file.getAbsolutePath() + ".");
+  }
+
+  private static void log(StyleCopOutputLog.Shard shard, String line, long nowMillis) {
+    shard.log(line, StyleCopOutputLog.warningIndex(line), nowMillis);
+  }
+
+}
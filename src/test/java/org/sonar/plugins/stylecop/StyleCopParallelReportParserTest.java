@@ -0,0 +1,155 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class StyleCopParallelReportParserTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void same_issues_as_sequential_parsers() throws Exception {
+    File file = tmp.newFile("report.xml");
+    Files.write(report(2000, null), file, Charsets.UTF_8);
+
+    List<StyleCopIssue> issues = new StyleCopParallelReportParser(4, 512, 64).parse(file);
+
+    assertThat(issues).hasSize(2000);
+    assertSameIssues(issues, new StyleCopMappedReportParser().parse(file));
+
+    // The StAX parser locates multi-line start tags at their last line
+    List<StyleCopIssue> expected = new StyleCopReportParser().parse(file);
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(issues.get(i).lineNumber()).isEqualTo(expected.get(i).lineNumber());
+      assertThat(issues.get(i).message()).isEqualTo(expected.get(i).message());
+    }
+  }
+
+  @Test
+  public void small_report() {
+    File file = new File("src/test/resources/StyleCopReportParserTest/valid.xml");
+
+    assertSameIssues(new StyleCopParallelReportParser(4).parse(file), new StyleCopReportParser().parse(file));
+  }
+
+  @Test
+  public void same_errors_as_sequential_parser() throws Exception {
+    File file = tmp.newFile("invalid_line.xml");
+    Files.write(report(2000, "<Violation LineNumber=\"foo\" Source=\"Invalid.cs\">Invalid</Violation>"), file, Charsets.UTF_8);
+    assertSameError(file);
+
+    file = tmp.newFile("missing_source.xml");
+    Files.write(report(2000, "<Violation LineNumber=\"1\">Missing source</Violation>"), file, Charsets.UTF_8);
+    assertSameError(file);
+
+    file = tmp.newFile("malformed.xml");
+    Files.write(report(2000, "<Violation LineNumber=\"1\" Source=\"Malformed.cs\">Malformed <Violation"), file, Charsets.UTF_8);
+    assertSameError(file);
+
+    file = tmp.newFile("truncated.xml");
+    String report = report(2000, null);
+    Files.write(report.substring(0, report.length() - 60), file, Charsets.UTF_8);
+    assertSameError(file);
+  }
+
+  private static void assertSameError(File file) {
+    String expected = null;
+    try {
+      new StyleCopMappedReportParser().parse(file);
+      fail();
+    } catch (StyleCopReportParser.ParseErrorException e) {
+      expected = e.getMessage();
+    }
+
+    final int[] issues = new int[2];
+    try {
+      new StyleCopMappedReportParser().parse(file, counter(issues, 0));
+    } catch (StyleCopReportParser.ParseErrorException e) {
+      // Counted up to the error
+    }
+    try {
+      new StyleCopParallelReportParser(4, 512, 64).parse(file, counter(issues, 1));
+      fail();
+    } catch (StyleCopReportParser.ParseErrorException e) {
+      assertThat(e.getMessage()).isEqualTo(expected);
+    }
+    assertThat(issues[1]).isEqualTo(issues[0]);
+  }
+
+  private static StyleCopIssueHandler counter(final int[] counts, final int index) {
+    return new StyleCopIssueHandler() {
+      @Override
+      public void handle(StyleCopIssue issue) {
+        counts[index]++;
+      }
+    };
+  }
+
+  // Mixed line ends, multi-line elements, and violation tags within comments and CDATA sections, which must not be taken as range boundaries
+  private static String report(int violations, String error) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("﻿<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n");
+    sb.append("<StyleCopViolations>\n");
+    for (int i = 0; i < violations; i++) {
+      if (i == violations / 2 && error != null) {
+        sb.append("  ").append(error).append('\n');
+      }
+      String lineEnd = i % 3 == 0 ? "\r\n" : i % 3 == 1 ? "\n" : "\r";
+      if (i % 97 == 0) {
+        sb.append("  <!-- <Violation LineNumber=\"1\" Source=\"Commented.cs\">").append(lineEnd)
+          .append("  <Violation LineNumber=\"2\" Source=\"Commented.cs\">commented out</Violation> -->").append(lineEnd);
+      }
+      sb.append("  <Violation LineNumber=\"").append(i + 1).append("\"").append(i % 5 == 0 ? lineEnd + "    " : " ")
+        .append("Source=\"Class").append(i % 13).append(".cs\" RuleNamespace=\"StyleCop.CSharp.NamingRules\" Rule=\"Rule").append(i % 7).append("\">")
+        .append("Message ").append(i);
+      if (i % 11 == 0) {
+        sb.append(lineEnd).append("<![CDATA[ <Violation LineNumber=\"3\" Source=\"CData.cs\"> ]]>");
+      }
+      sb.append("</Violation>").append(lineEnd);
+    }
+    sb.append("</StyleCopViolations>\r\n");
+    return sb.toString();
+  }
+
+  private static void assertSameIssues(List<StyleCopIssue> actual, List<StyleCopIssue> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).reportLine()).isEqualTo(expected.get(i).reportLine());
+      assertThat(actual.get(i).lineNumber()).isEqualTo(expected.get(i).lineNumber());
+      assertThat(actual.get(i).source()).isEqualTo(expected.get(i).source());
+      assertThat(actual.get(i).ruleNamespace()).isEqualTo(expected.get(i).ruleNamespace());
+      assertThat(actual.get(i).rule()).isEqualTo(expected.get(i).rule());
+      assertThat(actual.get(i).message()).isEqualTo(expected.get(i).message());
+    }
+  }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopPathsTest {
+
+  @Test
+  public void normalize() {
+    assertThat(StyleCopPaths.normalize("C:\\Foo\\Bar\\..\\Baz.cs")).isEqualTo("c:/foo/baz.cs");
+    assertThat(StyleCopPaths.normalize("c:/foo/./BAZ.cs")).isEqualTo("c:/foo/baz.cs");
+    assertThat(StyleCopPaths.normalize("/Foo/Baz.cs")).isEqualTo("/foo/baz.cs");
+    assertThat(StyleCopPaths.normalize("Baz.cs")).isEqualTo(StyleCopPaths.normalize(new File("Baz.cs").getAbsolutePath()));
+    assertThat(StyleCopPaths.normalize(new File("Baz.cs"))).isEqualTo(StyleCopPaths.normalize("Baz.cs"));
+  }
+
+}
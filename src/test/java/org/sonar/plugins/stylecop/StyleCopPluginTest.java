@@ -35,7 +35,9 @@ public class StyleCopPluginTest {
 
     assertThat(nonProperties(extensions)).containsOnly(
       StyleCopRuleRepository.class,
-      StyleCopSensor.class);
+      StyleCopSensor.class,
+      StyleCopWorkers.class,
+      StyleCopBatch.class);
 
     assertThat(propertyKeys(extensions)).containsOnly(
       "sonar.stylecop.msBuildPath",
@@ -43,6 +45,23 @@ public class StyleCopPluginTest {
       "sonar.stylecop.projectFilePath",
       "sonar.stylecop.timeoutMinutes",
       "sonar.stylecop.ignoredHungarianPrefixes",
+      "sonar.stylecop.shards",
+      "sonar.stylecop.incremental",
+      "sonar.stylecop.issueCache",
+      "sonar.stylecop.mappedReportParser",
+      "sonar.stylecop.inactivityTimeoutMinutes",
+      "sonar.stylecop.worker",
+      "sonar.stylecop.batch",
+      "sonar.stylecop.importGroupingThreshold",
+      "sonar.stylecop.excludeGeneratedCode",
+      "sonar.stylecop.profileAnalyzers",
+      "sonar.stylecop.analyzerGroups",
+      "sonar.stylecop.reportParserThreads",
+      "sonar.stylecop.outputLinesPerSecond",
+      "sonar.stylecop.rawOutput",
+      "sonar.stylecop.remoteWorkers",
+      "sonar.stylecop.remoteWorkersSecret",
+      "sonar.stylecop.analyzeSharedFilesOnce",
 
       "sonar.stylecop.installDirectory",
       "sonar.dotnet.version",
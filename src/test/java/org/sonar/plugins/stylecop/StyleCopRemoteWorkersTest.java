@@ -0,0 +1,308 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.SonarException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class StyleCopRemoteWorkersTest {
+
+  private static final String FAKE_MSBUILD = new File("src/test/resources/StyleCopSensorTest/MSBuild.sh").getAbsolutePath();
+  private static final String STALLING_MSBUILD = new File("src/test/resources/StyleCopExecutorTest/Stalling.sh").getAbsolutePath();
+  private static final String FAILING_MSBUILD = new File("src/test/resources/StyleCopRemoteWorkersTest/Failing.sh").getAbsolutePath();
+  private static final String LISTING_MSBUILD = new File("src/test/resources/StyleCopRemoteWorkersTest/Listing.sh").getAbsolutePath();
+  private static final String SECRET = "s3cr3t";
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final List<StyleCopWorkerServer> servers = Lists.newArrayList();
+
+  @After
+  public void stopServers() throws IOException {
+    for (StyleCopWorkerServer server : servers) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void addresses() {
+    List<InetSocketAddress> addresses = StyleCopRemoteWorkers.addresses(ImmutableList.of("localhost:9876", "127.0.0.1:1234"));
+
+    assertThat(addresses).hasSize(2);
+    assertThat(addresses.get(0).getHostName()).isEqualTo("localhost");
+    assertThat(addresses.get(0).getPort()).isEqualTo(9876);
+    assertThat(addresses.get(1).getPort()).isEqualTo(1234);
+  }
+
+  @Test
+  public void invalid_address() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Invalid StyleCop worker address \"localhost\", expected \"host:port\".");
+
+    StyleCopRemoteWorkers.addresses(ImmutableList.of("localhost"));
+  }
+
+  @Test
+  public void missing_secret() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The StyleCop workers require the secret set in the \"sonar.stylecop.remoteWorkersSecret\" property.");
+
+    new StyleCopRemoteWorkers(StyleCopRemoteWorkers.addresses(ImmutableList.of("localhost:9876")), null);
+  }
+
+  @Test
+  public void execute_and_retry_on_other_workers() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(
+      unreachableWorker(),
+      worker(new File(tmp.getRoot(), "non_existing").getAbsolutePath()),
+      worker(FAKE_MSBUILD),
+      worker(FAKE_MSBUILD)), SECRET);
+    StyleCopExecutor executor = new StyleCopExecutor(0, TimeUnit.SECONDS, null, workers, new StyleCopOutputLog(0, null));
+
+    List<StyleCopJob> jobs = Lists.newArrayList();
+    for (int i = 0; i < 6; i++) {
+      jobs.add(job(i));
+    }
+
+    final List<StyleCopJob> completed = Lists.newArrayList();
+    executor.execute("MSBuild.exe", jobs, workers.size(), 1, "timeout", new StyleCopExecutor.CompletionListener() {
+      @Override
+      public void completed(StyleCopJob job) {
+        completed.add(job);
+      }
+    });
+
+    assertThat(completed).containsOnly(jobs.toArray());
+  }
+
+  @Test
+  public void report_sent_back_with_the_paths_of_the_analysis() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    File jobsDirectory = tmp.newFolder("jobs");
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(worker(FAKE_MSBUILD, SECRET, jobsDirectory)), SECRET);
+    StyleCopJob job = job(0);
+    RecordingOutputs outputs = new RecordingOutputs();
+    workers.execute(job, 60000, 0, outputs, "timeout");
+
+    String report = Files.toString(job.reportFile(), Charsets.UTF_8);
+    for (File sourceFile : job.sourceFiles()) {
+      assertThat(report).contains("Source=\"" + sourceFile.getAbsolutePath() + "\"");
+    }
+    assertThat(report).doesNotContain(jobsDirectory.getAbsolutePath());
+
+    assertThat(outputs.outputs).hasSize(1);
+    assertThat(outputs.outputs.get(0).ended).isTrue();
+    assertThat(outputs.outputs.get(0).lines).hasSize(1);
+    assertThat(outputs.outputs.get(0).lines.get(0)).startsWith("Analyzing " + jobsDirectory.getAbsolutePath());
+
+    // The files of the job do not outlive it
+    assertThat(jobsDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void source_files_keep_their_names_on_the_worker() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    File jobsDirectory = tmp.newFolder("jobs");
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(worker(LISTING_MSBUILD, SECRET, jobsDirectory)), SECRET);
+    StyleCopJob job = job(0);
+    RecordingOutputs outputs = new RecordingOutputs();
+    try {
+      workers.execute(job, 60000, 0, outputs, "timeout");
+    } catch (SonarException e) {
+      // No report
+    }
+
+    List<String> lines = outputs.outputs.get(0).lines;
+    assertThat(lines).hasSize(job.sourceFiles().size());
+    for (int i = 0; i < lines.size(); i++) {
+      File workerFile = new File(lines.get(i));
+      assertThat(workerFile.getName()).isEqualTo(job.sourceFiles().get(i).getName());
+      assertThat(workerFile.getAbsolutePath()).startsWith(jobsDirectory.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void retry_on_non_zero_exit_code_without_its_output() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(worker(FAILING_MSBUILD), worker(FAKE_MSBUILD)), SECRET);
+    StyleCopJob job = job(0);
+    RecordingOutputs outputs = new RecordingOutputs();
+    workers.execute(job, 60000, 0, outputs, "timeout");
+
+    assertThat(job.reportFile().isFile()).isTrue();
+    assertThat(outputs.outputs).hasSize(2);
+    assertThat(outputs.outputs.get(0).discarded).isTrue();
+    assertThat(outputs.outputs.get(0).ended).isFalse();
+    assertThat(outputs.outputs.get(1).discarded).isFalse();
+    assertThat(outputs.outputs.get(1).ended).isTrue();
+    assertThat(outputs.outputs.get(1).lines).hasSize(1);
+    assertThat(outputs.outputs.get(1).lines.get(0)).startsWith("Analyzing ");
+  }
+
+  @Test
+  public void non_zero_exit_code_on_all_workers() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    thrown.expect(SonarException.class);
+    thrown.expectMessage("MSBuild exited with code 1");
+
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(worker(FAILING_MSBUILD)), SECRET);
+    workers.execute(job(0), 60000, 0, new RecordingOutputs(), "timeout");
+  }
+
+  @Test
+  public void wrong_secret() throws Exception {
+    thrown.expect(SonarException.class);
+    thrown.expectMessage("Authentication failed");
+
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(worker(FAKE_MSBUILD, "other", tmp.newFolder("jobs"))), SECRET);
+    workers.execute(job(0), 60000, 0, new RecordingOutputs(), "timeout");
+  }
+
+  @Test
+  public void all_workers_failing() throws Exception {
+    thrown.expect(SonarException.class);
+    thrown.expectMessage("Unable to analyze \"" + job(0).msBuildFile().getAbsolutePath() + "\" on any of the StyleCop workers: ");
+
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(unreachableWorker(), unreachableWorker()), SECRET);
+    new StyleCopExecutor(0, TimeUnit.SECONDS, null, workers, new StyleCopOutputLog(0, null))
+      .execute("MSBuild.exe", job(0), 1, "timeout");
+  }
+
+  @Test
+  public void inactivity_timeout() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    thrown.expect(SonarException.class);
+    thrown.expectMessage("was stopped after 1 seconds without any output");
+
+    StyleCopRemoteWorkers workers = new StyleCopRemoteWorkers(ImmutableList.of(worker(STALLING_MSBUILD)), SECRET);
+    new StyleCopExecutor(1, TimeUnit.SECONDS, null, workers, new StyleCopOutputLog(0, null))
+      .execute("MSBuild.exe", job(0), 1, "timeout");
+  }
+
+  private InetSocketAddress worker(String msBuildPath) throws IOException {
+    return worker(msBuildPath, SECRET, tmp.newFolder());
+  }
+
+  private InetSocketAddress worker(String msBuildPath, String secret, File jobsDirectory) throws IOException {
+    InetAddress loopback = InetAddress.getByName("127.0.0.1");
+    final StyleCopWorkerServer server = new StyleCopWorkerServer(loopback, 0, secret.getBytes(Charsets.UTF_8), msBuildPath,
+      new File("StyleCop.dll"), jobsDirectory);
+    servers.add(server);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        server.serve();
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+    return new InetSocketAddress(loopback, server.port());
+  }
+
+  private static InetSocketAddress unreachableWorker() throws IOException {
+    ServerSocket serverSocket = new ServerSocket(0);
+    int port = serverSocket.getLocalPort();
+    serverSocket.close();
+    return new InetSocketAddress("127.0.0.1", port);
+  }
+
+  private StyleCopJob job(int i) throws Exception {
+    File directory = new File(tmp.getRoot(), "job" + i);
+    directory.mkdirs();
+    File settingsFile = new File(directory, "Settings.StyleCop");
+    Files.write("<StyleCopSettings />", settingsFile, Charsets.UTF_8);
+    List<File> sourceFiles = Lists.newArrayList();
+    for (String name : ImmutableList.of("Class1.cs", "My Class.cs")) {
+      File sourceFile = new File(directory, name);
+      Files.write("class C" + i + " {}", sourceFile, Charsets.UTF_8);
+      sourceFiles.add(sourceFile);
+    }
+    return new StyleCopJob(new File(directory, "StyleCop-msbuild.proj"), settingsFile, new File(directory, "StyleCop-report.xml"), sourceFiles);
+  }
+
+  private static class RecordingOutputs implements Supplier<RecordingOutput> {
+
+    private final List<RecordingOutput> outputs = Lists.newArrayList();
+
+    @Override
+    public RecordingOutput get() {
+      RecordingOutput output = new RecordingOutput();
+      outputs.add(output);
+      return output;
+    }
+
+  }
+
+  private static class RecordingOutput implements StyleCopRemoteWorkers.Output {
+
+    private final List<String> lines = Lists.newArrayList();
+    private boolean ended;
+    private boolean discarded;
+
+    @Override
+    public void consumeLine(String line) {
+      lines.add(line);
+    }
+
+    @Override
+    public void end() {
+      ended = true;
+    }
+
+    @Override
+    public void discard() {
+      discarded = true;
+    }
+
+  }
+
+}
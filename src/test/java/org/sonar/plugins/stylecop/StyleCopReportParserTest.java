@@ -19,20 +19,30 @@
  */
 package org.sonar.plugins.stylecop;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class StyleCopReportParserTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void valid() {
     List<StyleCopIssue> issues = new StyleCopReportParser().parse(new File("src/test/resources/StyleCopReportParserTest/valid.xml"));
@@ -64,6 +74,25 @@ public class StyleCopReportParserTest {
     assertThat(issue.message()).isEqualTo("The file has no header, the header Xml is invalid, or the header is not located at the top of the file.");
   }
 
+  @Test
+  public void valid_streamed() {
+    final List<StyleCopIssue> issues = Lists.newArrayList();
+    new StyleCopReportParser().parse(new File("src/test/resources/StyleCopReportParserTest/valid.xml"), new StyleCopIssueHandler() {
+      @Override
+      public void handle(StyleCopIssue issue) {
+        issues.add(issue);
+      }
+    });
+
+    assertThat(issues).hasSize(7);
+
+    StyleCopIssue issue = issues.get(6);
+    assertThat(issue.reportLine()).isEqualTo(8);
+    assertThat(issue.lineNumber()).isEqualTo(1);
+    assertThat(issue.source()).isEqualTo("MyLibrary\\Properties\\AssemblyInfo.cs");
+    assertThat(issue.rule()).isEqualTo("FileMustHaveHeader");
+  }
+
   @Test
   public void invalid_line() {
     thrown.expectMessage("Expected an integer instead of \"foo\" for the attribute \"LineNumber\"");
@@ -80,6 +109,19 @@ public class StyleCopReportParserTest {
     new StyleCopReportParser().parse(new File("src/test/resources/StyleCopReportParserTest/missing_source.xml"));
   }
 
+  @Test
+  public void malformed() throws Exception {
+    File file = tmp.newFile("malformed.xml");
+    Files.write("<StyleCopViolations>\n  <Violation LineNumber=\"1\" Source=\"Program.cs\">The file has", file, Charsets.UTF_8);
+
+    try {
+      new StyleCopReportParser().parse(file);
+      fail();
+    } catch (RuntimeException e) {
+      assertThat(e.getCause()).isInstanceOf(XMLStreamException.class);
+    }
+  }
+
   @Test
   public void non_existing() {
     thrown.expectMessage("java.io.FileNotFoundException");
@@ -0,0 +1,74 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopResultsCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test() throws Exception {
+    File settingsFile = tmp.newFile("StyleCop-settings.StyleCop");
+    Files.write("<StyleCopSettings Version=\"105\" />", settingsFile, Charsets.UTF_8);
+    File directory = new File(tmp.getRoot(), "StyleCop-cache");
+    StyleCopResultsCache cache = new StyleCopResultsCache(directory);
+    assertThat(cache.directory()).isEqualTo(directory);
+
+    cache.prepare(settingsFile);
+    assertThat(new File(directory, "settings.sha1").isFile()).isTrue();
+
+    File shardDirectory = cache.directory("0");
+    assertThat(shardDirectory.isDirectory()).isTrue();
+    File cacheFile = new File(shardDirectory, "StyleCop.Cache");
+    Files.write("<stylecopresultscache><version>12</version></stylecopresultscache>", cacheFile, Charsets.UTF_8);
+
+    cache.prepare(settingsFile);
+    assertThat(cacheFile.isFile()).isTrue();
+
+    Files.write("<StyleCopSettings Version=\"105\"><Analyzers /></StyleCopSettings>", settingsFile, Charsets.UTF_8);
+    cache.prepare(settingsFile);
+    assertThat(cacheFile.exists()).isFalse();
+    assertThat(new File(directory, "settings.sha1").isFile()).isTrue();
+
+    cache.directory("0");
+    Files.write("<stylecopresultscache><version>12</vers", cacheFile, Charsets.UTF_8);
+    cache.prepare(settingsFile);
+    assertThat(cacheFile.exists()).isFalse();
+
+    new File(directory, "settings.sha1").delete();
+    cache.directory("0");
+    Files.write("<stylecopresultscache />", cacheFile, Charsets.UTF_8);
+    cache.prepare(settingsFile);
+    assertThat(cacheFile.exists()).isFalse();
+    assertThat(new File(directory, "settings.sha1").isFile()).isTrue();
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.rules.RuleParam;
+import org.sonar.api.rules.XMLRuleParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopRuleCatalogTest {
+
+  private static final String RULES_XML = "src/main/rules/rules.xml";
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void built_catalog_matches_xml() {
+    InputStream catalog = getClass().getResourceAsStream(StyleCopRuleCatalog.RESOURCE);
+    assertThat(catalog).isNotNull();
+
+    assertSameRules(StyleCopRuleCatalog.read(catalog), xmlRules());
+  }
+
+  @Test
+  public void main() throws Exception {
+    File file = new File(tmp.getRoot(), "org/sonar/plugins/stylecop/rules.catalog");
+    StyleCopRuleCatalogCompiler.main(new String[] {RULES_XML, file.getAbsolutePath()});
+
+    assertSameRules(StyleCopRuleCatalog.read(new FileInputStream(file)), xmlRules());
+  }
+
+  @Test
+  public void without_description() throws Exception {
+    List<org.sonar.api.rules.Rule> expected = ImmutableList.of(org.sonar.api.rules.Rule.create("stylecop", "Rule1", "Rule 1").setConfigKey("Namespace#Rule1"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StyleCopRuleCatalogCompiler.write(expected, out);
+
+    List<org.sonar.api.rules.Rule> rules = StyleCopRuleCatalog.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertSameRules(rules, expected);
+    assertThat(rules.get(0).getDescription()).isNull();
+  }
+
+  @Test
+  public void unsupported_version() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported StyleCop rule catalog version: 1");
+
+    StyleCopRuleCatalog.read(new ByteArrayInputStream(new byte[] {0, 0, 0, 1}));
+  }
+
+  @Test
+  public void duplicate_key() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Missing or duplicate rule key: Rule1");
+
+    StyleCopRuleCatalogCompiler.validate(ImmutableList.of(
+      org.sonar.api.rules.Rule.create("stylecop", "Rule1", "Rule 1").setConfigKey("Namespace#Rule1"),
+      org.sonar.api.rules.Rule.create("stylecop", "Rule1", "Rule 1").setConfigKey("Namespace#Rule1")));
+  }
+
+  @Test
+  public void invalid_config_key() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Invalid config key for the rule Rule1: Rule1");
+
+    StyleCopRuleCatalogCompiler.validate(ImmutableList.of(org.sonar.api.rules.Rule.create("stylecop", "Rule1", "Rule 1").setConfigKey("Rule1")));
+  }
+
+  private static List<org.sonar.api.rules.Rule> xmlRules() {
+    return new XMLRuleParser().parse(new File(RULES_XML));
+  }
+
+  private static void assertSameRules(List<org.sonar.api.rules.Rule> actual, List<org.sonar.api.rules.Rule> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      org.sonar.api.rules.Rule actualRule = actual.get(i);
+      org.sonar.api.rules.Rule expectedRule = expected.get(i);
+      assertThat(actualRule.getKey()).isEqualTo(expectedRule.getKey());
+      assertThat(actualRule.getName()).isEqualTo(expectedRule.getName());
+      assertThat(actualRule.getConfigKey()).isEqualTo(expectedRule.getConfigKey());
+      assertThat(actualRule.getSeverity()).isEqualTo(expectedRule.getSeverity());
+      assertThat(actualRule.getCardinality()).isEqualTo(expectedRule.getCardinality());
+      assertThat(actualRule.getStatus()).isEqualTo(expectedRule.getStatus());
+      assertThat(actualRule.getDescription()).isEqualTo(expectedRule.getDescription());
+
+      assertThat(actualRule.getParams()).hasSize(expectedRule.getParams().size());
+      for (int j = 0; j < expectedRule.getParams().size(); j++) {
+        RuleParam actualParam = actualRule.getParams().get(j);
+        RuleParam expectedParam = expectedRule.getParams().get(j);
+        assertThat(actualParam.getKey()).isEqualTo(expectedParam.getKey());
+        assertThat(actualParam.getDescription()).isEqualTo(expectedParam.getDescription());
+        assertThat(actualParam.getType()).isEqualTo(expectedParam.getType());
+        assertThat(actualParam.getDefaultValue()).isEqualTo(expectedParam.getDefaultValue());
+      }
+    }
+  }
+
+}
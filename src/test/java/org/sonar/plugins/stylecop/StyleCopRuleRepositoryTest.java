@@ -21,7 +21,6 @@ package org.sonar.plugins.stylecop;
 
 import org.junit.Test;
 import org.sonar.api.rules.Rule;
-import org.sonar.api.rules.XMLRuleParser;
 import org.sonar.check.Cardinality;
 
 import java.util.List;
@@ -32,7 +31,7 @@ public class StyleCopRuleRepositoryTest {
 
   @Test
   public void test() {
-    StyleCopRuleRepository repo = new StyleCopRuleRepository(new XMLRuleParser());
+    StyleCopRuleRepository repo = new StyleCopRuleRepository();
     assertThat(repo.getLanguage()).isEqualTo("cs");
     assertThat(repo.getKey()).isEqualTo("stylecop");
 
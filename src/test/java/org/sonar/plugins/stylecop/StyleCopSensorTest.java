@@ -19,11 +19,19 @@
  */
 package org.sonar.plugins.stylecop;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import org.apache.commons.lang.SystemUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.config.Settings;
@@ -38,13 +46,25 @@ import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class StyleCopSensorTest {
@@ -52,6 +72,9 @@ public class StyleCopSensorTest {
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void shouldExecuteOnProject() {
     Settings settings = mock(Settings.class);
@@ -61,18 +84,16 @@ public class StyleCopSensorTest {
 
     Project project = mock(Project.class);
 
-    StyleCopSensor sensor = new StyleCopSensor(settings, profile, fileSystem, perspectives);
-
     when(fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(ImmutableList.<File>of());
-    assertThat(sensor.shouldExecuteOnProject(project)).isFalse();
+    assertThat(new StyleCopSensor(settings, profile, fileSystem, perspectives).shouldExecuteOnProject(project)).isFalse();
 
     when(fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(ImmutableList.of(mock(File.class)));
     when(profile.getActiveRulesByRepository("stylecop")).thenReturn(ImmutableList.<ActiveRule>of());
-    assertThat(sensor.shouldExecuteOnProject(project)).isFalse();
+    assertThat(new StyleCopSensor(settings, profile, fileSystem, perspectives).shouldExecuteOnProject(project)).isFalse();
 
     when(fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(ImmutableList.of(mock(File.class)));
     when(profile.getActiveRulesByRepository("stylecop")).thenReturn(ImmutableList.of(mock(ActiveRule.class)));
-    assertThat(sensor.shouldExecuteOnProject(project)).isTrue();
+    assertThat(new StyleCopSensor(settings, profile, fileSystem, perspectives).shouldExecuteOnProject(project)).isTrue();
   }
 
   @Test
@@ -93,6 +114,9 @@ public class StyleCopSensorTest {
 
     File workingDir = new File("target/StyleCopSensorTest/working-dir");
     when(fileSystem.workingDir()).thenReturn(workingDir);
+    List<File> sourceFiles = ImmutableList.of(
+      new File("Class1.cs"), new File("Class2.cs"), new File("Class3.cs"), new File("Class4.cs"), new File("Class5.cs"), new File("Class6.cs"));
+    when(fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(sourceFiles);
 
     org.sonar.api.resources.File fooSonarFileWithIssuable = mockSonarFile("foo");
     org.sonar.api.resources.File fooSonarFileWithoutIssuable = mockSonarFile("foo");
@@ -120,24 +144,32 @@ public class StyleCopSensorTest {
     StyleCopSettingsWriter settingsWriter = mock(StyleCopSettingsWriter.class);
     StyleCopMsBuildWriter msBuildWriter = mock(StyleCopMsBuildWriter.class);
 
-    StyleCopReportParser parser = mock(StyleCopReportParser.class);
-    when(parser.parse(new File(workingDir, "StyleCop-report.xml"))).thenReturn(
-      ImmutableList.of(
-        new StyleCopIssue(100, 1, "Class1.cs", "MyNamespace", "AccessModifierMustBeDeclared", "First message"),
-        new StyleCopIssue(200, 2, "Class2.cs", "MyNamespace", "AccessModifierMustBeDeclared", "Second message"),
-        new StyleCopIssue(300, 3, "Class3.cs", "MyNamespace", "AccessibleFieldsMustBeginWithUpperCaseLetter", "Third message"),
-        new StyleCopIssue(400, 4, "Class4.cs", "MyNamespace", "AccessModifierMustBeDeclared", "Fourth message"),
-        new StyleCopIssue(500, 5, "Class5.cs", "MyNamespace", "AccessModifierMustBeDeclared", "Fifth message"),
-        new StyleCopIssue(600, 6, "Class6.cs", "MyNamespace", "NonExistingRule", "Sixth message")));
+    StyleCopReportParser parser = mockParser(
+      new File(workingDir, "StyleCop-report.xml"),
+      new StyleCopIssue(100, 1, "Class1.cs", "MyNamespace", "AccessModifierMustBeDeclared", "First message"),
+      new StyleCopIssue(200, 2, "Class2.cs", "MyNamespace", "AccessModifierMustBeDeclared", "Second message"),
+      new StyleCopIssue(300, 3, "Class3.cs", "MyNamespace", "AccessibleFieldsMustBeginWithUpperCaseLetter", "Third message"),
+      new StyleCopIssue(400, 4, "Class4.cs", "MyNamespace", "AccessModifierMustBeDeclared", "Fourth message"),
+      new StyleCopIssue(500, 5, "Class5.cs", "MyNamespace", "AccessModifierMustBeDeclared", "Fifth message"),
+      new StyleCopIssue(600, 6, "Class6.cs", "MyNamespace", "NonExistingRule", "Sixth message"));
 
+    assertThat(sensor.shouldExecuteOnProject(mock(Project.class))).isTrue();
     sensor.analyse(context, fileProvider, styleCopConf, settingsWriter, msBuildWriter, parser, executor);
 
+    // The indexed source files are enumerated once, and analyzed as explicit items
+    verify(fileSystem, times(1)).files(Mockito.any(FileQuery.class));
+    verify(msBuildWriter).write(new File("StyleCop.exe"), new File("MyProject.csproj"), new File(workingDir, "StyleCop-settings.StyleCop"),
+      new File(workingDir, "StyleCop-report.xml"), sourceFiles, null, new File(workingDir, "StyleCop-msbuild.proj"));
+
     verify(settingsWriter).write(
       ImmutableList.of("MyNamespace#AccessModifierMustBeDeclared", "MyNamespace#AccessibleFieldsMustBeginWithUpperCaseLetter"),
       Collections.<String>emptyList(),
       new File(workingDir, "StyleCop-settings.StyleCop"));
     verify(executor).execute(
-      "MSBuild.exe", new File(workingDir, "StyleCop-msbuild.proj").getAbsolutePath(), 60,
+      "MSBuild.exe",
+      new StyleCopJob(new File(workingDir, "StyleCop-msbuild.proj"), new File(workingDir, "StyleCop-settings.StyleCop"),
+        new File(workingDir, "StyleCop-report.xml"), sourceFiles),
+      60,
       "StyleCop's execution timed out. Increase the timeout by setting \"sonar.stylecop.timeoutMinutes\" property.");
 
     verify(issuable).addIssue(issue1);
@@ -148,6 +180,539 @@ public class StyleCopSensorTest {
 
     verify(issueBuilder2).line(3);
     verify(issueBuilder2).message("Third message");
+
+    String statistics = Files.toString(new File(workingDir, "StyleCop-statistics.json"), Charsets.UTF_8);
+    assertThat(statistics).contains("\"parsed\": 6, \"replayed\": 0, \"imported\": 2, "
+      + "\"skippedNotInSonarQube\": 1, \"skippedNoIssuable\": 2, \"skippedInactiveRule\": 1");
+  }
+
+  @Test
+  public void analyze_shards() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.shards()).thenReturn(3);
+
+    analysis.analyse(new StyleCopExecutor());
+
+    assertThat(new File(analysis.workingDir, "StyleCop-report-0.xml").isFile()).isTrue();
+    assertThat(new File(analysis.workingDir, "StyleCop-report-2.xml").isFile()).isTrue();
+    assertThat(new File(analysis.workingDir, "StyleCop-report-3.xml").exists()).isFalse();
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+    for (File file : analysis.files) {
+      verify(analysis.fileProvider).fromIOFile(file);
+    }
+  }
+
+  @Test
+  public void analyze_with_issue_cache() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.issueCache()).thenReturn(true);
+    StyleCopExecutor executor = Mockito.spy(new StyleCopExecutor());
+    analysis.analyse(executor);
+    verify(executor).execute(Mockito.anyString(), Mockito.any(StyleCopJob.class), Mockito.anyInt(), Mockito.anyString());
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+
+    analysis = new FakeMsBuildAnalysis(analysis);
+    executor = mock(StyleCopExecutor.class);
+    analysis.analyse(executor);
+    verifyZeroInteractions(executor);
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+
+    Files.append("// Changed\n", analysis.files.get(3), Charsets.UTF_8);
+    analysis = new FakeMsBuildAnalysis(analysis);
+    analysis.analyse(new StyleCopExecutor());
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+    assertThat(Files.toString(new File(analysis.workingDir, "StyleCop-msbuild.proj"), Charsets.UTF_8))
+      .contains("Class3.cs")
+      .doesNotContain("Class4.cs");
+  }
+
+  @Test
+  public void issue_cache_dropped_with_another_stylecop_or_msbuild() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.issueCache()).thenReturn(true);
+    analysis.analyse(new StyleCopExecutor());
+
+    File styleCopDll = tmp.newFile("StyleCop.dll");
+    Files.write("Upgraded", styleCopDll, Charsets.UTF_8);
+    when(analysis.styleCopConf.styleCopDllPath()).thenReturn(styleCopDll.getAbsolutePath());
+    analysis = new FakeMsBuildAnalysis(analysis);
+    StyleCopExecutor executor = Mockito.spy(new StyleCopExecutor());
+    analysis.analyse(executor);
+    verify(executor).execute(Mockito.anyString(), Mockito.any(StyleCopJob.class), Mockito.anyInt(), Mockito.anyString());
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+
+    File msBuild = tmp.newFile("MSBuild.sh");
+    Files.copy(new File(analysis.styleCopConf.msBuildPath()), msBuild);
+    msBuild.setExecutable(true);
+    when(analysis.styleCopConf.msBuildPath()).thenReturn(msBuild.getAbsolutePath());
+    analysis = new FakeMsBuildAnalysis(analysis);
+    executor = Mockito.spy(new StyleCopExecutor());
+    analysis.analyse(executor);
+    verify(executor).execute(Mockito.anyString(), Mockito.any(StyleCopJob.class), Mockito.anyInt(), Mockito.anyString());
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+  }
+
+  @Test
+  public void analyze_with_issue_cache_and_quality_profile_changes() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    ActiveRule documentationRule = mock(ActiveRule.class);
+    when(documentationRule.getRuleKey()).thenReturn("FileMustHaveHeader");
+    when(documentationRule.getConfigKey()).thenReturn("StyleCop.CSharp.DocumentationRules#FileMustHaveHeader");
+    ActiveRule layoutRule = mock(ActiveRule.class);
+    when(layoutRule.getRuleKey()).thenReturn("CurlyBracketsMustNotBeOmitted");
+    when(layoutRule.getConfigKey()).thenReturn("StyleCop.CSharp.LayoutRules#CurlyBracketsMustNotBeOmitted");
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.issueCache()).thenReturn(true);
+    when(analysis.profile.getActiveRulesByRepository("stylecop")).thenReturn(ImmutableList.of(documentationRule));
+    analysis.analyse(new StyleCopExecutor());
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+
+    // Only the newly activated rule is executed, on the unchanged files: the fake MSBuild reports the same violations again
+    analysis = new FakeMsBuildAnalysis(analysis);
+    when(analysis.profile.getActiveRulesByRepository("stylecop")).thenReturn(ImmutableList.of(documentationRule, layoutRule));
+    analysis.analyse(new StyleCopExecutor());
+    verify(analysis.issuable, times(20)).addIssue(analysis.issue);
+    assertThat(Files.toString(new File(analysis.workingDir, "StyleCop-settings-added.StyleCop"), Charsets.UTF_8))
+      .contains("StyleCop.CSharp.LayoutRules")
+      .doesNotContain("StyleCop.CSharp.DocumentationRules");
+
+    // All the cached issues belong to the deactivated rule
+    analysis = new FakeMsBuildAnalysis(analysis);
+    when(analysis.profile.getActiveRulesByRepository("stylecop")).thenReturn(ImmutableList.of(layoutRule));
+    StyleCopExecutor executor = mock(StyleCopExecutor.class);
+    analysis.analyse(executor);
+    verifyZeroInteractions(executor);
+    verify(analysis.issuable, Mockito.never()).addIssue(analysis.issue);
+  }
+
+  @Test
+  public void analyze_without_generated_code() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.excludeGeneratedCode()).thenReturn(true);
+    Files.write("// <auto-generated />\n", analysis.files.get(3), Charsets.UTF_8);
+
+    analysis.analyse(new StyleCopExecutor());
+
+    verify(analysis.issuable, times(9)).addIssue(analysis.issue);
+    assertThat(Files.toString(new File(analysis.workingDir, "StyleCop-msbuild.proj"), Charsets.UTF_8))
+      .contains("Class2.cs")
+      .doesNotContain("Class3.cs");
+  }
+
+  @Test
+  public void analyze_analyzer_groups() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.analyzerGroups()).thenReturn(2);
+    ActiveRule documentationRule = mock(ActiveRule.class);
+    when(documentationRule.getRuleKey()).thenReturn("FileMustHaveHeader");
+    when(documentationRule.getConfigKey()).thenReturn("StyleCop.CSharp.DocumentationRules#FileMustHaveHeader");
+    ActiveRule layoutRule = mock(ActiveRule.class);
+    when(layoutRule.getRuleKey()).thenReturn("CurlyBracketsMustNotBeOmitted");
+    when(layoutRule.getConfigKey()).thenReturn("StyleCop.CSharp.LayoutRules#CurlyBracketsMustNotBeOmitted");
+    when(analysis.profile.getActiveRulesByRepository("stylecop")).thenReturn(ImmutableList.of(documentationRule, layoutRule));
+
+    analysis.analyse(new StyleCopExecutor());
+
+    assertThat(Files.toString(new File(analysis.workingDir, "StyleCop-settings-0.StyleCop"), Charsets.UTF_8))
+      .contains("StyleCop.CSharp.DocumentationRules")
+      .doesNotContain("StyleCop.CSharp.LayoutRules");
+    assertThat(Files.toString(new File(analysis.workingDir, "StyleCop-settings-1.StyleCop"), Charsets.UTF_8))
+      .contains("StyleCop.CSharp.LayoutRules")
+      .doesNotContain("StyleCop.CSharp.DocumentationRules");
+    assertThat(Files.toString(new File(analysis.workingDir, "StyleCop-msbuild-0-1.proj"), Charsets.UTF_8))
+      .contains(new File(analysis.workingDir, "StyleCop-settings-1.StyleCop").getAbsolutePath());
+
+    // The fake MSBuild reports the same violation whatever the rules, once per group
+    assertThat(new File(analysis.workingDir, "StyleCop-report-0-0.xml").isFile()).isTrue();
+    assertThat(new File(analysis.workingDir, "StyleCop-report-0-1.xml").isFile()).isTrue();
+    verify(analysis.issuable, times(20)).addIssue(analysis.issue);
+  }
+
+  @Test
+  public void analyze_and_profile_analyzers() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.profileAnalyzers()).thenReturn(true);
+
+    analysis.analyse(new StyleCopExecutor());
+
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+    assertThat(Files.toString(new File(analysis.workingDir, "StyleCop-profile.json"), Charsets.UTF_8))
+      .contains("{\"namespace\": \"MyNamespace\", \"seconds\": ")
+      .contains("\"files\": 10, ")
+      .contains("\"violations\": 10}");
+  }
+
+  @Test
+  public void analyze_grouped_by_file() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis analysis = new FakeMsBuildAnalysis(10);
+    when(analysis.styleCopConf.shards()).thenReturn(2);
+    when(analysis.styleCopConf.importGroupingThreshold()).thenReturn(3);
+
+    analysis.analyse(new StyleCopExecutor());
+
+    verify(analysis.issuable, times(10)).addIssue(analysis.issue);
+    assertThat(new File(analysis.workingDir, "StyleCop-spill").exists()).isFalse();
+  }
+
+  @Test
+  public void analyze_batch() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    String msBuildPath = "src/test/resources/StyleCopSensorTest/BatchMSBuild.sh";
+    FakeMsBuildAnalysis module1 = new FakeMsBuildAnalysis("module1-", 3, msBuildPath);
+    FakeMsBuildAnalysis module2 = new FakeMsBuildAnalysis("module2-", 5, msBuildPath);
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(module1.projectFile, module2.projectFile));
+    for (FakeMsBuildAnalysis module : ImmutableList.of(module1, module2)) {
+      module.batch = batch;
+      when(module.styleCopConf.batch()).thenReturn(true);
+    }
+
+    StyleCopExecutor executor = Mockito.spy(new StyleCopExecutor());
+    module1.analyse(executor);
+    verify(executor).execute(Mockito.eq(new File(msBuildPath).getAbsolutePath()),
+      Mockito.eq(new File(module1.workingDir, "StyleCop-msbuild-batch.proj").getAbsolutePath()), Mockito.eq(1), Mockito.anyString());
+    verify(module1.issuable, times(3)).addIssue(module1.issue);
+
+    executor = mock(StyleCopExecutor.class);
+    module2.analyse(executor);
+    verifyZeroInteractions(executor);
+    verify(module2.issuable, times(5)).addIssue(module2.issue);
+  }
+
+  @Test
+  public void analyze_alone_the_module_whose_project_uses_wildcards() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    String msBuildPath = "src/test/resources/StyleCopSensorTest/BatchMSBuild.sh";
+    FakeMsBuildAnalysis module1 = new FakeMsBuildAnalysis("module1-", 3, msBuildPath);
+    FakeMsBuildAnalysis module2 = new FakeMsBuildAnalysis("module2-", 5, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    Files.write("<Project><ItemGroup><Compile Include=\"*.cs\" /></ItemGroup></Project>", module2.projectFile, Charsets.UTF_8);
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(module1.projectFile, module2.projectFile));
+    for (FakeMsBuildAnalysis module : ImmutableList.of(module1, module2)) {
+      module.batch = batch;
+      when(module.styleCopConf.batch()).thenReturn(true);
+    }
+
+    module1.analyse(new StyleCopExecutor());
+    verify(module1.issuable, times(3)).addIssue(module1.issue);
+    assertThat(Files.toString(new File(module1.workingDir, "StyleCop-msbuild-batch.proj"), Charsets.UTF_8))
+      .contains(module1.projectFile.getAbsolutePath())
+      .doesNotContain(module2.projectFile.getAbsolutePath());
+
+    StyleCopExecutor executor = Mockito.spy(new StyleCopExecutor());
+    module2.analyse(executor);
+    verify(executor).execute(Mockito.anyString(), Mockito.any(StyleCopJob.class), Mockito.anyInt(), Mockito.anyString());
+    verify(module2.issuable, times(5)).addIssue(module2.issue);
+  }
+
+  @Test
+  public void analyze_batch_incremental() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    String msBuildPath = "src/test/resources/StyleCopSensorTest/BatchMSBuild.sh";
+    FakeMsBuildAnalysis module1 = new FakeMsBuildAnalysis("module1-", 3, msBuildPath);
+    FakeMsBuildAnalysis module2 = new FakeMsBuildAnalysis("module2-", 5, msBuildPath);
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(module1.projectFile, module2.projectFile));
+    for (FakeMsBuildAnalysis module : ImmutableList.of(module1, module2)) {
+      module.batch = batch;
+      when(module.styleCopConf.batch()).thenReturn(true);
+      when(module.styleCopConf.incremental()).thenReturn(true);
+    }
+
+    module1.analyse(new StyleCopExecutor());
+    assertThat(Files.toString(new File(module1.workingDir, "StyleCop-msbuild-batch.proj"), Charsets.UTF_8))
+      .contains("CacheResults=\"true\"")
+      .doesNotContain("CacheResults=\"false\"");
+    verify(module1.issuable, times(3)).addIssue(module1.issue);
+
+    module2.analyse(mock(StyleCopExecutor.class));
+    verify(module2.issuable, times(5)).addIssue(module2.issue);
+  }
+
+  @Test
+  public void analyze_shared_files_once() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis module1 = new FakeMsBuildAnalysis("module1-", 3, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    FakeMsBuildAnalysis module2 = new FakeMsBuildAnalysis("module2-", 2, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    File sharedFile = module1.files.get(0);
+    when(module2.fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(ImmutableList.<File>builder().addAll(module2.files).add(sharedFile).build());
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(module1.projectFile, module2.projectFile));
+    for (FakeMsBuildAnalysis module : ImmutableList.of(module1, module2)) {
+      module.batch = batch;
+      when(module.styleCopConf.analyzeSharedFilesOnce()).thenReturn(true);
+    }
+
+    module1.analyse(new StyleCopExecutor());
+    verify(module1.issuable, times(3)).addIssue(module1.issue);
+
+    module2.analyse(new StyleCopExecutor());
+    verify(module2.issuable, times(2)).addIssue(module2.issue);
+    assertThat(Files.toString(new File(module2.workingDir, "StyleCop-msbuild.proj"), Charsets.UTF_8)).doesNotContain(sharedFile.getAbsolutePath());
+  }
+
+  @Test
+  public void issues_of_shared_files_reported_on_the_first_module_only() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis module1 = new FakeMsBuildAnalysis("module1-", 3, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    FakeMsBuildAnalysis module2 = new FakeMsBuildAnalysis("module2-", 2, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    File sharedFile = module1.files.get(0);
+    when(module2.fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(ImmutableList.<File>builder().add(sharedFile).addAll(module2.files).build());
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(module1.projectFile, module2.projectFile));
+    for (FakeMsBuildAnalysis module : ImmutableList.of(module1, module2)) {
+      module.batch = batch;
+      when(module.styleCopConf.analyzeSharedFilesOnce()).thenReturn(true);
+    }
+
+    // The order of the modules, not the order of the files, decides
+    module1.analyse(new StyleCopExecutor());
+    module2.analyse(new StyleCopExecutor());
+    verify(module1.fileProvider).fromIOFile(sharedFile);
+    verify(module2.fileProvider, Mockito.never()).fromIOFile(sharedFile);
+    for (File file : module2.files) {
+      verify(module2.fileProvider).fromIOFile(file);
+    }
+  }
+
+  @Test
+  public void issues_of_shared_files_reported_on_each_module_by_default() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    FakeMsBuildAnalysis module1 = new FakeMsBuildAnalysis("module1-", 3, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    FakeMsBuildAnalysis module2 = new FakeMsBuildAnalysis("module2-", 2, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    File sharedFile = module1.files.get(0);
+    when(module2.fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(ImmutableList.<File>builder().add(sharedFile).addAll(module2.files).build());
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(module1.projectFile, module2.projectFile));
+    module1.batch = batch;
+    module2.batch = batch;
+
+    module1.analyse(new StyleCopExecutor());
+    module2.analyse(new StyleCopExecutor());
+    verify(module1.fileProvider).fromIOFile(sharedFile);
+    verify(module2.fileProvider).fromIOFile(sharedFile);
+    verify(module2.issuable, times(3)).addIssue(module2.issue);
+  }
+
+  @Test
+  public void analyze_batch_with_shared_files() throws Exception {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    String msBuildPath = "src/test/resources/StyleCopSensorTest/BatchMSBuild.sh";
+    FakeMsBuildAnalysis module1 = new FakeMsBuildAnalysis("module1-", 3, msBuildPath);
+    FakeMsBuildAnalysis module2 = new FakeMsBuildAnalysis("module2-", 5, msBuildPath);
+    // The first file of the second module's folder is linked into the first module's project
+    when(module1.fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(
+      ImmutableList.<File>builder().addAll(module1.files).add(module2.files.get(0)).build());
+    StyleCopBatch batch = new StyleCopBatch(ImmutableList.of(module1.projectFile, module2.projectFile));
+    for (FakeMsBuildAnalysis module : ImmutableList.of(module1, module2)) {
+      module.batch = batch;
+      when(module.styleCopConf.batch()).thenReturn(true);
+      when(module.styleCopConf.analyzeSharedFilesOnce()).thenReturn(true);
+    }
+
+    module1.analyse(new StyleCopExecutor());
+    // The batch analyzes the linked file only with the first module's project
+    assertThat(Files.toString(new File(module1.workingDir, "StyleCop-report-batch-1.xml"), Charsets.UTF_8))
+      .doesNotContain(module2.files.get(0).getAbsolutePath());
+    module2.analyse(mock(StyleCopExecutor.class));
+    verify(module2.issuable, times(4)).addIssue(module2.issue);
+    assertThat(Files.toString(new File(module2.workingDir, "StyleCop-statistics.json"), Charsets.UTF_8))
+      .contains("\"imported\": 4, ");
+  }
+
+  private class FakeMsBuildAnalysis {
+
+    private final File workingDir;
+    private final File projectFile;
+    private final List<File> files;
+    private final StyleCopConfiguration styleCopConf;
+    private final RulesProfile profile = mock(RulesProfile.class);
+    private final ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+    private final FileProvider fileProvider = mock(FileProvider.class);
+    private final ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+    private final Issuable issuable = mock(Issuable.class);
+    private final Issue issue = mock(Issue.class);
+    private StyleCopBatch batch;
+
+    public FakeMsBuildAnalysis(int fileCount) throws Exception {
+      this("", fileCount, "src/test/resources/StyleCopSensorTest/MSBuild.sh");
+    }
+
+    public FakeMsBuildAnalysis(String module, int fileCount, String msBuildPath) throws Exception {
+      workingDir = tmp.newFolder(module + "working-dir");
+      File projectDir = tmp.newFolder(module + "project");
+      projectFile = new File(projectDir, "MyProject.csproj");
+      StringBuilder project = new StringBuilder("<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">\n  <ItemGroup>\n");
+      ImmutableList.Builder<File> builder = ImmutableList.builder();
+      for (int i = 0; i < fileCount; i++) {
+        File file = new File(projectDir, "Class" + i + ".cs");
+        Files.write(Strings.repeat("// Class" + i + "\n", i + 1), file, Charsets.UTF_8);
+        builder.add(file);
+        project.append("    <Compile Include=\"Class").append(i).append(".cs\" />\n");
+      }
+      files = builder.build();
+      Files.write(project.append("  </ItemGroup>\n</Project>\n"), projectFile, Charsets.UTF_8);
+      styleCopConf = mockStyleCopConf(new File(msBuildPath).getAbsolutePath(), "StyleCop.dll", projectFile.getAbsolutePath(), 1);
+      setUp();
+    }
+
+    public FakeMsBuildAnalysis(FakeMsBuildAnalysis previous) {
+      workingDir = previous.workingDir;
+      projectFile = previous.projectFile;
+      files = previous.files;
+      styleCopConf = previous.styleCopConf;
+      setUp();
+    }
+
+    private void setUp() {
+      List<ActiveRule> activeRules = mockActiveRules("FileMustHaveHeader");
+      when(profile.getActiveRulesByRepository("stylecop")).thenReturn(activeRules);
+      when(fileSystem.workingDir()).thenReturn(workingDir);
+      when(fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(files);
+
+      org.sonar.api.resources.File sonarFile = mockSonarFile("cs");
+      when(fileProvider.fromIOFile(Mockito.any(File.class))).thenReturn(sonarFile);
+      when(perspectives.as(Issuable.class, sonarFile)).thenReturn(issuable);
+      IssueBuilder issueBuilder = mockIssueBuilder();
+      when(issueBuilder.build()).thenReturn(issue);
+      when(issuable.newIssueBuilder()).thenReturn(issueBuilder);
+    }
+
+    public void analyse(StyleCopExecutor executor) {
+      new StyleCopSensor(mock(Settings.class), profile, fileSystem, perspectives, null, batch).analyse(
+        mock(SensorContext.class), fileProvider, styleCopConf,
+        new StyleCopSettingsWriter(), new StyleCopMsBuildWriter(), new StyleCopReportParser(), executor);
+    }
+
+  }
+
+  @Test
+  public void analyze_large_report_with_small_heap() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    int violations = 2000000;
+
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(workingDir, "StyleCop-report.xml")), Charsets.UTF_8));
+    try {
+      writer.write("<StyleCopViolations>\n");
+      for (int i = 0; i < violations; i++) {
+        writer.write("  <Violation LineNumber=\"" + (i % 1000 + 1) + "\" Source=\"Class" + (i % 100) + ".cs\" "
+          + "RuleNamespace=\"MyNamespace\" Rule=\"AccessModifierMustBeDeclared\">Message " + i + "</Violation>\n");
+      }
+      writer.write("</StyleCopViolations>\n");
+    } finally {
+      writer.close();
+    }
+
+    Process process = new ProcessBuilder(
+      new File(System.getProperty("java.home"), "bin/java").getAbsolutePath(),
+      "-Xmx24m",
+      "-cp", System.getProperty("java.class.path"),
+      LargeReportImport.class.getName(),
+      workingDir.getAbsolutePath())
+      .redirectErrorStream(true)
+      .start();
+    String output = CharStreams.toString(new InputStreamReader(process.getInputStream(), Charsets.UTF_8));
+
+    assertThat(process.waitFor()).as(output).isEqualTo(0);
+    assertThat(output).contains("Imported " + violations + " issues");
+  }
+
+  public static class LargeReportImport {
+
+    public static void main(String[] args) {
+      File workingDir = new File(args[0]);
+
+      RulesProfile profile = mock(RulesProfile.class);
+      List<ActiveRule> activeRules = mockActiveRules("AccessModifierMustBeDeclared");
+      when(profile.getActiveRulesByRepository("stylecop")).thenReturn(activeRules);
+      ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+      when(fileSystem.workingDir()).thenReturn(workingDir);
+      ImmutableList.Builder<File> files = ImmutableList.builder();
+      for (int i = 0; i < 100; i++) {
+        files.add(new File("Class" + i + ".cs"));
+      }
+      when(fileSystem.files(Mockito.any(FileQuery.class))).thenReturn(files.build());
+
+      final org.sonar.api.resources.File sonarFile = new org.sonar.api.resources.File("Class.cs");
+      FileProvider fileProvider = new FileProvider(mock(Project.class), mock(SensorContext.class)) {
+        @Override
+        public org.sonar.api.resources.File fromIOFile(File file) {
+          return sonarFile;
+        }
+      };
+
+      final AtomicInteger importedIssues = new AtomicInteger();
+      final Issuable issuable = countingIssuable(importedIssues);
+      ResourcePerspectives perspectives = (ResourcePerspectives) Proxy.newProxyInstance(
+        ResourcePerspectives.class.getClassLoader(), new Class[] {ResourcePerspectives.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return issuable;
+          }
+        });
+
+      new StyleCopSensor(mock(Settings.class), profile, fileSystem, perspectives).analyse(
+        mock(SensorContext.class), fileProvider,
+        mockStyleCopConf("MSBuild.exe", "StyleCop.dll", "MyProject.csproj", 60),
+        mock(StyleCopSettingsWriter.class), mock(StyleCopMsBuildWriter.class), new StyleCopReportParser(), mock(StyleCopExecutor.class));
+
+      System.out.println("Imported " + importedIssues.get() + " issues");
+    }
+
+    private static Issuable countingIssuable(final AtomicInteger importedIssues) {
+      final IssueBuilder issueBuilder = (IssueBuilder) Proxy.newProxyInstance(
+        IssueBuilder.class.getClassLoader(), new Class[] {IssueBuilder.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return "build".equals(method.getName()) ? null : proxy;
+          }
+        });
+
+      return (Issuable) Proxy.newProxyInstance(
+        Issuable.class.getClassLoader(), new Class[] {Issuable.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("addIssue".equals(method.getName())) {
+              importedIssues.incrementAndGet();
+              return true;
+            }
+            return issueBuilder;
+          }
+        });
+    }
+
+  }
+
+  private static StyleCopReportParser mockParser(File reportFile, final StyleCopIssue... issues) {
+    StyleCopReportParser parser = mock(StyleCopReportParser.class);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        StyleCopIssueHandler handler = (StyleCopIssueHandler) invocation.getArguments()[1];
+        for (StyleCopIssue issue : issues) {
+          handler.handle(issue);
+        }
+        return null;
+      }
+    }).when(parser).parse(Mockito.eq(reportFile), Mockito.any(StyleCopIssueHandler.class));
+    return parser;
   }
 
   private static org.sonar.api.resources.File mockSonarFile(String languageKey) {
@@ -183,6 +748,7 @@ public class StyleCopSensorTest {
     when(styleCopConf.styleCopDllPath()).thenReturn(styleCopDllPath);
     when(styleCopConf.projectFilePath()).thenReturn(projectFilePath);
     when(styleCopConf.timeoutMinutes()).thenReturn(timeoutMinutes);
+    when(styleCopConf.shards()).thenReturn(1);
     when(styleCopConf.ignoredHungarianPrefixes()).thenReturn(Collections.<String>emptyList());
     return styleCopConf;
   }
@@ -90,4 +90,20 @@ public class StyleCopSettingsWriterTest {
       .doesNotContain("CollectionProperty");
   }
 
+  @Test
+  public void unchanged_contents_are_not_rewritten() throws Exception {
+    File file = tmp.newFile();
+
+    new StyleCopSettingsWriter().write(ImmutableList.of("foo#A"), ImmutableList.of("aa"), file);
+    file.setLastModified(1000000000000L);
+    long lastModified = file.lastModified();
+
+    new StyleCopSettingsWriter().write(ImmutableList.of("foo#A"), ImmutableList.of("aa"), file);
+    assertThat(file.lastModified()).isEqualTo(lastModified);
+
+    new StyleCopSettingsWriter().write(ImmutableList.of("foo#A", "foo#B"), ImmutableList.of("aa"), file);
+    assertThat(file.lastModified()).isNotEqualTo(lastModified);
+    assertThat(Files.toString(file, Charsets.UTF_8)).contains("\"B\"");
+  }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StyleCopShardedExecutionTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void shards() throws Exception {
+    File a = tmp.newFile("a.cs");
+    Files.write(Strings.repeat("a", 300), a, Charsets.UTF_8);
+    File b = tmp.newFile("b.cs");
+    Files.write(Strings.repeat("b", 200), b, Charsets.UTF_8);
+    File c = tmp.newFile("c.cs");
+    Files.write(Strings.repeat("c", 100), c, Charsets.UTF_8);
+    File d = tmp.newFile("d.cs");
+    Files.write(Strings.repeat("d", 100), d, Charsets.UTF_8);
+
+    List<List<File>> shards = StyleCopShardedExecution.shards(ImmutableList.of(c, a, d, b), 2);
+    assertThat(shards).hasSize(2);
+    assertThat(shards.get(0)).containsExactly(a, d);
+    assertThat(shards.get(1)).containsExactly(b, c);
+
+    assertThat(StyleCopShardedExecution.shards(ImmutableList.of(c, a, d, b), 10)).hasSize(4);
+    assertThat(StyleCopShardedExecution.shards(ImmutableList.<File>of(), 3)).isEmpty();
+  }
+
+  @Test
+  public void analyzerGroups() {
+    List<String> ruleConfigKeys = ImmutableList.of("A#1", "B#2", "B#3", "C#4", "B#5", "C#6", "D#7");
+
+    assertThat(StyleCopShardedExecution.analyzerGroups(ruleConfigKeys, 1)).containsExactly(
+      ImmutableList.of("B#2", "B#3", "B#5", "C#4", "C#6", "A#1", "D#7"));
+    assertThat(StyleCopShardedExecution.analyzerGroups(ruleConfigKeys, 2)).containsExactly(
+      ImmutableList.of("B#2", "B#3", "B#5", "D#7"),
+      ImmutableList.of("C#4", "C#6", "A#1"));
+    assertThat(StyleCopShardedExecution.analyzerGroups(ruleConfigKeys, 3)).containsExactly(
+      ImmutableList.of("B#2", "B#3", "B#5"),
+      ImmutableList.of("C#4", "C#6"),
+      ImmutableList.of("A#1", "D#7"));
+    assertThat(StyleCopShardedExecution.analyzerGroups(ruleConfigKeys, 10)).hasSize(4);
+
+    // Neither a key without namespace nor a namespace prefixing another one gets in the way
+    assertThat(StyleCopShardedExecution.analyzerGroups(ImmutableList.of("A#1", "NoNamespace", "AB#2"), 2)).containsExactly(
+      ImmutableList.of("A#1"),
+      ImmutableList.of("AB#2"));
+  }
+
+}
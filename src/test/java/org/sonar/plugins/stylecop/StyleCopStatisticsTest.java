@@ -0,0 +1,87 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.stylecop.StyleCopStatistics.Counter;
+import org.sonar.plugins.stylecop.StyleCopStatistics.Phase;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class StyleCopStatisticsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void phases_and_counters() {
+    StyleCopStatistics statistics = new StyleCopStatistics();
+
+    statistics.add(Phase.EXECUTION, TimeUnit.MILLISECONDS.toNanos(1500));
+    statistics.add(Phase.PARSING, TimeUnit.MILLISECONDS.toNanos(200));
+    statistics.add(Phase.PARSING, TimeUnit.MILLISECONDS.toNanos(300));
+    statistics.increment(Counter.SKIPPED_INACTIVE_RULE);
+
+    StyleCopIssueHandler delegate = mock(StyleCopIssueHandler.class);
+    StyleCopIssueHandler handler = statistics.counting(Counter.PARSED, delegate);
+    StyleCopIssue issue = new StyleCopIssue(1, 1, "Class1.cs", "MyNamespace", "MyRule", "Message");
+    handler.handle(issue);
+    handler.handle(issue);
+    verify(delegate, times(2)).handle(issue);
+
+    assertThat(statistics.nanos(Phase.PARSING)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(statistics.count(Counter.PARSED)).isEqualTo(2);
+    assertThat(statistics.violationsPerSecond()).isEqualTo(4);
+
+    statistics.stop();
+    assertThat(statistics.summary())
+      .startsWith("StyleCop analysis took ")
+      .contains("(settings: 0 ms, index: 0 ms, issueCache: 0 ms, execution: 1500 ms, parsing: 500 ms, resolution: 0 ms, addIssue: 0 ms), ")
+      .endsWith("2 violations parsed (4/s), 0 replayed, 0 imported, 0 skipped as not in SonarQube, 0 skipped without issuable, 1 skipped as inactive rule, 0 skipped as shared with another module");
+  }
+
+  @Test
+  public void json() throws Exception {
+    StyleCopStatistics statistics = new StyleCopStatistics();
+    statistics.add(Phase.SETTINGS, TimeUnit.MILLISECONDS.toNanos(12));
+    statistics.increment(Counter.IMPORTED);
+    statistics.stop();
+
+    File file = new File(tmp.getRoot(), "sub/StyleCop-statistics.json");
+    statistics.write(file);
+
+    assertThat(Files.toString(file, Charsets.UTF_8))
+      .contains("\"totalMs\": " + statistics.totalMillis() + ",\n")
+      .contains("\"phasesMs\": {\"settings\": 12, \"index\": 0, \"issueCache\": 0, \"execution\": 0, \"parsing\": 0, \"resolution\": 0, \"addIssue\": 0},\n")
+      .contains("\"counts\": {\"parsed\": 0, \"replayed\": 0, \"imported\": 1, \"skippedNotInSonarQube\": 0, \"skippedNoIssuable\": 0, \"skippedInactiveRule\": 0, \"skippedSharedFile\": 0},\n")
+      .endsWith("\"violationsPerSecond\": 0\n}\n");
+  }
+
+}
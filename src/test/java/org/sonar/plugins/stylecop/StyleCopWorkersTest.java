@@ -0,0 +1,141 @@
+/*
+ * SonarQube StyleCop Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.stylecop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.SonarException;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class StyleCopWorkersTest {
+
+  private static final String WORKER = new File("src/test/resources/StyleCopWorkersTest/Worker.sh").getAbsolutePath();
+  private static final String FAKE_MSBUILD = new File("src/test/resources/StyleCopSensorTest/MSBuild.sh").getAbsolutePath();
+  private static final String STALLING_MSBUILD = new File("src/test/resources/StyleCopExecutorTest/Stalling.sh").getAbsolutePath();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private StyleCopWorkers workers;
+
+  @Before
+  public void setUp() {
+    assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+
+    workers = new StyleCopWorkers(ImmutableList.of(WORKER));
+  }
+
+  @After
+  public void tearDown() {
+    if (workers != null) {
+      workers.stop();
+    }
+  }
+
+  @Test
+  public void jobs_are_executed_by_the_same_host() throws Exception {
+    StyleCopWorkers.Worker worker = workers.acquire(FAKE_MSBUILD);
+    workers.release(worker);
+
+    StyleCopExecutor executor = new StyleCopExecutor(0, TimeUnit.SECONDS, workers);
+    executor.execute(FAKE_MSBUILD, msBuildFile(0).getAbsolutePath(), 1, "timeout");
+    executor.execute(FAKE_MSBUILD, msBuildFile(1).getAbsolutePath(), 1, "timeout");
+
+    assertThat(Files.toString(new File(tmp.getRoot(), "StyleCop-msbuild-0.proj.xml"), Charsets.UTF_8)).contains("Source=\"Class0.cs\"");
+    assertThat(Files.toString(new File(tmp.getRoot(), "StyleCop-msbuild-1.proj.xml"), Charsets.UTF_8)).contains("Source=\"Class1.cs\"");
+
+    assertThat(workers.acquire(FAKE_MSBUILD)).isSameAs(worker);
+    assertThat(workers.acquire(FAKE_MSBUILD)).isNotSameAs(worker);
+  }
+
+  @Test
+  public void hosts_are_not_shared_between_msbuild_paths() throws Exception {
+    StyleCopWorkers.Worker worker = workers.acquire(FAKE_MSBUILD);
+    workers.release(worker);
+
+    StyleCopWorkers.Worker otherWorker = workers.acquire(STALLING_MSBUILD);
+    assertThat(otherWorker).isNotSameAs(worker);
+    workers.release(otherWorker);
+
+    assertThat(workers.acquire(FAKE_MSBUILD)).isSameAs(worker);
+    assertThat(workers.acquire(STALLING_MSBUILD)).isSameAs(otherWorker);
+  }
+
+  @Test
+  public void hosts_are_stopped_at_the_end() throws Exception {
+    StyleCopWorkers.Worker worker = workers.acquire(FAKE_MSBUILD);
+    workers.release(worker);
+
+    workers.stop();
+
+    assertThat(worker.process().exitValue()).isEqualTo(0);
+  }
+
+  @Test
+  public void stalled_host_is_discarded() throws Exception {
+    StyleCopWorkers.Worker worker = workers.acquire(STALLING_MSBUILD);
+    workers.release(worker);
+
+    try {
+      new StyleCopExecutor(1, TimeUnit.SECONDS, workers).execute(STALLING_MSBUILD, msBuildFile(0).getAbsolutePath(), 1, "timeout");
+      fail();
+    } catch (SonarException e) {
+      assertThat(e.getMessage()).contains("the last file being analyzed was \"C:\\My Library\\Class2.cs\"");
+    }
+
+    assertThat(workers.acquire(STALLING_MSBUILD)).isNotSameAs(worker);
+  }
+
+  @Test
+  public void host_exiting_during_a_job() throws Exception {
+    workers = new StyleCopWorkers(ImmutableList.of("sh", "-c", "echo READY; read request; exit 3"));
+
+    thrown.expectMessage("The StyleCop host process exited unexpectedly while analyzing");
+
+    new StyleCopExecutor(0, TimeUnit.SECONDS, workers).execute(FAKE_MSBUILD, msBuildFile(0).getAbsolutePath(), 1, "timeout");
+  }
+
+  private File msBuildFile(int i) throws Exception {
+    File file = new File(tmp.getRoot(), "StyleCop-msbuild-" + i + ".proj");
+    Files.write(
+      "<StyleCopOutputFile>" + file.getAbsolutePath() + ".xml</StyleCopOutputFile>\n"
+        + "<StyleCopFiles Include=\"Class" + i + ".cs\" />\n",
+      file, Charsets.UTF_8);
+    return file;
+  }
+
+}
@@ -0,0 +1,9 @@
+#!/bin/sh
+# Stands in for a hung MSBuild.exe: outputs a few lines, then hangs along with a child process.
+echo "Analyzing $1"
+echo "  C:\\MyLibrary\\Class1.cs(3,1): warning : SA1600: The class must have a documentation header."
+echo "  C:\\My Library\\Class2.cs(7,5): warning : SA1600: The method must have a documentation header."
+echo "Done executing task"
+sleep 60 &
+echo $! > "$1.pid"
+sleep 60
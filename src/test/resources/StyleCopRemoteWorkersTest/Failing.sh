@@ -0,0 +1,4 @@
+#!/bin/sh
+# Stands in for an MSBuild.exe which fails after some output, without any report.
+echo "Failing on $1"
+exit 1
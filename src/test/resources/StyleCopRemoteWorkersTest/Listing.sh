@@ -0,0 +1,3 @@
+#!/bin/sh
+# Stands in for an MSBuild.exe which lists the files of the generated StyleCop project, without any report.
+sed -n 's:.*<StyleCopFiles Include="\(.*\)" />.*:\1:p' "$1"
@@ -0,0 +1,16 @@
+#!/bin/sh
+# Stands in for MSBuild.exe on a batch project: reports one violation per item of each analyzed project.
+project="$1"
+
+echo "Analyzing $project"
+i=0
+sed -n 's:.*OutputFile="\(.*\)".*:\1:p' "$project" | while read -r report; do
+  {
+    echo '<StyleCopViolations>'
+    sed -n "s:.*<StyleCopFiles$i Include=\"\(.*\)\" />.*:\1:p" "$project" | while read -r file; do
+      echo "  <Violation Section=\"Root\" LineNumber=\"1\" Source=\"$file\" RuleNamespace=\"StyleCop.CSharp.DocumentationRules\" Rule=\"FileMustHaveHeader\" RuleId=\"SA1633\">The file has no header.</Violation>"
+    done
+    echo '</StyleCopViolations>'
+  } > "$report"
+  i=$((i + 1))
+done
@@ -0,0 +1,13 @@
+#!/bin/sh
+# Stands in for MSBuild.exe: reports one violation per item of the generated StyleCop project.
+project="$1"
+report=$(sed -n 's:.*<StyleCopOutputFile>\(.*\)</StyleCopOutputFile>.*:\1:p' "$project")
+
+echo "Analyzing $project"
+{
+  echo '<StyleCopViolations>'
+  sed -n 's:.*<StyleCopFiles Include="\(.*\)" />.*:\1:p' "$project" | while read -r file; do
+    echo "  <Violation Section=\"Root\" LineNumber=\"1\" Source=\"$file\" RuleNamespace=\"StyleCop.CSharp.DocumentationRules\" Rule=\"FileMustHaveHeader\" RuleId=\"SA1633\">The file has no header.</Violation>"
+  done
+  echo '</StyleCopViolations>'
+} > "$report"
@@ -0,0 +1,19 @@
+#!/bin/sh
+# Stands in for the StyleCop host process: runs the given fake MSBuild for each job.
+msbuild="$1"
+tab=$(printf '\t')
+
+echo READY
+while IFS="$tab" read -r command file; do
+  case "$command" in
+    RUN)
+      "$msbuild" "$file" 2>&1 | while IFS= read -r line; do
+        printf 'OUT\t%s\n' "$line"
+      done
+      printf 'END\t0\n'
+      ;;
+    QUIT)
+      exit 0
+      ;;
+  esac
+done